@@ -3,6 +3,7 @@ package actuator;
 import core.*;
 import control.AbstractController;
 import control.command.InterfaceCommand;
+import dispatch.AbstractEvent;
 import dispatch.Dispatcher;
 import dispatch.EventPoke;
 import dispatch.Pokable;
@@ -202,7 +203,7 @@ public abstract class AbstractActuator implements Pokable, InterfaceScenarioElem
         process_command(command_off(),now);
 
         // remove future events from dispatcher
-        dispatcher.events.removeIf(e->e.timestamp>=now && e.recipient==this);
+        dispatcher.remove_events_for_recipient(AbstractEvent.class,this);
 
     }
 
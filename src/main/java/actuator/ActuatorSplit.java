@@ -8,7 +8,6 @@ import core.Scenario;
 import control.command.InterfaceCommand;
 import core.ScenarioElementType;
 import dispatch.Dispatcher;
-import dispatch.EventSplitChange;
 import error.OTMErrorLog;
 import error.OTMException;
 import jaxb.Actuator;
@@ -3,13 +3,15 @@ package core;
 import commodity.Commodity;
 import commodity.Path;
 import dispatch.Dispatcher;
-import dispatch.EventDemandChange;
 import error.OTMErrorLog;
 import error.OTMException;
 import commodity.DemandType;
 import models.vehicle.VehicleDemandGenerator;
+import profiles.CompiledProfile;
 import profiles.Profile1D;
-import profiles.TimeValue;
+import utils.RandomStreams;
+
+import java.util.SplittableRandom;
 
 public abstract class AbstractDemandGenerator {
 
@@ -25,6 +27,13 @@ public abstract class AbstractDemandGenerator {
     // demand value
     protected double source_demand_vps;    // vps
 
+    // random stream of this generator, set on initialize
+    protected SplittableRandom random;
+
+    // profile for the run, set on initialize
+    protected CompiledProfile compiled_profile;
+    private int next_change;        // step of the scheduled change, -1 for zero before the profile starts
+
     public AbstractDemandGenerator(Link link, Profile1D profile, Commodity commodity, Path path){
         this.link = link;
         this.profile = profile;
@@ -39,9 +48,9 @@ public abstract class AbstractDemandGenerator {
 
     public final State sample_state(){
         if(commodity.pathfull){
-            return new State(commodity.getId(),path.getId(),true);
+            return link.get_scenario().states.get(commodity.getId(),path.getId(),true);
         } else {
-            return new State(commodity.getId(),link.sample_next_link(commodity.getId()),false);
+            return link.get_scenario().states.get(commodity.getId(),link.sample_next_link(commodity.getId()),false);
         }
     }
 
@@ -103,6 +112,8 @@ public abstract class AbstractDemandGenerator {
     }
 
     public void initialize(Scenario scenario) throws OTMException {
+        random = scenario.random.get_stream(RandomStreams.Source.demand, link.getId(), commodity.getId(), path==null ? -1L : path.getId());
+        compiled_profile = profile.compile();
 //        float now = scenario.get_current_time();
 //        double value = profile.get_value_for_time(now);
 //        set_demand_vps(scenario.dispatcher,now,value);
@@ -110,8 +121,8 @@ public abstract class AbstractDemandGenerator {
     }
 
     public void register_with_dispatcher(Dispatcher dispatcher) {
-        double value = profile.get_value_for_time(dispatcher.current_time);
-        dispatcher.register_event(new EventDemandChange(dispatcher,dispatcher.current_time,this,value));
+        next_change = compiled_profile.get_index_for_time(dispatcher.current_time);
+        dispatcher.register_demand_change(dispatcher.current_time,this);
     }
 
     public Long get_origin_node_id() {
@@ -122,10 +133,17 @@ public abstract class AbstractDemandGenerator {
         return path==null ? null : path.get_destination_node_id();
     }
 
+    // used by EventProfileChanges
+    public void apply_scheduled_change(Dispatcher dispatcher,float timestamp) throws OTMException {
+        set_demand_vps(dispatcher,timestamp,compiled_profile.get_value(next_change));
+        register_next_change(dispatcher,timestamp);
+    }
+
     public void register_next_change(Dispatcher dispatcher,float timestamp) {
-        TimeValue time_value = profile.get_change_following(timestamp);
-        if (time_value != null) {
-            dispatcher.register_event(new EventDemandChange(dispatcher, time_value.time, this, time_value.value));
+        int i = compiled_profile.get_next_index(next_change);
+        if (i>=0) {
+            next_change = i;
+            dispatcher.register_demand_change(compiled_profile.get_time_for_index(i),this);
 
             // schedule next vehicle
             if(this instanceof VehicleDemandGenerator)
@@ -10,10 +10,12 @@ import models.fluid.*;
 import models.fluid.nodemodel.NodeModel;
 import models.fluid.nodemodel.RoadConnection;
 import models.fluid.nodemodel.UpLaneGroup;
+import models.fluid.partition.DomainDecomposition;
 import core.packet.PacketLink;
 import profiles.Profile1D;
 import utils.OTMUtils;
 import utils.StochasticProcess;
+import utils.WorkerPool;
 
 import java.util.*;
 
@@ -25,10 +27,44 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     protected Set<Link> sink_links = new HashSet<>();
     protected Map<Long, NodeModel> node_models;
 
+    // parallel execution. Links and node models are processed in the fixed order of these
+    // arrays, either serially or in chunks on the pool, with a barrier after each phase.
+    protected final WorkerPool pool;            // null if serial
+    private Link[] link_array;
+    private NodeModel[] node_model_array;
+
+    // domain decomposition. The links and node models are split into subdomains,
+    // each updated by its own thread.
+    protected final int partitions;
+    protected DomainDecomposition decomposition;    // null if not partitioned
+
+    // activity tracking. A link sleeps once a full step has passed in which its demands were too
+    // small to move anything and nothing entered it. Its state, demands and supplies then stay
+    // the same, so it is skipped until a packet arrives or its parameters change. A node model is
+    // skipped while all of its upstream links sleep, since it sees them as empty and its flows are zero.
+    // Off unless model_params sets track_activity.
+    public boolean track_activity;
+    private int[] link_position;            // Link.index -> position in link_array, -1 if not in this model
+    private boolean[] link_active;
+    private int[] link_quiet_steps;
+
     public AbstractFluidModel(String name, Set<Link> links, float dt_sec, StochasticProcess process, jaxb.ModelParams params) throws OTMException {
         super(AbstractModel.Type.Fluid,name,links,process);
         this.dt_sec = dt_sec;
         this.max_cell_length = params.getMaxCellLength()==null ? -1 : params.getMaxCellLength();
+
+        int threads = params.getThreads()==null ? 1 : params.getThreads();
+        if(threads<1)
+            throw new OTMException("Model " + name + ": threads must be positive.");
+        this.pool = threads>1 ? new WorkerPool(threads) : null;
+
+        this.partitions = params.getPartitions()==null ? 1 : params.getPartitions();
+        if(partitions<1)
+            throw new OTMException("Model " + name + ": partitions must be positive.");
+        if(partitions>1 && threads>1)
+            throw new OTMException("Model " + name + ": threads and partitions cannot be used together.");
+
+        this.track_activity = params.isTrackActivity()!=null && params.isTrackActivity();
     }
 
     @Override
@@ -136,6 +172,31 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
 
         for(NodeModel node_model : node_models.values())
             node_model.initialize(scenario);
+
+        link_array = links.toArray(new Link[0]);
+        node_model_array = node_models.values().toArray(new NodeModel[0]);
+
+        link_position = new int[scenario.network.num_links()];
+        Arrays.fill(link_position,-1);
+        for(int i=0;i<link_array.length;i++)
+            link_position[link_array[i].index] = i;
+        link_active = new boolean[link_array.length];
+        Arrays.fill(link_active,true);
+        link_quiet_steps = new int[link_array.length];
+        for(NodeModel node_model : node_model_array)
+            node_model.is_active = true;
+
+        // the partition depends only on the network, keep it across runs
+        if(partitions>1 && decomposition==null)
+            decomposition = new DomainDecomposition(this,link_array,node_model_array,source_links,sink_links,partitions);
+    }
+
+    @Override
+    public void terminate() {
+        if(pool!=null)
+            pool.close();
+        if(decomposition!=null)
+            decomposition.close();
     }
 
     //////////////////////////////////////////////////////////////
@@ -145,6 +206,12 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     // called by EventFluidModelUpdate
     public final void update_flow(float timestamp) throws OTMException {
 
+        // partitioned: same steps per subdomain, boundary packets go through DomainDecomposition channels
+        if(decomposition!=null){
+            decomposition.update_flow(timestamp);
+            return;
+        }
+
         update_flow_I(timestamp);
 
         // -- MPI communication (in otm-mpi) -- //
@@ -157,11 +224,21 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     public final void update_flow_I(float timestamp) throws OTMException {
 
         // lane changes and compute demand and supply
-        for(Link link : links)
-            compute_lanechange_demand_supply(link,timestamp);
+        for_each_link((from,to)->{
+            for(int i=from;i<to;i++)
+                if(link_active[i])
+                    compute_lanechange_demand_supply(link_array[i],timestamp);
+        });
 
         // compute node inflow and outflow (all nodes except sources)
-        node_models.values().forEach(n->n.update_flow(timestamp));
+        for_each_node_model((from,to)->{
+            for(int i=from;i<to;i++){
+                NodeModel node_model = node_model_array[i];
+                node_model.is_active = is_active(node_model);
+                if(node_model.is_active)
+                    node_model.update_flow(timestamp);
+            }
+        });
 
     }
 
@@ -170,30 +247,19 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     public final void update_flow_II(float timestamp) throws OTMException {
 
         // add to source links
-        for(Link link : source_links){
-            for(AbstractLaneGroup alg : link.get_lgs()){
-                FluidLaneGroup lg = (FluidLaneGroup)alg;
-                lg.cells.get(0).add_vehicles(lg.source_flow,null,null);
-            }
-        }
+        for(Link link : source_links)
+            add_source_flow(link);
 
         // release from sink links
-        for(Link link : sink_links){
-            for(AbstractLaneGroup alg : link.get_lgs()) {
-                FluidLaneGroup lg = (FluidLaneGroup) alg;
-                Map<State,Double> flow_dwn = lg.get_demand();
-
-                lg.release_vehicles(flow_dwn);
-
-                for(Map.Entry<State,Double> e : flow_dwn.entrySet())
-                    if(e.getValue()>0)
-                        lg.update_flow_accummulators(e.getKey(),e.getValue());
-            }
-        }
+        for(Link link : sink_links)
+            release_sink_flow(link);
 
         // node models exchange packets
         for(NodeModel node_model : node_models.values()) {
 
+            if(!node_model.is_active)
+                continue;
+
             // flows on road connections arrive to links on give lanes convert to packets and send
             for(RoadConnection rc : node_model.rcs.values()) {
                 Link link = rc.rc.get_end_link();
@@ -201,24 +267,97 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
             }
 
             // set exit flows on non-sink lanegroups
-            for(UpLaneGroup ulg : node_model.ulgs.values()) {
-                ulg.lg.release_vehicles(ulg.f_gs);
+            release_node_flows(node_model);
+        }
 
-                // send lanegroup exit flow to flow accumulator
-                for(Map.Entry<State,Double> e : ulg.f_gs.entrySet())
-                    if(e.getValue()>0)
-                        ulg.lg.update_flow_accummulators(e.getKey(),e.getValue());
-            }
+    }
 
+    public static void add_source_flow(Link link){
+        for(AbstractLaneGroup alg : link.get_lgs()){
+            FluidLaneGroup lg = (FluidLaneGroup)alg;
+            lg.cells.get(0).add_vehicles(lg.source_flow,null,null);
         }
+    }
+
+    public static void release_sink_flow(Link link){
+        for(AbstractLaneGroup alg : link.get_lgs()) {
+            FluidLaneGroup lg = (FluidLaneGroup) alg;
+            Map<State,Double> flow_dwn = lg.get_demand();
+
+            lg.release_vehicles(flow_dwn);
 
+            for(Map.Entry<State,Double> e : flow_dwn.entrySet())
+                if(e.getValue()>0)
+                    lg.update_flow_accummulators(e.getKey(),e.getValue());
+        }
+    }
+
+    // set exit flows on the upstream lanegroups of a node model
+    public static void release_node_flows(NodeModel node_model){
+        for(UpLaneGroup ulg : node_model.ulgs.values()) {
+            ulg.lg.release_vehicles(ulg.f_gs);
+
+            // send lanegroup exit flow to flow accumulator
+            for(Map.Entry<State,Double> e : ulg.f_gs.entrySet())
+                if(e.getValue()>0)
+                    ulg.lg.update_flow_accummulators(e.getKey(),e.getValue());
+        }
     }
 
     // called by EventFluidStateUpdate
     // intra link flows and states
     protected final void update_fluid_state(float timestamp) throws OTMException {
-        for(Link link : links)
-            update_link_state(link,timestamp);
+        if(decomposition!=null){
+            decomposition.update_fluid_state(timestamp);
+            return;
+        }
+        for_each_link((from,to)->{
+            for(int i=from;i<to;i++)
+                if(link_active[i]) {
+                    update_link_state(link_array[i], timestamp);
+                    update_activity(i);
+                }
+        });
+    }
+
+    //////////////////////////////////////////////////////////////
+    // activity
+    //////////////////////////////////////////////////////////////
+
+    public final boolean is_active(Link link){
+        int i = position(link);
+        return i<0 || link_active[i];
+    }
+
+    // active if any upstream link is active, or belongs to another model
+    public final boolean is_active(NodeModel node_model){
+        for(UpLaneGroup ulg : node_model.ulgs.values())
+            if(is_active(ulg.lg.get_link()))
+                return true;
+        return false;
+    }
+
+    // called when vehicles enter the link or its parameters change
+    public final void wake(Link link){
+        int i = position(link);
+        if(i<0)
+            return;
+        link_active[i] = true;
+        link_quiet_steps[i] = 0;
+    }
+
+    // called after the state update of an active link
+    public final void update_activity(Link link){
+        int i = position(link);
+        if(i>=0)
+            update_activity(i);
+    }
+
+    private int position(Link link){
+        if(link_position==null || link.index>=link_position.length)
+            return -1;
+        int i = link_position[link.index];
+        return i>=0 && link_array[i]==link ? i : -1;
     }
 
     //////////////////////////////////////////////////////////////
@@ -229,8 +368,93 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
         return node_models.get(node_id);
     }
 
+    public final DomainDecomposition get_decomposition(){
+        return decomposition;
+    }
+
     // PRIVATE
 
+    // Each task touches only its own links (cells, lane change and flow accumulators, buffers)
+    // or its own node model (which reads the demands of its upstream lane groups and the supplies
+    // of its downstream lane groups). Hence the result does not depend on the number of threads.
+    private void for_each_link(WorkerPool.InterfaceTask task) throws OTMException {
+        if(pool==null)
+            task.run(0,link_array.length);
+        else
+            pool.run(link_array.length,task);
+    }
+
+    // The link sleeps after two consecutive still steps without a wake. In the second one its
+    // demands and supplies were computed at the start of the step, and nothing changed since.
+    private void update_activity(int i){
+        if(track_activity && can_sleep(link_array[i]) && is_still(link_array[i])) {
+            if (++link_quiet_steps[i] >= 2)
+                link_active[i] = false;
+        }
+        else
+            link_quiet_steps[i] = 0;
+    }
+
+    // sources take flow every step, timers and flow actuators are updated every step
+    private static boolean can_sleep(Link link){
+        if(link.is_source() || link.unique_acts_flowToLinks!=null)
+            return false;
+        for(AbstractLaneGroup lg : link.get_lgs())
+            if(lg.travel_timer!=null || (lg.buffer!=null && lg.buffer.get_total_veh()>=OTMUtils.epsilon))
+                return false;
+        return true;
+    }
+
+    // The current demands move no vehicles. The update code compares the same sums with the same
+    // thresholds, but may add the terms in another order (or compensated), see below.
+    private static boolean is_still(Link link){
+        boolean lane_changes = link.get_lgs().size()>1;
+        for(AbstractLaneGroup alg : link.get_lgs()){
+            List<AbstractCell> cells = ((FluidLaneGroup) alg).cells;
+
+            // lane changes: require cells that update_demand treats as empty, which have zero demand.
+            // It adds the three vehicle totals of the cell.
+            if(lane_changes){
+                for(AbstractCell cell : cells)
+                    if(!below(cell.get_vehicles(),3,OTMUtils.epsilon))
+                        return false;
+                continue;
+            }
+
+            // exit: sinks release their whole demand, node models ignore demands below NodeModel.eps
+            Map<State,Double> exit = cells.get(cells.size()-1).get_demand();
+            double exit_demand = OTMUtils.sum(exit);
+            if(link.is_sink() ? exit_demand>0d : !below(exit_demand,exit.size(),NodeModel.eps))
+                return false;
+
+            // flows between cells need more than epsilon demand
+            for(int k=0;k<cells.size()-1;k++){
+                Map<State,Double> demand = cells.get(k).get_demand();
+                if(!below(OTMUtils.sum(demand),demand.size(),OTMUtils.epsilon))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // True if a sum of n nonnegative terms is below the threshold in any order or grouping of the terms.
+    // Two such sums differ by at most 2*gamma(n-1) times the exact sum, where
+    // gamma(k) = k*u/(1-k*u) and u is the unit roundoff (Higham, Accuracy and Stability of
+    // Numerical Algorithms, eq. 4.4). A compensated sum is closer to the exact sum than that.
+    // The bound below uses 2*n*u*sum, which is larger for any number of terms that fits in memory.
+    private static boolean below(double sum,int n,double threshold){
+        return sum + 2d*n*unit_roundoff*sum < threshold;
+    }
+
+    private static final double unit_roundoff = 0x1p-53;
+
+    private void for_each_node_model(WorkerPool.InterfaceTask task) throws OTMException {
+        if(pool==null)
+            task.run(0,node_model_array.length);
+        else
+            pool.run(node_model_array.length,task);
+    }
+
     private static void barriers_to_cells(Link link,Set<Barrier> barriers,float cell_length_meters,int in_lane){
 
         if(barriers==null || barriers.isEmpty())
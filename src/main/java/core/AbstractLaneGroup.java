@@ -8,7 +8,7 @@ import error.OTMException;
 import core.packet.StateContainer;
 import models.Maneuver;
 import traveltime.AbstractLaneGroupTimer;
-import utils.OTMUtils;
+import utils.RandomStreams;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,6 +28,7 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
     }
 
     protected final long id;
+    public int index;                       // dense index in the network, see Network.lanegroup_at
     protected Link link;
     protected final core.geometry.Side side;               // inner, middle, or outer (add lane in, full, add lane out)
     protected int start_lane_up = -1;       // counted with respect to upstream boundary
@@ -50,6 +51,9 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
     // flow accumulator
     protected FlowAccumulatorState flw_acc;
 
+    // random stream of this lane group, set on initialize
+    protected SplittableRandom random;
+
     // one-to-one map at the lanegroup level
     protected Map<Long, RoadConnection> outlink2roadconnection;
 
@@ -76,7 +80,7 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
         this.side = side;
         this.length = length;
         this.num_lanes = num_lanes;
-        this.id = OTMUtils.get_lanegroup_id();
+        this.id = link.get_scenario().get_lanegroup_id();
         this.start_lane_dn = start_lane;
         this.state2roadconnection = new HashMap<>();
         this.state2lanechangeprob = new HashMap<>();
@@ -220,6 +224,8 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
     }
 
     public void initialize(Scenario scenario, float start_time) throws OTMException {
+        random = scenario.random.get_stream(RandomStreams.Source.lanegroup, link.getId(), side.ordinal(), start_lane_up, start_lane_dn);
+
         if(link.is_model_source_link)
             this.buffer = new StateContainer();
 
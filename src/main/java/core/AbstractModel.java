@@ -170,6 +170,11 @@ public abstract class AbstractModel implements InterfaceModel {
         register_with_dispatcher(scenario, scenario.dispatcher, start_time);
     }
 
+    // called by Scenario.terminate at the end of a run. Release threads and other resources
+    // held for the run. The model may be initialized and run again afterwards.
+    public void terminate() {
+    }
+
     //////////////////////////////////////////////////
     // final
     //////////////////////////////////////////////////
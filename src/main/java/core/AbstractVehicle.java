@@ -2,7 +2,6 @@ package core;
 
 import commodity.Path;
 import output.InterfaceVehicleListener;
-import utils.OTMUtils;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -27,8 +26,8 @@ public abstract class AbstractVehicle {
         this.event_listeners = that.event_listeners;
     }
 
-    public AbstractVehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners){
-        this.id = OTMUtils.get_vehicle_id();
+    public AbstractVehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners){
+        this.id = id;
         this.comm_id = comm_id;
         this.event_listeners = new HashSet<>();
         if(event_listeners!=null)
@@ -36,10 +35,10 @@ public abstract class AbstractVehicle {
         this.lg = null;
     }
 
-    public void set_next_link_id(Long nextlink_id){
+    public void set_next_link_id(StateRegistry states,Long nextlink_id){
         if(state !=null && state.isPath)
             return;
-        state = new State(comm_id,nextlink_id,false);
+        state = states.get(comm_id,nextlink_id,false);
     }
 
     ////////////////////////////////////////////////
@@ -43,8 +43,8 @@ public abstract class AbstractVehicleModel extends AbstractModel implements Inte
             return null;
     }
 
-    final public Float get_waiting_time_sec(double rate_vps){
-        return OTMUtils.get_waiting_time(rate_vps,stochastic_process);
+    final public Float get_waiting_time_sec(double rate_vps,SplittableRandom random){
+        return OTMUtils.get_waiting_time(rate_vps,stochastic_process,random);
     }
 
 }
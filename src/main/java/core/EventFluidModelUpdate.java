@@ -1,13 +1,13 @@
 package core;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 
-public class EventFluidModelUpdate extends AbstractEvent {
+public class EventFluidModelUpdate extends AbstractEventPeriodic {
 
     public EventFluidModelUpdate(Dispatcher dispatcher, float timestamp, Object model){
-        super(dispatcher,50,timestamp,model);
+        super(dispatcher,50,timestamp,((AbstractFluidModel)model).dt_sec,model);
     }
 
     @Override
@@ -16,9 +16,6 @@ public class EventFluidModelUpdate extends AbstractEvent {
 
         // update the models.fluid.ctm state
         model.update_flow(timestamp);
-
-        // register next clock tick
-        dispatcher.register_event(new EventFluidModelUpdate(dispatcher,timestamp + model.dt_sec,model));
     }
 
 }
@@ -1,13 +1,13 @@
 package core;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 
-public class EventFluidStateUpdate extends AbstractEvent {
+public class EventFluidStateUpdate extends AbstractEventPeriodic {
 
     public EventFluidStateUpdate(Dispatcher dispatcher, float timestamp, Object model){
-        super(dispatcher,55,timestamp,model);
+        super(dispatcher,55,timestamp,((AbstractFluidModel)model).dt_sec,model);
     }
 
     @Override
@@ -16,9 +16,6 @@ public class EventFluidStateUpdate extends AbstractEvent {
 
         // update the models.fluid.ctm state
         model.update_fluid_state(timestamp);
-
-        // register next clock tick
-        dispatcher.register_event(new EventFluidStateUpdate(dispatcher,timestamp + model.dt_sec,model));
     }
 
 }
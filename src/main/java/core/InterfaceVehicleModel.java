@@ -6,5 +6,5 @@ import java.util.Set;
 
 public interface InterfaceVehicleModel extends InterfaceModel {
     AbstractVehicle translate_vehicle(AbstractVehicle that);
-    AbstractVehicle create_vehicle(Long comm_id, Set<InterfaceVehicleListener> event_listeners);
+    AbstractVehicle create_vehicle(long id, Long comm_id, Set<InterfaceVehicleListener> event_listeners);
 }
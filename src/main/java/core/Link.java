@@ -13,6 +13,7 @@ import profiles.SplitMatrixProfile;
 import traveltime.LinkTravelTimer;
 import core.packet.PacketLaneGroup;
 import core.packet.PacketLink;
+import utils.LongMap;
 
 import java.util.*;
 
@@ -27,6 +28,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
 
     // basics ........................................
     protected final long id;
+    public int index;                       // dense index in the network, see Network.link_at
     protected final Network network;
     protected final float length;          // meters
     protected final int full_lanes;
@@ -69,7 +71,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
     // routing information ...............................
 
     // map from path id (uses this link) to next link id (exits this link)
-    protected Map<Long,Link> path2outlink;
+    protected LongMap<Link> path2outlink;
 
     // outlink -> lanegroups from which outlink is reachable
     protected Map<Long,Set<AbstractLaneGroup>> outlink2lanegroups;
@@ -115,7 +117,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
 
         lgs = new ArrayList<>();
         dnlane2lanegroup = new HashMap<>();
-        path2outlink = new HashMap<>();
+        path2outlink = new LongMap<>();
         outlink2lanegroups = new HashMap<>();
         demandGenerators = new HashSet<>();
 
@@ -144,8 +146,8 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
     public void add_state(long comm_id, Long path_id,Long next_link_id, boolean ispathfull){
 
         State state = ispathfull ?
-            new State(comm_id, path_id, true) :
-            new State(comm_id, next_link_id, false);
+            network.scenario.states.get(comm_id, path_id, true) :
+            network.scenario.states.get(comm_id, next_link_id, false);
 
         states.add(state);
 
@@ -303,8 +305,10 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
         }
 
         if(split_profile!=null)
-            for(SplitMatrixProfile x : split_profile.values())
+            for(SplitMatrixProfile x : split_profile.values()) {
+                x.initialize_random(scenario.random);
                 x.initialize(scenario.dispatcher);
+            }
 
         if(demandGenerators !=null)
             for(AbstractDemandGenerator gen : demandGenerators)
@@ -376,6 +380,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
 
         // initialize lanegroup_packets (next link id -> core.packet)
         Map<Long, PacketLaneGroup> split_packets = new HashMap<>();
+        StateRegistry states = network.scenario.states;
 
         boolean has_macro = !vp.no_macro();
         boolean has_micro = !vp.no_micro();
@@ -409,14 +414,14 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
 
                     if( is_sink ){
                         add_to_lanegroup_packets(split_packets, id,
-                                new State(state.commodity_id, id, false),
+                                states.get(state.commodity_id, id, false),
                                 vehicles );
                     }
 
                     else if( this.outlink2lanegroups.size()==1){
                         Long next_link_id = outlink2lanegroups.keySet().iterator().next();
                         add_to_lanegroup_packets(split_packets, next_link_id,
-                                new State(state.commodity_id, next_link_id, false),
+                                states.get(state.commodity_id, next_link_id, false),
                                 vehicles );
                     }
 
@@ -471,7 +476,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
                                 // get vehicles going to next link
                                 if(vehicles_to_link>0d)
                                     add_to_lanegroup_packets(split_packets, next_link_id,
-                                            new State(commid, next_link_id, false),
+                                            states.get(commid, next_link_id, false),
                                             vehicles_to_link);
 
                             }
@@ -494,7 +499,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
                                         long next_link_id = e1.getKey();
                                         double split = e1.getValue();
                                         add_to_lanegroup_packets(split_packets, next_link_id,
-                                                new State(commid, next_link_id, false),
+                                                states.get(commid, next_link_id, false),
                                                 split * vehicles);
                                     }
 
@@ -503,7 +508,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
                                         double remainder_per_link = vehicles*(1-smp.total_split)/smp.outlinks_without_splits.size();
                                         for (Long next_link_id : smp.outlinks_without_splits)
                                             add_to_lanegroup_packets(split_packets, next_link_id,
-                                                    new State(commid, next_link_id, false),
+                                                    states.get(commid, next_link_id, false),
                                                     remainder_per_link);
                                     }
                                 }
@@ -516,7 +521,7 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
                                 double per_link = vehicles/outlink2lanegroups.size();
                                 for (Long next_link_id : outlink2lanegroups.keySet())
                                     add_to_lanegroup_packets(split_packets, next_link_id,
-                                            new State(commid, next_link_id, false),
+                                            states.get(commid, next_link_id, false),
                                             per_link);
                             }
                         }
@@ -547,17 +552,15 @@ public class Link implements InterfaceScenarioElement, InterfaceTarget {
                 else {
 
                     if(is_sink){
-                        vehicle.set_next_link_id(id);
-                        add_to_lanegroup_packets(split_packets,id ,
-                                new State(key.commodity_id, id, false),
-                                vehicle);
+                        State state = states.get(key.commodity_id, id, false);
+                        vehicle.set_state(state);
+                        add_to_lanegroup_packets(split_packets,id ,state,vehicle);
 
                     } else {
                         Long next_link_id = sample_next_link(key.commodity_id);
-                        vehicle.set_next_link_id(next_link_id);
-                        add_to_lanegroup_packets(split_packets,next_link_id ,
-                                new State(key.commodity_id, next_link_id, false),
-                                vehicle);
+                        State state = states.get(key.commodity_id, next_link_id, false);
+                        vehicle.set_state(state);
+                        add_to_lanegroup_packets(split_packets,next_link_id ,state,vehicle);
 
                     }
 
@@ -3,6 +3,7 @@ package core;
 import commodity.Commodity;
 import error.OTMException;
 import core.geometry.*;
+import utils.LongMap;
 
 import java.util.*;
 
@@ -31,6 +32,14 @@ public class Network {
     /** Map of road connections **/
     public Map<Long,RoadConnection> road_connections;
 
+    // id lookups without boxing, and dense indices in order of id (see Link.index, Node.index,
+    // AbstractLaneGroup.index). Lane groups are indexed by ScenarioFactory once the models have created them.
+    private LongMap<Link> links_by_id = new LongMap<>();
+    private LongMap<Node> nodes_by_id = new LongMap<>();
+    private Link[] link_array = new Link[0];
+    private Node[] node_array = new Node[0];
+    private AbstractLaneGroup[] lanegroup_array = new AbstractLaneGroup[0];
+
     ///////////////////////////////////////////
     // construction
     ///////////////////////////////////////////
@@ -58,6 +67,8 @@ public class Network {
             link.is_sink = link.end_node.out_links.isEmpty();
         }
 
+        index_links_and_nodes();
+
         // read road connections (requires links)
         road_connections = read_road_connections(jaxb_conns,links);
 
@@ -164,16 +175,58 @@ public class Network {
 
     /** Get node by id **/
     public Node get_node(long id)throws OTMException {
-        if(!nodes.containsKey(id))
+        Node node = nodes_by_id.get(id);
+        if(node==null)
+            node = nodes.get(id);     // maps filled after construction
+        if(node==null)
             throw new OTMException("Bad id in Scenario.get_link");
-        return nodes.get(id);
+        return node;
     }
 
     /** Get link by id **/
     public Link get_link(long id) throws OTMException {
-        if(!links.containsKey(id))
+        Link link = links_by_id.get(id);
+        if(link==null)
+            link = links.get(id);     // maps filled after construction
+        if(link==null)
             throw new OTMException("Bad id in Scenario.get_link");
-        return links.get(id);
+        return link;
+    }
+
+    // get element by dense index .....................
+
+    public int num_links(){
+        return link_array.length;
+    }
+
+    public Link link_at(int index){
+        return link_array[index];
+    }
+
+    public int num_nodes(){
+        return node_array.length;
+    }
+
+    public Node node_at(int index){
+        return node_array[index];
+    }
+
+    public int num_lanegroups(){
+        return lanegroup_array.length;
+    }
+
+    public AbstractLaneGroup lanegroup_at(int index){
+        return lanegroup_array[index];
+    }
+
+    // called by ScenarioFactory after the models have created the lane groups
+    public void index_lanegroups(){
+        List<AbstractLaneGroup> lgs = new ArrayList<>();
+        for(Link link : link_array)
+            lgs.addAll(link.lgs);
+        lanegroup_array = lgs.toArray(new AbstractLaneGroup[0]);
+        for(int i=0;i<lanegroup_array.length;i++)
+            lanegroup_array[i].index = i;
     }
 
 
@@ -219,6 +272,21 @@ public class Network {
         return links;
     }
 
+    private void index_links_and_nodes(){
+        links_by_id = new LongMap<>(links.size());
+        link_array = links.values().stream().sorted(Comparator.comparing(Link::getId)).toArray(Link[]::new);
+        for(int i=0;i<link_array.length;i++) {
+            link_array[i].index = i;
+            links_by_id.put(link_array[i].getId(), link_array[i]);
+        }
+        nodes_by_id = new LongMap<>(nodes.size());
+        node_array = nodes.values().stream().sorted(Comparator.comparing(Node::getId)).toArray(Node[]::new);
+        for(int i=0;i<node_array.length;i++) {
+            node_array[i].index = i;
+            nodes_by_id.put(node_array[i].getId(), node_array[i]);
+        }
+    }
+
     private static HashMap<Long,Node> read_nodes(List<jaxb.Node> jaxb_nodes,Network network) throws OTMException {
         HashMap<Long,Node> nodes = new HashMap<>();
         for( jaxb.Node jn : jaxb_nodes ) {
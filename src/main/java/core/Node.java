@@ -12,6 +12,7 @@ public class Node implements InterfaceScenarioElement, InterfaceTarget {
 
     public Network network;
     protected final long id;
+    public int index;                       // dense index in the network, see Network.node_at
     protected Map<Long,Link> in_links;
     protected Set<Link> out_links;
     protected Set<RoadConnection> road_connections;
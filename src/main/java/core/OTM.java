@@ -10,14 +10,10 @@ import cmd.RunParameters;
 import utils.OTMUtils;
 import xml.JaxbLoader;
 import xml.JaxbWriter;
+import xml.ScenarioSnapshot;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -40,6 +36,13 @@ public class OTM {
      */
     public core.Output output;
 
+    // event queue used by the dispatcher
+    private Dispatcher.QueueType event_queue_type = Dispatcher.QueueType.heap;
+
+    // output writer thread, none if output_queue_capacity is 0
+    private int output_queue_capacity = 0;
+    private AsyncOutputWriter.Backpressure output_backpressure = AsyncOutputWriter.Backpressure.block;
+
     ////////////////////////////////////////////////////////
     // construction
     ////////////////////////////////////////////////////////
@@ -95,6 +98,11 @@ public class OTM {
         }
     }
 
+    /** Save the scenario to a binary snapshot, which loads faster than xml. See xml.ScenarioSnapshot. **/
+    public void save_snapshot(String file) throws OTMException {
+        ScenarioSnapshot.write(scenario.to_jaxb(),file);
+    }
+
     ////////////////////////////////////////////////////////
     // run
     ////////////////////////////////////////////////////////
@@ -142,7 +150,7 @@ public class OTM {
     public void initialize(float start_time,String output_requests_file,String prefix,String output_folder,boolean validate_post_init) throws OTMException {
 
         // build and attach dispatcher
-        Dispatcher dispatcher = new Dispatcher();
+        Dispatcher dispatcher = new Dispatcher(event_queue_type);
 
         // append outputs from output request file ..................
         if(output_requests_file!=null && !output_requests_file.isEmpty()) {
@@ -150,6 +158,11 @@ public class OTM {
             scenario.outputs.addAll(create_outputs_from_jaxb(scenario,prefix,output_folder, jaxb_or));
         }
 
+        // output writer thread
+        if(scenario.output_writer!=null)
+            scenario.output_writer.close();
+        scenario.output_writer = output_queue_capacity>0 ? new AsyncOutputWriter(output_queue_capacity,output_backpressure) : null;
+
         // initialize
         RunParameters runParams = new RunParameters(prefix,output_requests_file,output_folder,start_time);
         scenario.initialize(dispatcher,runParams,validate_post_init);
@@ -164,6 +177,28 @@ public class OTM {
         initialize(start_time,null,null,null,true);
     }
 
+    /**
+     * Select the event queue implementation for the dispatcher. This takes effect on the next call to
+     * "initialize" or "run".
+     * @param queue_type heap (default) or calendar. The calendar queue is faster for scenarios with
+     *                   many pending events (e.g. large vehicle models).
+     */
+    public void set_event_queue(Dispatcher.QueueType queue_type){
+        this.event_queue_type = queue_type;
+    }
+
+    /**
+     * Write output files on a background thread. This takes effect on the next call to "initialize" or "run".
+     * Outputs are written in full by "terminate", which "run" calls.
+     * @param queue_capacity Number of pending output rows and events. 0 (default) writes on the simulation thread.
+     * @param backpressure block (default): the simulation waits when the queue is full. grow: the queue
+     *                     is unbounded.
+     */
+    public void set_output_writer(int queue_capacity, AsyncOutputWriter.Backpressure backpressure){
+        this.output_queue_capacity = queue_capacity;
+        this.output_backpressure = backpressure;
+    }
+
     ////////////////////////////////////////////////////////
     // advance, terminate
     ////////////////////////////////////////////////////////
@@ -196,8 +231,9 @@ public class OTM {
     /**
      *  Complete the simulation by closing output files. This should be called explicitly if the simulation is
      *  executed with calls to "advance". The "run" method already calls it internally.
+     * @throws OTMException If an output could not be written in full.
      */
-    public void terminate() {
+    public void terminate() throws OTMException {
         scenario.terminate();
     }
 
@@ -334,13 +370,21 @@ public class OTM {
     }
 
     /**
-     * Set the seed for the simulator's random number generator.
+     * Set the default random seed of the scenarios loaded afterwards.
      * @param seed Any number
      */
     public static void set_random_seed(long seed){
         OTMUtils.set_random_seed(seed);
     }
 
+    /**
+     * Set the random seed of this scenario. Every run restarts the random numbers from the seed.
+     * @param seed Any number. null draws a new seed for every run.
+     */
+    public void set_scenario_random_seed(Long seed){
+        scenario.random_seed = seed;
+    }
+
     ////////////////////////////////////////////////////////
     // private
     ////////////////////////////////////////////////////////
@@ -348,16 +392,7 @@ public class OTM {
     private static jaxb.OutputRequests load_output_request(String filename, boolean validate) throws OTMException {
         try {
 
-            JAXBContext jaxbContext = JAXBContext.newInstance(OutputRequests.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-
-            if(validate) {
-                SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                InputStream resourceAsStream = JaxbLoader.class.getResourceAsStream("/outputs.xsd");
-                Schema schema = sf.newSchema(new StreamSource(resourceAsStream));
-                unmarshaller.setSchema(schema);
-            }
-
+            Unmarshaller unmarshaller = JaxbLoader.create_unmarshaller(OutputRequests.class,validate ? "/outputs.xsd" : null);
             OutputRequests jaxb_outputrequests = (OutputRequests) unmarshaller.unmarshal(new File(filename));
             return jaxb_outputrequests;
         } catch(org.xml.sax.SAXException e){
@@ -405,6 +440,9 @@ public class OTM {
                     case "subnetwork_vht":
                         output = new OutputSubnetworkVHT(scenario, prefix, output_folder, commodity_id, null, outDt);
                         break;
+                    case "link_aggregate":
+                        output = new OutputLinkAggregates(scenario, prefix, output_folder, commodity_id, jaxb_or.getSubnetwork(), outDt, jaxb_or.getPeriod());
+                        break;
                     case "vehicle_events":
                         output = new OutputVehicleEvents(scenario, prefix, output_folder, commodity_id);
                         break;
@@ -430,6 +468,19 @@ public class OTM {
 
             }
 
+            if(output!=null && jaxb_or.getFormat()!=null){
+                if(!(output instanceof AbstractOutputTimed))
+                    throw new OTMException("Output format is only available for timed outputs : " + jaxb_or.getQuantity());
+                try {
+                    ((AbstractOutputTimed) output).set_format(AbstractOutputTimed.Format.valueOf(jaxb_or.getFormat()));
+                } catch (IllegalArgumentException e) {
+                    throw new OTMException("Bad output format : " + jaxb_or.getFormat());
+                }
+            }
+
+            if(output!=null && jaxb_or.getCompressionDt()!=null)
+                output.set_compression(jaxb_or.getCompressionDt());
+
             if(output!=null)
                 outputs.add(output);
         }
@@ -341,6 +341,24 @@ public class Output {
         }
     }
 
+    /**
+     * Request aggregates of the links of a subnetwork: VHT, VKT, mean speed, delay, and mean, min, max
+     * and quantiles of vehicles and flows. Only the aggregate per period is kept or written.
+     * @param prefix Prefix for the output files. null means do not write to file.
+     * @param output_folder Output folder. null means do not write to file.
+     * @param commodity_id Id for the requested vehicle type. null means aggregate over commodities.
+     * @param subnetwork_id Id of the requested subnetwork. null means the entire network.
+     * @param outDt Sampling time.
+     * @param period Aggregation period, a multiple of outDt. null means the whole run.
+     */
+    public void request_link_aggregates(String prefix,String output_folder,Number commodity_id,Number subnetwork_id,Float outDt,Float period){
+        try {
+            this.myapi.scenario.outputs.add(new OutputLinkAggregates(myapi.scenario,prefix,output_folder,to_long(commodity_id),to_long(subnetwork_id),outDt,period));
+        } catch (OTMException e) {
+            e.printStackTrace();
+        }
+    }
+
     // ----------------------------------------------
     // vehicle events
     // ----------------------------------------------
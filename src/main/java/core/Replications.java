@@ -0,0 +1,115 @@
+package core;
+
+import error.OTMException;
+import utils.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replications of a stochastic scenario, run on a pool of threads. The scenario is parsed once;
+ * each replication builds its own OTM instance from it, with random seed base_seed+k for
+ * replication k, so that any replication can be repeated alone. At most "threads" instances
+ * exist at any time: a replication is built when a thread takes it and dropped once its outputs
+ * have been collected.
+ */
+public class Replications {
+
+    /** Requests the outputs of a replication, before it runs. Called on the thread of the replication. */
+    public interface InterfaceSetup {
+        void setup(OTM otm) throws OTMException;
+    }
+
+    /** Reads the outputs of a replication, after it runs. Calls are made one at a time, in any order of replications. */
+    public interface InterfaceCollector {
+        void collect(int replication,OTM otm) throws OTMException;
+    }
+
+    // scenario construction loads plugins into static maps
+    private static final Object build_lock = new Object();
+
+    public final jaxb.Scenario jscenario;
+    public final long base_seed;
+    private final Object collect_lock = new Object();
+
+    /**
+     * Constructor.
+     * @param jscenario Parsed scenario, see xml.JaxbLoader. It is not modified.
+     * @param base_seed Seed of the first replication.
+     */
+    public Replications(jaxb.Scenario jscenario,long base_seed){
+        this.jscenario = jscenario;
+        this.base_seed = base_seed;
+    }
+
+    /**
+     * Run replications.
+     * @param num_replications Number of replications.
+     * @param threads Number of replications that run at the same time.
+     * @param start_time Initial time in seconds.
+     * @param duration Duration of each replication in seconds.
+     * @param setup Output requests for each replication.
+     * @param collector Receives each replication when it is done.
+     * @throws OTMException The first failure of a replication, once all others have finished.
+     */
+    public void run(int num_replications,int threads,float start_time,float duration,InterfaceSetup setup,InterfaceCollector collector) throws OTMException {
+        if(threads<1)
+            throw new OTMException("Number of threads must be positive.");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(num_replications);
+            for(int k=0;k<num_replications;k++){
+                final int replication = k;
+                tasks.add(() -> {
+                    run_replication(replication,start_time,duration,setup,collector);
+                    return null;
+                });
+            }
+            List<Future<Void>> futures;
+            try {
+                futures = pool.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OTMException(e);
+            }
+            WorkerPool.await(futures);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Build the OTM instance of a replication, with its seed and without outputs.
+     * @param replication Index of the replication.
+     * @return OTM instance.
+     * @throws OTMException Undocumented
+     */
+    public OTM build(int replication) throws OTMException {
+        OTM otm;
+        synchronized (build_lock) {
+            otm = new OTM(jscenario,true);
+        }
+        otm.set_scenario_random_seed(base_seed + replication);
+        return otm;
+    }
+
+    ////////////////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////////////////
+
+    private void run_replication(int replication,float start_time,float duration,InterfaceSetup setup,InterfaceCollector collector) throws OTMException {
+        OTM otm = build(replication);
+        if(setup!=null)
+            setup.setup(otm);
+        otm.run(start_time,duration);
+        if(collector!=null)
+            synchronized (collect_lock) {
+                collector.collect(replication,otm);
+            }
+    }
+
+}
@@ -15,10 +15,12 @@ import error.OTMException;
 import dispatch.Dispatcher;
 import jaxb.Split;
 import output.AbstractOutput;
+import output.AsyncOutputWriter;
 import output.OutputPathTravelTime;
 import profiles.*;
 import sensor.AbstractSensor;
 import utils.OTMUtils;
+import utils.RandomStreams;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -40,6 +42,12 @@ public class Scenario {
 
     public Dispatcher dispatcher;
     public Set<AbstractOutput> outputs = new HashSet<>();
+    public AsyncOutputWriter output_writer;     // null: outputs write on the simulation thread
+
+    // random numbers, see RandomStreams. The streams restart from random_seed on every run;
+    // with random_seed==null every run draws a new seed.
+    public Long random_seed = OTMUtils.default_random_seed;
+    public RandomStreams random;
 
     /** Container for the network **/
     public Network network;
@@ -47,6 +55,9 @@ public class Scenario {
     /** Map of models **/
     public Map<String,AbstractModel> models;
 
+    /** Canonical states **/
+    public final StateRegistry states = new StateRegistry();
+
     /** Map of commodities**/
     public Map<Long,Commodity> commodities = new HashMap<>();     // commodity id -> commodity
 
@@ -71,6 +82,11 @@ public class Scenario {
     // travel time computation
     public LinkTravelTimeManager path_tt_manager;
 
+    // lane group and vehicle ids, counted per scenario so that scenarios can be built and
+    // run at the same time, see Replications
+    private long lane_group_counter = 0;
+    private long vehicle_id_count = 0;
+
     ///////////////////////////////////////////////////
     // validate / initialize
     ///////////////////////////////////////////////////
@@ -137,6 +153,8 @@ public class Scenario {
         errorLog1.check();
 
         // initialize components ..................................
+        random = new RandomStreams(random_seed!=null ? random_seed : new SplittableRandom().nextLong());
+
         if(dispatcher!=null)
             dispatcher.initialize();
 
@@ -374,13 +392,41 @@ public class Scenario {
     // teminate
     ///////////////////////////////////////////////////
 
-    protected void terminate() {
+    // closes all outputs, also after a failure, then throws the first failure
+    protected void terminate() throws OTMException {
+        for(AbstractModel model : models.values())
+            model.terminate();
+        OTMException failure = null;
         try {
-            for(AbstractOutput or : outputs)
-                or.close();
+            if(output_writer!=null)
+                output_writer.close();
         } catch (OTMException e) {
-            e.printStackTrace();
+            failure = e;
+        }
+        output_writer = null;
+        for(AbstractOutput or : outputs) {
+            try {
+                or.close();
+            } catch (OTMException e) {
+                if (failure == null)
+                    failure = e;
+            }
         }
+        if(failure!=null)
+            throw failure;
+    }
+
+    ///////////////////////////////////////////////////
+    // counters
+    ///////////////////////////////////////////////////
+
+    public synchronized long get_lanegroup_id(){
+        return lane_group_counter++;
+    }
+
+    // synchronized, since vehicles may be created on worker threads
+    public synchronized long get_vehicle_id(){
+        return vehicle_id_count++;
     }
 
     ///////////////////////////////////////////////////
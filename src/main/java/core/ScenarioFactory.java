@@ -17,8 +17,10 @@ import error.OTMErrorLog;
 import error.OTMException;
 import events.*;
 import models.fluid.ctm.ModelCTM;
+import models.fluid.ctm.ModelCTMArray;
 import models.none.ModelNone;
 import models.vehicle.newell.ModelNewell;
+import models.vehicle.newell.ModelNewellArray;
 import models.vehicle.spatialq.ModelSpatialQ;
 import plugin.PluginLoader;
 import profiles.*;
@@ -40,8 +42,6 @@ public class ScenarioFactory {
 
     public static Scenario create_scenario(jaxb.Scenario js, boolean validate_pre_init) throws OTMException {
 
-        OTMUtils.reset_counters();
-
         Scenario scenario = new Scenario();
 
         // plugins
@@ -69,6 +69,7 @@ public class ScenarioFactory {
 
         // generate models
         scenario.models = create_models_from_jaxb(scenario,js.getModels());
+        scenario.network.index_lanegroups();
 
         // validate
         if(validate_pre_init) {
@@ -249,6 +250,13 @@ public class ScenarioFactory {
                         jmodel.getModelParams());
                 break;
 
+            case "ctm_array":
+                model = new ModelCTMArray(jmodel.getName(),
+                        my_links,
+                        process,
+                        jmodel.getModelParams());
+                break;
+
             case "spaceq":
                 model = new ModelSpatialQ(jmodel.getName(),
                         my_links,
@@ -262,6 +270,13 @@ public class ScenarioFactory {
                         jmodel.getModelParams());
                 break;
 
+            case "micro_array":
+                model = new ModelNewellArray(jmodel.getName(),
+                        my_links,
+                        process,
+                        jmodel.getModelParams());
+                break;
+
             case "none":
                 model = new ModelNone(jmodel.getName() ,
                         my_links);
@@ -3,24 +3,35 @@ package core;
 import commodity.Commodity;
 import commodity.Path;
 
-import java.util.Objects;
-
 public class State implements Comparable<State> {
 
     public final long commodity_id;
     public final long pathOrlink_id;    // id of either a link or a path
     public final boolean isPath;        // true is pathOrlink_id is path, false otherwise
+    public final int id;                // dense id in the scenario's StateRegistry, -1 if not registered
+    private final int hash;
 
     public State(Commodity comm, Path path, Link link) {
-        this.commodity_id = comm.getId();
-        this.isPath = comm.pathfull;
-        this.pathOrlink_id = isPath ? path.getId() : link.getId();
+        this(comm.getId(), comm.pathfull ? path.getId() : link.getId(), comm.pathfull);
     }
 
     public State(long commodity_id, long pathOrlink_id, boolean isPath) {
+        this(commodity_id,pathOrlink_id,isPath,-1);
+    }
+
+    State(long commodity_id, long pathOrlink_id, boolean isPath, int id) {
         this.commodity_id = commodity_id;
         this.pathOrlink_id = pathOrlink_id;
         this.isPath = isPath;
+        this.id = id;
+        this.hash = hash(commodity_id,pathOrlink_id,isPath);
+    }
+
+    // same value as Objects.hash(commodity_id, pathOrlink_id, isPath), without boxing
+    static int hash(long commodity_id, long pathOrlink_id, boolean isPath){
+        int h = 31 + Long.hashCode(commodity_id);
+        h = 31*h + Long.hashCode(pathOrlink_id);
+        return 31*h + Boolean.hashCode(isPath);
     }
 
     @Override
@@ -28,14 +39,15 @@ public class State implements Comparable<State> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         State that = (State) o;
-        return commodity_id == that.commodity_id &&
+        return hash == that.hash &&
+                commodity_id == that.commodity_id &&
                 pathOrlink_id == that.pathOrlink_id &&
                 isPath == that.isPath;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(commodity_id, pathOrlink_id, isPath);
+        return hash;
     }
 
     @Override
@@ -0,0 +1,83 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Canonical State instances for a scenario. Each (commodity, path or link, isPath) triple is
+// created once and given a dense id, so that hot paths do not allocate keys and maps keyed by
+// State compare by reference. Lookups do not lock and do not allocate. Insertions lock and
+// publish the table through a volatile field, so the registry can be used from worker threads.
+public class StateRegistry {
+
+    private static final int initial_capacity = 64;
+
+    private volatile State[] table = new State[initial_capacity];    // open addressing, linear probing
+    private final List<State> states = new ArrayList<>();           // id -> state
+
+    // canonical instance for the triple, created if needed
+    public State get(long commodity_id,long pathOrlink_id,boolean isPath){
+        State state = find(table,commodity_id,pathOrlink_id,isPath);
+        return state==null ? insert(commodity_id,pathOrlink_id,isPath) : state;
+    }
+
+    public State get(State state){
+        return get(state.commodity_id,state.pathOrlink_id,state.isPath);
+    }
+
+    public synchronized State get(int id){
+        return states.get(id);
+    }
+
+    public synchronized int size(){
+        return states.size();
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private static State find(State[] t,long commodity_id,long pathOrlink_id,boolean isPath){
+        int mask = t.length-1;
+        for(int i=State.hash(commodity_id,pathOrlink_id,isPath) & mask; ; i=(i+1) & mask){
+            State s = t[i];
+            if(s==null)
+                return null;
+            if(s.commodity_id==commodity_id && s.pathOrlink_id==pathOrlink_id && s.isPath==isPath)
+                return s;
+        }
+    }
+
+    private synchronized State insert(long commodity_id,long pathOrlink_id,boolean isPath){
+
+        // another thread may have inserted it
+        State state = find(table,commodity_id,pathOrlink_id,isPath);
+        if(state!=null)
+            return state;
+
+        state = new State(commodity_id,pathOrlink_id,isPath,states.size());
+        states.add(state);
+
+        // keep the load below one half
+        State[] t = table;
+        if(2*states.size()>t.length){
+            t = new State[2*t.length];
+            for(State s : states)
+                put(t,s);
+            table = t;
+        }
+        else {
+            put(t,state);
+            table = t;      // publish
+        }
+        return state;
+    }
+
+    private static void put(State[] t,State state){
+        int mask = t.length-1;
+        int i = state.hashCode() & mask;
+        while(t[i]!=null)
+            i = (i+1) & mask;
+        t[i] = state;
+    }
+
+}
@@ -52,7 +52,7 @@ public class StateContainer {
                 amount.put(key,value - num_veh);
                 for(int i=0;i<num_veh;i++) {
                     Commodity commodity = scenario.commodities.get(key.commodity_id);
-                    AbstractVehicle vehicle = model.create_vehicle(key.commodity_id, commodity.vehicle_event_listeners);
+                    AbstractVehicle vehicle = model.create_vehicle(scenario.get_vehicle_id(),key.commodity_id, commodity.vehicle_event_listeners);
                     vehicle.set_state(key);
                     if(key.isPath)
                         vehicle.path = (Path) scenario.subnetworks.get(key.pathOrlink_id);
@@ -3,8 +3,7 @@ package dispatch;
 import error.OTMException;
 
 // Existing events and their dispatch order.
-//    0	    dispatch.EventDemandChange
-//    0	    dispatch.EventSplitChange
+//    0	    dispatch.EventProfileChanges
 //    5     AbstractLaneSelector.poke
 //    10	AbstractSensor.poke
 //    20	AbstractController.poke
@@ -29,6 +28,7 @@ public abstract class AbstractEvent implements InterfaceEvent, Comparable<Abstra
     public float timestamp;
     public Object recipient;
     public int dispatch_order;
+    boolean cancelled;          // set by Dispatcher.cancel_event
 
     public AbstractEvent(Dispatcher dispatcher,int dispatch_order, float timestamp, Object recipient){
         this.dispatcher = dispatcher;
@@ -0,0 +1,15 @@
+package dispatch;
+
+// An event that fires every period seconds. After dispatching it, the Dispatcher advances its
+// timestamp by the period and puts the same instance back in the queue. It stops recurring
+// when it is removed with Dispatcher.remove_events_*, or when the simulation ends.
+public abstract class AbstractEventPeriodic extends AbstractEvent {
+
+    public final float period;
+
+    public AbstractEventPeriodic(Dispatcher dispatcher, int dispatch_order, float timestamp, float period, Object recipient){
+        super(dispatcher,dispatch_order,timestamp,recipient);
+        this.period = period;
+    }
+
+}
@@ -1,21 +1,34 @@
 package dispatch;
 
+import core.AbstractDemandGenerator;
 import error.OTMException;
 import core.Scenario;
+import profiles.SplitMatrixProfile;
 
 import java.util.*;
 
-import static java.util.stream.Collectors.toSet;
-
 public  class Dispatcher {
 
+    public enum QueueType { heap, calendar }
+
     public Scenario scenario;
     public float current_time;
     public float stop_time;
-    public PriorityQueue<AbstractEvent> events;
+    public InterfaceEventQueue events;          // may contain cancelled events, which are skipped when polled
     private boolean continue_simulation;
+    private AbstractEvent current_event;        // event whose action is running
     public boolean verbose = false;
 
+    // live (queued and not cancelled) events, indexed for cancellation. Periodic events stay
+    // indexed while they recur. Sets are removed when they empty.
+    private Map<Object,Set<AbstractEvent>> recipient_index;
+    private Map<Class<? extends AbstractEvent>,Set<AbstractEvent>> class_index;
+    private int num_cancelled;                  // cancelled events still sitting in the queue
+    private static final int min_purge = 64;
+
+    // pending demand and split changes, one event per change time
+    private Map<Float,EventProfileChanges> profile_changes;
+
     public Map<Long,Integer> lg2deltalanes;    // tracks the total change in lane count caused by EventLaneGroupLane events.
 
     ///////////////////////////////////////////////////
@@ -23,9 +36,22 @@ public  class Dispatcher {
     ///////////////////////////////////////////////////
 
     public Dispatcher(){
-        this.events = new PriorityQueue<>() ;
+        this(QueueType.heap);
+    }
+
+    public Dispatcher(QueueType queue_type){
+        switch(queue_type){
+            case calendar:
+                this.events = new EventQueueCalendar();
+                break;
+            default:
+                this.events = new EventQueueHeap();
+        }
         this.continue_simulation = false;
         this.lg2deltalanes = new HashMap<>();
+        this.recipient_index = new IdentityHashMap<>();
+        this.class_index = new HashMap<>();
+        this.profile_changes = new HashMap<>();
     }
 
     public void set_stop_time(float stop_time){
@@ -39,6 +65,11 @@ public  class Dispatcher {
     public void initialize() throws OTMException {
         this.current_time = 0f;
         this.events.clear();
+        this.recipient_index.clear();
+        this.class_index.clear();
+        this.profile_changes.clear();
+        this.num_cancelled = 0;
+        this.current_event = null;
         this.continue_simulation = true;
     }
 
@@ -51,35 +82,87 @@ public  class Dispatcher {
     ///////////////////////////////////////////////////
 
     public void remove_events_of_type(Class<? extends AbstractEvent> clazz){
-
-        Set<AbstractEvent> remove = events.stream()
-                .filter(x-> x.getClass()==clazz)
-                .collect(toSet());
-
-        events.removeAll(remove);
+        Set<AbstractEvent> set = class_index.get(clazz);
+        if(set!=null)
+            for(AbstractEvent event : new ArrayList<>(set))
+                cancel_event(event);
+        if(current_event!=null && current_event.getClass()==clazz)
+            cancel_event(current_event);
     }
 
     public void remove_events_for_recipient(Class<? extends AbstractEvent> clazz, Object recipient){
+        Set<AbstractEvent> set = recipient_index.get(recipient);
+        if(set!=null)
+            for(AbstractEvent event : new ArrayList<>(set))
+                if(clazz.isAssignableFrom(event.getClass()))
+                    cancel_event(event);
+        if(current_event!=null && current_event.recipient==recipient && clazz.isAssignableFrom(current_event.getClass()))
+            cancel_event(current_event);
+    }
 
-        Set<AbstractEvent> remove = events.stream()
-                .filter(x->x.recipient==recipient && clazz.isAssignableFrom(x.getClass()) )
-                .collect(toSet());
-
-        events.removeAll(remove);
+    // Cancel a registered event. The event is left in the queue and discarded when it
+    // reaches the front. Cancelling the event that is being dispatched stops it from
+    // recurring if it is periodic.
+    public void cancel_event(AbstractEvent event){
+        if(event.cancelled)
+            return;
+        event.cancelled = true;
+        // a periodic event being dispatched is indexed but not queued
+        if(unindex(event) && event!=current_event) {
+            num_cancelled++;
+            if(num_cancelled>min_purge && num_cancelled>events.size()/2) {
+                events.removeIf(e -> e.cancelled);
+                num_cancelled = 0;
+            }
+        }
     }
 
     public void register_event(AbstractEvent event){
         if(event.timestamp<current_time) // || event.timestamp>end_time)
             return;
-        events.offer(event);
+        offer(event);
+    }
+
+    // demand change, dispatched together with all other demand and split changes at the same time
+    public void register_demand_change(float timestamp, AbstractDemandGenerator demand_gen){
+        EventProfileChanges event = get_profile_changes(timestamp);
+        if(event!=null)
+            event.demand_gens.add(demand_gen);
+    }
+
+    // split change, dispatched together with all other demand and split changes at the same time
+    public void register_split_change(float timestamp, SplitMatrixProfile split_profile){
+        EventProfileChanges event = get_profile_changes(timestamp);
+        if(event!=null)
+            event.split_profiles.add(split_profile);
+    }
+
+    // changes registered from now on at this time go into a new event
+    void end_profile_changes(EventProfileChanges event){
+        profile_changes.remove(event.timestamp,event);
     }
 
     public void dispatch_events_to_stop() throws OTMException {
         while( !events.isEmpty() && continue_simulation ) {
             AbstractEvent event = events.poll();
+            if(event.cancelled){
+                num_cancelled--;
+                continue;
+            }
+            boolean periodic = event instanceof AbstractEventPeriodic;
+            if(!periodic)
+                unindex(event);
             current_time = event.timestamp;
+            current_event = event;
             event.action();
+
+            // reschedule periodic events, which are still indexed
+            if(periodic && !event.cancelled){
+                event.timestamp += ((AbstractEventPeriodic) event).period;
+                events.offer(event);
+            }
         }
+        current_event = null;
     }
 
     public void stop(){
@@ -87,7 +170,43 @@ public  class Dispatcher {
     }
 
     public void print_events(){
-        this.events.stream().forEach(x->System.out.println(x.toString()));
+        this.events.stream().filter(x->!x.cancelled).forEach(x->System.out.println(x.toString()));
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    private EventProfileChanges get_profile_changes(float timestamp){
+        if(timestamp<current_time)
+            return null;
+        EventProfileChanges event = profile_changes.get(timestamp);
+        if(event==null || event.cancelled){
+            event = new EventProfileChanges(this,timestamp);
+            profile_changes.put(timestamp,event);
+            offer(event);
+        }
+        return event;
+    }
+
+    private void offer(AbstractEvent event){
+        events.offer(event);
+        recipient_index.computeIfAbsent(event.recipient,k->new HashSet<>()).add(event);
+        class_index.computeIfAbsent(event.getClass(),k->new HashSet<>()).add(event);
+    }
+
+    // returns true if the event was in the index
+    private boolean unindex(AbstractEvent event){
+        Set<AbstractEvent> set = recipient_index.get(event.recipient);
+        if(set==null || !set.remove(event))
+            return false;
+        if(set.isEmpty())
+            recipient_index.remove(event.recipient);
+        set = class_index.get(event.getClass());
+        set.remove(event);
+        if(set.isEmpty())
+            class_index.remove(event.getClass());
+        return true;
     }
 
 }
@@ -3,13 +3,13 @@ package dispatch;
 import traveltime.LinkTravelTimeManager;
 import error.OTMException;
 
-public class EventComputeTravelTime extends AbstractEvent  {
+public class EventComputeTravelTime extends AbstractEventPeriodic {
 
     // The object is the list of links where travel time should be computed.
     public EventComputeTravelTime(Dispatcher dispatcher, float timestamp, Object recipient) {
 
         // Note: dispatch order is 6 so that it happens before times write which is 7
-        super(dispatcher, 65, timestamp, recipient);
+        super(dispatcher, 65, timestamp, ((LinkTravelTimeManager) recipient).dt, recipient);
     }
 
     @Override
@@ -0,0 +1,16 @@
+package dispatch;
+
+import error.OTMException;
+
+public class EventPokePeriodic extends AbstractEventPeriodic {
+
+    public EventPokePeriodic(Dispatcher dispatcher, int dispatch_order, float timestamp, float period, Object recipient) {
+        super(dispatcher, dispatch_order, timestamp, period, recipient);
+    }
+
+    @Override
+    public void action() throws OTMException {
+        ((Pokable)recipient).poke(dispatcher,timestamp);
+    }
+
+}
@@ -0,0 +1,31 @@
+package dispatch;
+
+import core.AbstractDemandGenerator;
+import error.OTMException;
+import profiles.SplitMatrixProfile;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// All demand and split changes due at one time. Created by Dispatcher.register_demand_change
+// and Dispatcher.register_split_change. Splits change before demands, so that sources see the
+// new splits.
+public class EventProfileChanges extends AbstractEvent {
+
+    final Set<SplitMatrixProfile> split_profiles = new LinkedHashSet<>();
+    final Set<AbstractDemandGenerator> demand_gens = new LinkedHashSet<>();
+
+    public EventProfileChanges(Dispatcher dispatcher, float timestamp){
+        super(dispatcher,0,timestamp,null);
+    }
+
+    @Override
+    public void action() throws OTMException {
+        dispatcher.end_profile_changes(this);
+        for(SplitMatrixProfile smp : split_profiles)
+            smp.apply_scheduled_change(dispatcher,timestamp);
+        for(AbstractDemandGenerator demand_gen : demand_gens)
+            demand_gen.apply_scheduled_change(dispatcher,timestamp);
+    }
+
+}
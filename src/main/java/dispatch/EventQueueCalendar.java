@@ -0,0 +1,270 @@
+package dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Calendar queue (R. Brown, "Calendar queues: a fast O(1) priority queue implementation
+// for the simulation event set problem", CACM 1988).
+// Time is divided into "days" of equal width. Day d is stored in bucket d mod num_buckets.
+// Each bucket is kept sorted by AbstractEvent.compareTo. Events that compare equal
+// (same timestamp and dispatch_order) are always in the same bucket and are returned
+// in the order in which they were offered.
+// The number of buckets doubles/halves with the size of the queue, and the day width is
+// re-estimated from the separation of the earliest events each time this happens.
+public class EventQueueCalendar implements InterfaceEventQueue {
+
+    private static final int min_buckets = 16;
+    private static final int width_sample_size = 25;
+
+    private Bucket[] buckets;
+    private int mask;               // buckets.length-1
+    private double width;           // [sec] span of a day
+    private int size;
+
+    private int current_bucket;
+    private long current_day;       // no event in the queue belongs to a day before this one
+
+    ///////////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////////////
+
+    public EventQueueCalendar(){
+        this(1d);
+    }
+
+    public EventQueueCalendar(double initial_width){
+        this.width = initial_width;
+        allocate(min_buckets);
+    }
+
+    ///////////////////////////////////////////////////
+    // InterfaceEventQueue
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void offer(AbstractEvent event) {
+        insert(event);
+        if(size>2*buckets.length)
+            resize(2*buckets.length);
+    }
+
+    @Override
+    public AbstractEvent poll() {
+        if(size==0)
+            return null;
+        Bucket bucket = find_first();
+        AbstractEvent event = bucket.poll();
+        size--;
+        if(size<buckets.length/2 && buckets.length>min_buckets)
+            resize(buckets.length/2);
+        return event;
+    }
+
+    @Override
+    public AbstractEvent peek() {
+        return size==0 ? null : find_first().peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size==0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        allocate(min_buckets);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<AbstractEvent> filter) {
+        int removed = 0;
+        for(Bucket bucket : buckets)
+            removed += bucket.removeIf(filter);
+        size -= removed;
+        return removed>0;
+    }
+
+    @Override
+    public Stream<AbstractEvent> stream() {
+        return Arrays.stream(buckets).flatMap(b->Arrays.stream(b.items,b.head,b.tail));
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    private long day(AbstractEvent event){
+        return (long) Math.floor(event.timestamp / width);
+    }
+
+    // Advance current_day to the day of the earliest event and return its bucket.
+    private Bucket find_first(){
+
+        // scan one year of buckets
+        for(int i=0;i<buckets.length;i++){
+            Bucket bucket = buckets[current_bucket];
+            if(!bucket.isEmpty() && day(bucket.peek())<=current_day)
+                return bucket;
+            current_bucket = (current_bucket+1) & mask;
+            current_day++;
+        }
+
+        // nothing in the coming year: direct search over the bucket heads
+        AbstractEvent first = null;
+        for(Bucket bucket : buckets)
+            if(!bucket.isEmpty() && (first==null || bucket.peek().compareTo(first)<0))
+                first = bucket.peek();
+        current_day = day(first);
+        current_bucket = (int) (current_day & mask);
+        return buckets[current_bucket];
+    }
+
+    private void allocate(int num_buckets){
+        buckets = new Bucket[num_buckets];
+        for(int i=0;i<num_buckets;i++)
+            buckets[i] = new Bucket();
+        mask = num_buckets-1;
+        size = 0;
+        current_bucket = 0;
+        current_day = 0;
+    }
+
+    private void resize(int num_buckets){
+
+        // take the earliest events in order, and use them to estimate the new day width
+        int n = Math.min(size,width_sample_size);
+        AbstractEvent[] first = new AbstractEvent[n];
+        for(int i=0;i<n;i++) {
+            Bucket bucket = find_first();
+            first[i] = bucket.poll();
+            size--;
+        }
+        width = estimate_width(first,width);
+
+        // collect the rest. The relative order of events that compare equal is preserved
+        // because they sit contiguously in the same bucket.
+        List<AbstractEvent> rest = new ArrayList<>(size);
+        for(Bucket bucket : buckets)
+            for(int i=bucket.head;i<bucket.tail;i++)
+                rest.add(bucket.items[i]);
+
+        allocate(num_buckets);
+        for(AbstractEvent event : first)
+            insert(event);
+        for(AbstractEvent event : rest)
+            insert(event);
+    }
+
+    private void insert(AbstractEvent event){
+        long day = day(event);
+        if(size==0 || day<current_day){
+            current_day = day;
+            current_bucket = (int) (day & mask);
+        }
+        buckets[(int) (day & mask)].insert(event);
+        size++;
+    }
+
+    // Brown's heuristic: three times the average separation, after discarding
+    // separations larger than twice the raw average. Zero separations (simultaneous
+    // events) carry no information and are ignored.
+    private static double estimate_width(AbstractEvent[] first,double old_width){
+
+        double sum = 0d;
+        int count = 0;
+        for(int i=1;i<first.length;i++){
+            double sep = first[i].timestamp - first[i-1].timestamp;
+            if(sep>0){
+                sum += sep;
+                count++;
+            }
+        }
+        if(count==0)
+            return old_width;
+
+        double avg = sum/count;
+        sum = 0d;
+        count = 0;
+        for(int i=1;i<first.length;i++){
+            double sep = first[i].timestamp - first[i-1].timestamp;
+            if(sep>0 && sep<=2d*avg){
+                sum += sep;
+                count++;
+            }
+        }
+        return 3d*sum/count;
+    }
+
+    ///////////////////////////////////////////////////
+    // class
+    ///////////////////////////////////////////////////
+
+    // Sorted array of events. Events are removed from the head and usually inserted at the tail.
+    private static final class Bucket {
+
+        AbstractEvent[] items = new AbstractEvent[4];
+        int head = 0;
+        int tail = 0;
+
+        boolean isEmpty(){
+            return head==tail;
+        }
+
+        AbstractEvent peek(){
+            return items[head];
+        }
+
+        AbstractEvent poll(){
+            AbstractEvent event = items[head];
+            items[head++] = null;
+            if(head==tail)
+                head = tail = 0;
+            return event;
+        }
+
+        // insert after all events that are not greater than this one
+        void insert(AbstractEvent event){
+
+            if(tail==items.length){
+                if(head>0){
+                    System.arraycopy(items,head,items,0,tail-head);
+                    Arrays.fill(items,tail-head,tail,null);
+                    tail -= head;
+                    head = 0;
+                }
+                else
+                    items = Arrays.copyOf(items,2*items.length);
+            }
+
+            int i = tail;
+            while(i>head && items[i-1].compareTo(event)>0)
+                i--;
+            if(i<tail)
+                System.arraycopy(items,i,items,i+1,tail-i);
+            items[i] = event;
+            tail++;
+        }
+
+        int removeIf(Predicate<AbstractEvent> filter){
+            int j = head;
+            for(int i=head;i<tail;i++)
+                if(!filter.test(items[i]))
+                    items[j++] = items[i];
+            int removed = tail-j;
+            Arrays.fill(items,j,tail,null);
+            tail = j;
+            if(head==tail)
+                head = tail = 0;
+            return removed;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package dispatch;
+
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Binary heap event queue. This is the default.
+public class EventQueueHeap implements InterfaceEventQueue {
+
+    private final PriorityQueue<AbstractEvent> events = new PriorityQueue<>();
+
+    @Override
+    public void offer(AbstractEvent event) {
+        events.offer(event);
+    }
+
+    @Override
+    public AbstractEvent poll() {
+        return events.poll();
+    }
+
+    @Override
+    public AbstractEvent peek() {
+        return events.peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+
+    @Override
+    public void clear() {
+        events.clear();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<AbstractEvent> filter) {
+        return events.removeIf(filter);
+    }
+
+    @Override
+    public Stream<AbstractEvent> stream() {
+        return events.stream();
+    }
+
+}
@@ -3,16 +3,14 @@ package dispatch;
 import error.OTMException;
 import output.AbstractOutputTimed;
 
-public class EventTimedWrite extends AbstractEvent {
+public class EventTimedWrite extends AbstractEventPeriodic {
 
     public EventTimedWrite(Dispatcher dispatcher,float timestamp,Object obj){
-        super(dispatcher,70,timestamp,obj);
+        super(dispatcher,70,timestamp,((AbstractOutputTimed)obj).outDt,obj);
     }
 
     @Override
     public void action() throws OTMException {
-        AbstractOutputTimed obj = (AbstractOutputTimed)recipient;
-        obj.write(timestamp);
-        dispatcher.register_event(new EventTimedWrite(dispatcher,timestamp + obj.outDt,recipient));
+        ((AbstractOutputTimed)recipient).write(timestamp);
     }
 }
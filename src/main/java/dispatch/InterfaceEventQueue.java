@@ -0,0 +1,26 @@
+package dispatch;
+
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Future event set used by the Dispatcher. Implementations must return events
+// ordered by AbstractEvent.compareTo (timestamp, then dispatch_order).
+public interface InterfaceEventQueue {
+
+    void offer(AbstractEvent event);
+
+    AbstractEvent poll();
+
+    AbstractEvent peek();
+
+    boolean isEmpty();
+
+    int size();
+
+    void clear();
+
+    boolean removeIf(Predicate<AbstractEvent> filter);
+
+    Stream<AbstractEvent> stream();
+
+}
@@ -6,7 +6,6 @@ import control.commodity.ControllerFlowToLinks;
 import core.Link;
 import core.Scenario;
 import dispatch.AbstractEvent;
-import dispatch.EventSplitChange;
 import error.OTMErrorLog;
 import error.OTMException;
 import profiles.SplitMatrixProfile;
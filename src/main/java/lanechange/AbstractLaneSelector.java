@@ -3,7 +3,7 @@ package lanechange;
 import core.Link;
 import core.Scenario;
 import dispatch.Dispatcher;
-import dispatch.EventPoke;
+import dispatch.EventPokePeriodic;
 import dispatch.Pokable;
 import error.OTMException;
 
@@ -19,14 +19,14 @@ public abstract class AbstractLaneSelector implements Pokable {
     }
 
     public void initialize(Scenario scenario, float start_time) throws OTMException {
-        poke(scenario.dispatcher,start_time);
+        update();
+        if(dt!=null)
+            scenario.dispatcher.register_event(new EventPokePeriodic(scenario.dispatcher,5,start_time+dt,dt,this));
     }
 
     @Override
     public void poke(Dispatcher dispatcher, float timestamp) throws OTMException {
         update();
-        if(dt!=null)
-            dispatcher.register_event(new EventPoke(dispatcher,5,timestamp+dt,this));
     }
 
 }
@@ -1,21 +1,19 @@
 package models.fluid;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 import output.OutputCellSumVehiclesDwn;
 
-public class EventUpdateTotalCellVehiclesDwn extends AbstractEvent {
+public class EventUpdateTotalCellVehiclesDwn extends AbstractEventPeriodic {
 
     public EventUpdateTotalCellVehiclesDwn(Dispatcher dispatcher, float timestamp, Object recipient) {
-        super(dispatcher, 69, timestamp, recipient);
+        super(dispatcher, 69, timestamp, ((OutputCellSumVehiclesDwn)recipient).simDt, recipient);
     }
 
     @Override
     public void action() throws OTMException {
-        OutputCellSumVehiclesDwn obj = (OutputCellSumVehiclesDwn)recipient;
-        obj.update_total_vehicles(timestamp);
-        dispatcher.register_event(new EventUpdateTotalCellVehiclesDwn(dispatcher,timestamp + obj.simDt,recipient));
+        ((OutputCellSumVehiclesDwn)recipient).update_total_vehicles(timestamp);
     }
 
 }
@@ -1,20 +1,19 @@
 package models.fluid;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 import output.OutputLaneGroupSumVehicles;
 
-public class EventUpdateTotalLanegroupVehicles extends AbstractEvent {
+public class EventUpdateTotalLanegroupVehicles extends AbstractEventPeriodic {
 
     public EventUpdateTotalLanegroupVehicles(Dispatcher dispatcher, float timestamp, Object recipient) {
-        super(dispatcher, 69, timestamp, recipient);
+        super(dispatcher, 69, timestamp, ((OutputLaneGroupSumVehicles)recipient).simDt, recipient);
     }
 
     @Override
     public void action() throws OTMException {
-        OutputLaneGroupSumVehicles obj = (OutputLaneGroupSumVehicles)recipient;
-        obj.update_total_vehicles(timestamp);
-        dispatcher.register_event(new EventUpdateTotalLanegroupVehicles(dispatcher,timestamp + obj.simDt,recipient));
+        ((OutputLaneGroupSumVehicles)recipient).update_total_vehicles(timestamp);
     }
+
 }
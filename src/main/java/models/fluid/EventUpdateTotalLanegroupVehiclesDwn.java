@@ -1,20 +1,19 @@
 package models.fluid;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 import output.OutputLaneGroupSumVehiclesDwn;
 
-public class EventUpdateTotalLanegroupVehiclesDwn extends AbstractEvent {
+public class EventUpdateTotalLanegroupVehiclesDwn extends AbstractEventPeriodic {
 
     public EventUpdateTotalLanegroupVehiclesDwn(Dispatcher dispatcher, float timestamp, Object recipient) {
-        super(dispatcher, 69, timestamp, recipient);
+        super(dispatcher, 69, timestamp, ((OutputLaneGroupSumVehiclesDwn)recipient).simDt, recipient);
     }
 
     @Override
     public void action() throws OTMException {
-        OutputLaneGroupSumVehiclesDwn obj = (OutputLaneGroupSumVehiclesDwn)recipient;
-        obj.update_total_vehicles(timestamp);
-        dispatcher.register_event(new EventUpdateTotalLanegroupVehiclesDwn(dispatcher,timestamp + obj.simDt,recipient));
+        ((OutputLaneGroupSumVehiclesDwn)recipient).update_total_vehicles(timestamp);
     }
+
 }
@@ -1,20 +1,19 @@
 package models.fluid;
 
-import dispatch.AbstractEvent;
+import dispatch.AbstractEventPeriodic;
 import dispatch.Dispatcher;
 import error.OTMException;
 import output.OutputLinkSumVehicles;
 
-public class EventUpdateTotalLinkVehicles extends AbstractEvent {
+public class EventUpdateTotalLinkVehicles extends AbstractEventPeriodic {
 
     public EventUpdateTotalLinkVehicles(Dispatcher dispatcher, float timestamp, Object recipient) {
-        super(dispatcher, 69, timestamp, recipient);
+        super(dispatcher, 69, timestamp, ((OutputLinkSumVehicles)recipient).simDt, recipient);
     }
 
     @Override
     public void action() throws OTMException {
-        OutputLinkSumVehicles obj = (OutputLinkSumVehicles)recipient;
-        obj.update_total_vehicles(timestamp);
-        dispatcher.register_event(new EventUpdateTotalLinkVehicles(dispatcher,timestamp + obj.simDt,recipient));
+        ((OutputLinkSumVehicles)recipient).update_total_vehicles(timestamp);
     }
+
 }
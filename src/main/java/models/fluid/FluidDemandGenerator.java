@@ -50,7 +50,7 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
         Long comm_id = commodity.getId();
 
         if(commodity.pathfull){
-            final State state = new State(comm_id,path.getId(),true);
+            final State state = link.get_scenario().states.get(comm_id,path.getId(),true);
             double sum = link.get_lgs().stream()
                     .mapToDouble(lg->((FluidLaneGroup)lg).capacity_veh_per_dt)
                     .sum();
@@ -67,7 +67,7 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
             if(link.get_outlink_ids().size()<2){
 
                 Long nextlink_id = link.get_outlink_ids().iterator().next();
-                State state = new State(comm_id,nextlink_id,false);
+                State state = link.get_scenario().states.get(comm_id,nextlink_id,false);
 
                 List<Double> capacities = link.get_lgs().stream()
                         .map(lg->((FluidLaneGroup)lg).capacity_veh_per_dt)
@@ -91,7 +91,7 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
                 for(Map.Entry<Long,Double> e : outlink2split.entrySet() ){
                     Long nextlink_id = e.getKey();
                     Double split = e.getValue();
-                    State state = new State(comm_id,nextlink_id,false);
+                    State state = link.get_scenario().states.get(comm_id,nextlink_id,false);
 
                     if(!OTMUtils.greater_than(split,0d))
                         continue;
@@ -117,6 +117,7 @@ public class FluidLaneGroup extends AbstractLaneGroup {
         capacity_veh_per_dt = capacity_vehperlane * num_lanes;
 
         ((AbstractFluidModel) link.get_model()).set_road_param_apply_cell_length(this);
+        ((AbstractFluidModel) link.get_model()).wake(link);
     }
 
     @Override
@@ -146,11 +147,13 @@ public class FluidLaneGroup extends AbstractLaneGroup {
         double act_capacity_veh_per_dt = rate_vps * ((AbstractFluidModel)link.get_model()).dt_sec;
         this.capacity_veh_per_dt = Math.min(act_capacity_veh_per_dt,nom_capacity_veh_per_dt);
         update_long_supply();
+        ((AbstractFluidModel) link.get_model()).wake(link);
     }
 
     @Override
     public void set_to_nominal_capacity() {
         this.capacity_veh_per_dt = nom_capacity_veh_per_dt;
+        ((AbstractFluidModel) link.get_model()).wake(link);
     }
 
     @Override
@@ -165,6 +168,7 @@ public class FluidLaneGroup extends AbstractLaneGroup {
         critical_density_veh = critical_vehperlane * num_lanes;
         wspeed_cell_per_dt = capacity_veh_per_dt / (jam_density_veh_per_cell -critical_vehperlane);
         compute_lcw();
+        ((AbstractFluidModel) link.get_model()).wake(link);
     }
 
     @Override
@@ -205,7 +209,7 @@ public class FluidLaneGroup extends AbstractLaneGroup {
 
                 // update state
                 if(!state.isPath)
-                    state = new State(mycomm,nextlink_id,false);
+                    state = link.get_scenario().states.get(mycomm,nextlink_id,false);
 
                 // if there are no lc options available, then the vehicles must choose
                 // another path for their commodity
@@ -223,6 +227,7 @@ public class FluidLaneGroup extends AbstractLaneGroup {
             }
         }
         update_long_supply();
+        ((AbstractFluidModel) link.get_model()).wake(link);
     }
 
     @Override
@@ -0,0 +1,367 @@
+package models.fluid.ctm;
+
+import core.State;
+import models.Maneuver;
+import models.fluid.AbstractCell;
+import models.fluid.FluidLaneGroup;
+import utils.OTMUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Cell of ModelCTMArray. The cell holds no per-state values itself. It is a view
+// onto row `row` of the arrays of its lane group.
+public class CTMArrayCell extends AbstractCell {
+
+    protected CTMStateArrays arrays;
+    protected int row;
+    protected int offset;       // row*num_states
+
+    protected double total_vehs_dwn;
+    protected double total_vehs_out;
+    protected double total_vehs_in;
+
+    // returned by get_demand. Keys are fixed, values are refreshed after update_demand.
+    private Map<State,Double> demand_map;
+    private boolean demand_map_stale;
+
+    public CTMArrayCell(FluidLaneGroup laneGroup) {
+        super(laneGroup);
+    }
+
+    void set_arrays(CTMStateArrays arrays,int row){
+        this.arrays = arrays;
+        this.row = row;
+        this.offset = row*arrays.num_states;
+        this.demand_map = new HashMap<>();
+        for(State state : laneGroup.get_link().states)
+            demand_map.put(state,0d);
+        this.demand_map_stale = true;
+    }
+
+    @Override
+    public Map<State, Double> get_demand() {
+        if(demand_map_stale) {
+            for (int j = 0; j < arrays.num_states; j++)
+                demand_map.put(arrays.states[j], arrays.demand_dwn[offset + j]);
+            demand_map_stale = false;
+        }
+        return demand_map;
+    }
+
+    @Override
+    public void allocate_state() {
+        total_vehs_dwn = 0d;
+        total_vehs_out = 0d;
+        total_vehs_in = 0d;
+    }
+
+    @Override
+    public void set_state() {
+
+    }
+
+    @Override
+    public void update_supply(){
+
+        if(laneGroup.get_link().is_source())
+            return;
+
+        if (laneGroup.get_link().is_sink())
+            supply = laneGroup.capacity_veh_per_dt;
+        else {
+            double total_vehicles = get_vehicles();
+            if(am_dnstrm)
+                supply = Math.min(laneGroup.wspeed_cell_per_dt * (laneGroup.jam_density_veh_per_cell - total_vehicles), laneGroup.capacity_veh_per_dt);
+            else {
+                if(am_upstrm && laneGroup.get_link().is_model_source_link())
+                    total_vehicles += laneGroup.buffer.get_total_veh();
+                supply = laneGroup.wspeed_cell_per_dt * (laneGroup.jam_density_veh_per_cell - total_vehicles);
+            }
+        }
+    }
+
+    @Override
+    public void update_demand(){
+
+        final int ns = arrays.num_states;
+        final int end = offset+ns;
+        final double[] veh_dwn = arrays.veh_dwn;
+        final double[] veh_out = arrays.veh_out;
+        final double[] veh_in = arrays.veh_in;
+
+        double total_vehicles = total_vehs_dwn + total_vehs_out + total_vehs_in;
+        demand_map_stale = true;
+
+        // case empty link
+        if (total_vehicles < OTMUtils.epsilon) {
+            Arrays.fill(arrays.demand_dwn,offset,end,0d);
+            if(arrays.demand_out!=null)
+                Arrays.fill(arrays.demand_out,offset,end,0d);
+            if(arrays.demand_in!=null)
+                Arrays.fill(arrays.demand_in,offset,end,0d);
+            return;
+        }
+
+        // compute total demand
+        double total_demand;
+        boolean block = ((ModelCTM) laneGroup.get_link().get_model()).block;
+        if (laneGroup.get_link().is_source()) {
+            // sources discharge at capacity
+            total_demand = Math.min(total_vehicles, laneGroup.capacity_veh_per_dt);
+        }
+        else {
+            if(am_dnstrm)
+                if ( block && total_vehs_out + total_vehs_in > OTMUtils.epsilon)
+                    total_demand = 0d;
+                else
+                    total_demand = Math.min(laneGroup.ffspeed_cell_per_dt * total_vehicles, laneGroup.capacity_veh_per_dt);
+            else
+                total_demand = laneGroup.ffspeed_cell_per_dt * total_vehicles;
+        }
+
+        // no blocking strategy: see CTMCell.update_demand
+        if (am_dnstrm && !block) {
+
+            Long alt_next_link = laneGroup.get_link().alt_next_link;
+
+            if(alt_next_link!=null) {
+                double vcl, vclout, vclin;
+                for (int j=0;j<ns;j++) {
+                    State state = arrays.states[j];
+                    if (state.isPath)
+                        continue;
+                    if (state.pathOrlink_id == alt_next_link)
+                        continue;
+
+                    vcl = 0d;
+                    if (veh_out != null) {
+                        vclout = veh_out[offset+j];
+                        vcl += vclout;
+                        veh_out[offset+j] = 0d;
+                        total_vehs_out -= vclout;
+                    }
+                    if (veh_in != null) {
+                        vclin = veh_in[offset+j];
+                        vcl += vclin;
+                        veh_in[offset+j] = 0d;
+                        total_vehs_in -= vclin;
+                    }
+
+                    if (vcl > OTMUtils.epsilon) {
+                        int k = offset + arrays.state_index.get(laneGroup.get_link().get_scenario().states.get(state.commodity_id, alt_next_link, false));
+                        veh_dwn[k] = veh_dwn[k] + veh_dwn[offset+j] + vcl;
+                        total_vehs_dwn += vcl;
+                    }
+                }
+            }
+
+            double alpha = total_demand / total_vehicles;
+            for (int i=offset;i<end;i++)
+                arrays.demand_dwn[i] = veh_dwn[i] * alpha;
+
+            return;
+        }
+
+        // standard strategy
+        double alpha = total_demand / total_vehicles;
+        for (int i=offset;i<end;i++) {
+            arrays.demand_dwn[i] = veh_dwn[i] * alpha;
+            if(veh_out!=null)
+                arrays.demand_out[i] = veh_out[i] * alpha;
+            if(veh_in!=null)
+                arrays.demand_in[i] = veh_in[i] * alpha;
+        }
+
+    }
+
+    @Override
+    public void add_vehicles(State state, Double vehs, Map<Maneuver,Double> maneuver2prob ){
+
+        if(vehs<=0)
+            return;
+
+        int k = offset + arrays.state_index.get(state);
+
+        for(Map.Entry<Maneuver,Double> e : maneuver2prob.entrySet()){
+
+            if(e.getValue()<=0)
+                continue;
+
+            double val = e.getValue()*vehs;
+
+            switch(e.getKey()){
+                case stay:
+                    arrays.veh_dwn[k] += val;
+                    total_vehs_dwn += val;
+                    break;
+                case lcin:
+                    arrays.veh_in[k] += val;
+                    total_vehs_in += val;
+                    break;
+                case lcout:
+                    arrays.veh_out[k] += val;
+                    total_vehs_out += val;
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void add_vehicles(Map<State, Double> dwn, Map<State, Double> in, Map<State, Double> out) {
+        if (dwn != null)
+            for (Map.Entry<State, Double> e : dwn.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_dwn[offset + arrays.state_index.get(e.getKey())] += value;
+                    total_vehs_dwn += value;
+                }
+            }
+        if (in != null)
+            for (Map.Entry<State, Double> e : in.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_in[offset + arrays.state_index.get(e.getKey())] += value;
+                    total_vehs_in += value;
+                }
+            }
+        if (out != null)
+            for (Map.Entry<State, Double> e : out.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_out[offset + arrays.state_index.get(e.getKey())] += value;
+                    total_vehs_out += value;
+                }
+            }
+    }
+
+    @Override
+    public void subtract_vehicles(Map<State, Double> dwn, Map<State, Double> in, Map<State, Double> out) {
+        if (dwn != null)
+            for (Map.Entry<State, Double> e : dwn.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_dwn[offset + arrays.state_index.get(e.getKey())] -= value;
+                    total_vehs_dwn -= value;
+                    if(flw_acc!=null)
+                        flw_acc.increment(e.getKey(),value);
+                }
+            }
+        if (in != null)
+            for (Map.Entry<State, Double> e : in.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_in[offset + arrays.state_index.get(e.getKey())] -= value;
+                    total_vehs_in -= value;
+                    if(flw_acc!=null)
+                        flw_acc.increment(e.getKey(),value);
+                }
+            }
+        if (out != null)
+            for (Map.Entry<State, Double> e : out.entrySet()) {
+                double value = e.getValue();
+                if (value > 0d) {
+                    arrays.veh_out[offset + arrays.state_index.get(e.getKey())] -= value;
+                    total_vehs_out -= value;
+                    if(flw_acc!=null)
+                        flw_acc.increment(e.getKey(),value);
+                }
+            }
+    }
+
+    // array versions of add_vehicles and subtract_vehicles, for flows between cells of a lane group.
+    // Each argument is a single row indexed by state, or null.
+    void add_flows(double[] dwn, double[] in, double[] out){
+        final int ns = arrays.num_states;
+        if (dwn != null)
+            for (int j=0;j<ns;j++)
+                if (dwn[j] > 0d) {
+                    arrays.veh_dwn[offset+j] += dwn[j];
+                    total_vehs_dwn += dwn[j];
+                }
+        if (in != null)
+            for (int j=0;j<ns;j++)
+                if (in[j] > 0d) {
+                    arrays.veh_in[offset+j] += in[j];
+                    total_vehs_in += in[j];
+                }
+        if (out != null)
+            for (int j=0;j<ns;j++)
+                if (out[j] > 0d) {
+                    arrays.veh_out[offset+j] += out[j];
+                    total_vehs_out += out[j];
+                }
+    }
+
+    void subtract_flows(double[] dwn, double[] in, double[] out){
+        final int ns = arrays.num_states;
+        if (dwn != null)
+            for (int j=0;j<ns;j++)
+                if (dwn[j] > 0d) {
+                    arrays.veh_dwn[offset+j] -= dwn[j];
+                    total_vehs_dwn -= dwn[j];
+                    if(flw_acc!=null)
+                        flw_acc.increment(arrays.states[j],dwn[j]);
+                }
+        if (in != null)
+            for (int j=0;j<ns;j++)
+                if (in[j] > 0d) {
+                    arrays.veh_in[offset+j] -= in[j];
+                    total_vehs_in -= in[j];
+                    if(flw_acc!=null)
+                        flw_acc.increment(arrays.states[j],in[j]);
+                }
+        if (out != null)
+            for (int j=0;j<ns;j++)
+                if (out[j] > 0d) {
+                    arrays.veh_out[offset+j] -= out[j];
+                    total_vehs_out -= out[j];
+                    if(flw_acc!=null)
+                        flw_acc.increment(arrays.states[j],out[j]);
+                }
+    }
+
+    @Override
+    public double get_veh_dwn_for_commodity(Long comm_id) {
+        return comm_id==null ? total_vehs_dwn : sum_for_commodity(arrays.veh_dwn,comm_id);
+    }
+
+    @Override
+    public double get_veh_in_for_commodity(Long comm_id) {
+        return comm_id==null ? total_vehs_in : sum_for_commodity(arrays.veh_in,comm_id);
+    }
+
+    @Override
+    public double get_veh_out_for_commodity(Long comm_id) {
+        return comm_id==null ? total_vehs_out : sum_for_commodity(arrays.veh_out,comm_id);
+    }
+
+    @Override
+    public double get_veh_for_commodity(Long comm_id) {
+        return get_veh_dwn_for_commodity(comm_id) + get_veh_in_for_commodity(comm_id) + get_veh_out_for_commodity(comm_id);
+    }
+
+    @Override
+    public double get_vehicles() {
+        return total_vehs_dwn + total_vehs_in + total_vehs_out;
+    }
+
+    // compensated sum, as in OTMUtils.sum(double[],int,int), over the columns of this commodity
+    private double sum_for_commodity(double[] x,long comm_id){
+        if(x==null)
+            return 0d;
+        double sum = 0d;
+        double c = 0d;
+        for(int j=0;j<arrays.num_states;j++){
+            if(arrays.states[j].commodity_id!=comm_id)
+                continue;
+            double y = x[offset+j] - c;
+            double t = sum + y;
+            c = (t - sum) - y;
+            sum = t;
+        }
+        return sum - c;
+    }
+
+}
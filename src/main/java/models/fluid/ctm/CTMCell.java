@@ -175,7 +175,7 @@ public class CTMCell extends AbstractCell {
                     }
 
                     if (vcl > OTMUtils.epsilon) {
-                        State newstate = new State(state.commodity_id, alt_next_link, false);
+                        State newstate = laneGroup.get_link().get_scenario().states.get(state.commodity_id, alt_next_link, false);
                         veh_dwn.put(newstate, veh_dwn.get(newstate) + veh_dwn.get(state) + vcl);
                         total_vehs_dwn += vcl;
                     }
@@ -0,0 +1,62 @@
+package models.fluid.ctm;
+
+import core.State;
+import models.fluid.FluidLaneGroup;
+
+import java.util.Map;
+
+// State of the cells of a lane group for ModelCTMArray.
+// Arrays have one row per cell and one column per state: value for cell i and state j is at i*num_states+j.
+// Column indices are shared by all lane groups of a link.
+public class CTMStateArrays {
+
+    public final FluidLaneGroup lg;
+    public final State[] states;                    // column -> state
+    public final Map<State,Integer> state_index;    // state -> column
+    public final int num_states;
+    public final int num_cells;
+
+    // vehicles and demand already in their target lanegroup
+    public final double[] veh_dwn;
+    public final double[] demand_dwn;
+
+    // vehicles wishing to change lanes outward, null if there is no outer lane group
+    public final double[] veh_out;
+    public final double[] demand_out;
+
+    // vehicles wishing to change lanes inward, null if there is no inner lane group
+    public final double[] veh_in;
+    public final double[] demand_in;
+
+    // flows out of a cell, one row, overwritten in every step
+    final double[] flow_dwn;
+    final double[] flow_out;
+    final double[] flow_in;
+
+    public CTMStateArrays(FluidLaneGroup lg, State[] states, Map<State,Integer> state_index){
+        this.lg = lg;
+        this.states = states;
+        this.state_index = state_index;
+        this.num_states = states.length;
+        this.num_cells = lg.cells.size();
+
+        int n = num_cells*num_states;
+        veh_dwn = new double[n];
+        demand_dwn = new double[n];
+        flow_dwn = new double[num_states];
+
+        boolean has_out = lg.get_neighbor_out()!=null;
+        veh_out = has_out ? new double[n] : null;
+        demand_out = has_out ? new double[n] : null;
+        flow_out = has_out ? new double[num_states] : null;
+
+        boolean has_in = lg.get_neighbor_in()!=null;
+        veh_in = has_in ? new double[n] : null;
+        demand_in = has_in ? new double[n] : null;
+        flow_in = has_in ? new double[num_states] : null;
+
+        for(int i=0;i<num_cells;i++)
+            ((CTMArrayCell) lg.cells.get(i)).set_arrays(this,i);
+    }
+
+}
@@ -262,7 +262,7 @@ public class ModelCTM extends AbstractFluidModel {
     }
 
     // call update_supply_demand on each cell
-    private void update_supply_for_all_cells(Link link,float timestamp) {
+    protected void update_supply_for_all_cells(Link link,float timestamp) {
         for(AbstractLaneGroup lg : link.get_lgs()) {
             FluidLaneGroup ctmlg = (FluidLaneGroup) lg;
             if(!ctmlg.get_link().states.isEmpty())
@@ -270,7 +270,7 @@ public class ModelCTM extends AbstractFluidModel {
         }
     }
 
-    private void update_demand(Link link,float timestamp) {
+    protected void update_demand(Link link,float timestamp) {
         for(AbstractLaneGroup lg : link.get_lgs()) {
             FluidLaneGroup ctmlg = (FluidLaneGroup) lg;
             if(!ctmlg.get_link().states.isEmpty())
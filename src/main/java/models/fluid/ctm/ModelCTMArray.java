@@ -0,0 +1,256 @@
+package models.fluid.ctm;
+
+import actuator.ActuatorFlowToLinks;
+import core.*;
+import error.OTMException;
+import models.Maneuver;
+import models.fluid.*;
+import traveltime.FluidLaneGroupTimer;
+import utils.OTMUtils;
+import utils.StochasticProcess;
+
+import java.util.*;
+
+// Cell transmission model with the cell state in flat arrays (model type "ctm_array").
+// The states of each link get dense column indices when the model is initialized, and
+// vehicles, demands and flows are held in double[] arrays with one row per cell (see
+// CTMStateArrays). The intra-link update and lane changes run on these arrays without
+// boxing or allocation. Results are the same as ModelCTM.
+public class ModelCTMArray extends ModelCTM {
+
+    // lane change flow reduction per lane group, one scratch array per link so that links can
+    // be updated on different threads. Filled on initialize and only read afterwards.
+    private final Map<Link,double[]> lc_gamma = new IdentityHashMap<>();
+
+    public ModelCTMArray(String name, Set<Link> links, StochasticProcess process, jaxb.ModelParams param) throws OTMException {
+        super(name,links,process,param);
+    }
+
+    //////////////////////////////////////////////////////////////
+    // InterfaceModel
+    //////////////////////////////////////////////////////////////
+
+    @Override
+    public void initialize(Scenario scenario, float start_time) throws OTMException {
+
+        // assign column indices and allocate the arrays
+        for(Link link : links) {
+            Map<State,Integer> state_index = new HashMap<>();
+            State[] states = new State[link.states.size()];
+            for (State state : link.states) {
+                states[state_index.size()] = state;
+                state_index.put(state, state_index.size());
+            }
+            for (AbstractLaneGroup lg : link.get_lgs())
+                new CTMStateArrays((FluidLaneGroup) lg, states, state_index);
+            lc_gamma.put(link,new double[link.get_lgs().size()]);
+        }
+
+        super.initialize(scenario,start_time);
+    }
+
+    @Override
+    public AbstractCell create_cell(FluidLaneGroup lg) throws OTMException {
+        return new CTMArrayCell(lg);
+    }
+
+    //////////////////////////////////////////////////////////////
+    // InterfaceFluidModel
+    //////////////////////////////////////////////////////////////
+
+    @Override
+    public void compute_lanechange_demand_supply(Link link, float timestamp) throws OTMException {
+        update_supply_for_all_cells(link,timestamp);
+        perform_lane_changes(link);
+        update_demand(link,timestamp);
+    }
+
+    @Override
+    public void update_link_state(Link link,float timestamp) throws OTMException {
+
+        for(AbstractLaneGroup alg : link.get_lgs()) {
+
+            FluidLaneGroup lg = (FluidLaneGroup) alg;
+
+            if(lg.get_link().states.isEmpty())
+                continue;
+
+            CTMStateArrays A = ((CTMArrayCell) lg.cells.get(0)).arrays;
+            final int ns = A.num_states;
+            final double[] flow_dwn = A.flow_dwn;
+            final double[] flow_out = A.flow_out;
+            final double[] flow_in = A.flow_in;
+
+            double total_travel_time = 0d;
+
+            for(int i=0;i<A.num_cells-1;i++) {
+
+                CTMArrayCell upcell = (CTMArrayCell) lg.cells.get(i);
+                CTMArrayCell dncell = (CTMArrayCell) lg.cells.get(i + 1);
+                final int up = upcell.offset;
+
+                // total demand
+                double total_demand = OTMUtils.sum(A.demand_dwn,up,up+ns);
+                total_demand += A.demand_out == null ? 0d : OTMUtils.sum(A.demand_out,up,up+ns);
+                total_demand += A.demand_in == null ? 0d : OTMUtils.sum(A.demand_in,up,up+ns);
+
+                if (total_demand > OTMUtils.epsilon) {
+                    double total_flow = Math.min(total_demand, dncell.supply);
+                    double ratio = total_flow / total_demand;
+
+                    for(int j=0;j<ns;j++) {
+                        flow_dwn[j] = A.demand_dwn[up+j] * ratio;
+                        if(flow_in!=null)
+                            flow_in[j] = A.demand_in[up+j] * ratio;
+                        if(flow_out!=null)
+                            flow_out[j] = A.demand_out[up+j] * ratio;
+                    }
+
+                    // travel time computation
+                    if(lg.travel_timer!=null){
+                        double veh = upcell.get_vehicles();
+                        double tt;
+                        if(veh>0) {
+                            double out_flow = OTMUtils.sum(flow_dwn,0,ns);
+                            if(out_flow==0)
+                                tt = link.is_source() ? dt_sec : dt_sec / lg.ffspeed_cell_per_dt;
+                            else
+                                tt = dt_sec * veh / out_flow;
+                        } else
+                            tt = link.is_source() ? dt_sec : dt_sec / lg.ffspeed_cell_per_dt;
+                        total_travel_time += tt;
+                    }
+
+                    dncell.add_flows(flow_dwn,flow_in,flow_out);
+                    upcell.subtract_flows(flow_dwn,flow_in,flow_out);
+                }
+
+            }
+
+            // travel time computation
+            if(lg.travel_timer!=null)
+                ((FluidLaneGroupTimer)lg.travel_timer).add_sample(total_travel_time);
+
+            lg.update_long_supply();
+
+            // process buffer
+            if(link.is_model_source_link()) {
+                lg.process_buffer(timestamp);
+                lg.update_long_supply();
+            }
+
+        }
+
+        // reset ActuatorFlowToLink values
+        if(link.unique_acts_flowToLinks!=null)
+            for(ActuatorFlowToLinks act : link.unique_acts_flowToLinks)
+                act.reset_totals(timestamp);
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    // same as ModelCTM.perform_lane_changes
+    private void perform_lane_changes(Link link) {
+
+        List<AbstractLaneGroup> lgs = link.get_lgs();
+        if(lgs.size()<2)
+            return;
+
+        int cells_in_full_lg = ((FluidLaneGroup)lgs.get(0)).cells.size();
+        double[] gamma = lc_gamma.get(link);
+
+        // scan cross section from upstream to downstream
+        for (int i = 0; i < cells_in_full_lg; i++) {
+
+            // compute total flows reduction for each lane group
+            for (int k=0;k<lgs.size();k++) {
+                FluidLaneGroup lg = (FluidLaneGroup) lgs.get(k);
+                CTMArrayCell cell = (CTMArrayCell) lg.cells.get(i);
+                double demand_to_me = 0d;
+                if (lg.get_neighbor_in()!=null) {
+                    CTMArrayCell ncell = (CTMArrayCell) ((FluidLaneGroup) lg.get_neighbor_in()).cells.get(i);
+                    if(!ncell.out_barrier)
+                        demand_to_me += ncell.total_vehs_out;
+                }
+                if (lg.get_neighbor_out() != null) {
+                    CTMArrayCell ncell = (CTMArrayCell) ((FluidLaneGroup) lg.get_neighbor_out()).cells.get(i);
+                    if(!ncell.in_barrier)
+                        demand_to_me += ncell.total_vehs_in;
+                }
+
+                double lc_supply = cell.supply * lg.lc_w;
+
+                gamma[k] = demand_to_me > lc_supply ? lc_supply / demand_to_me : 1d;
+            }
+
+            // lane change flow
+            for (int k=0;k<lgs.size();k++) {
+                FluidLaneGroup to_lg = (FluidLaneGroup) lgs.get(k);
+                CTMArrayCell to_cell = (CTMArrayCell) to_lg.cells.get(i);
+                double my_gamma = gamma[k];
+
+                if (to_lg.get_neighbor_in() != null) {
+                    CTMArrayCell ncell = (CTMArrayCell) ((FluidLaneGroup) to_lg.get_neighbor_in()).cells.get(i);
+                    if(!ncell.out_barrier)
+                        ncell.total_vehs_out -= do_lane_changes(to_lg, to_cell, my_gamma, ncell.flw_lcout_acc, ncell, ncell.arrays.veh_out);
+                }
+
+                if (to_lg.get_neighbor_out() != null) {
+                    CTMArrayCell ncell = (CTMArrayCell) ((FluidLaneGroup) to_lg.get_neighbor_out()).cells.get(i);
+                    if(!ncell.in_barrier)
+                        ncell.total_vehs_in -= do_lane_changes(to_lg, to_cell, my_gamma, ncell.flw_lcin_acc, ncell, ncell.arrays.veh_in);
+                }
+            }
+        }
+    }
+
+    // move vehicles from from_vehs (a row of from_cell) to to_cell. Both cells belong to the same link,
+    // and hence share column indices.
+    private double do_lane_changes(FluidLaneGroup to_lg, CTMArrayCell to_cell, double to_gamma, FlowAccumulatorState acc, CTMArrayCell from_cell, double[] from_vehs){
+        final CTMStateArrays to = to_cell.arrays;
+        final State[] states = from_cell.arrays.states;
+        final int from_offset = from_cell.offset;
+        final int to_offset = to_cell.offset;
+        double total_flw = 0d;
+        for (int j=0;j<states.length;j++) {
+            double from_veh = from_vehs[from_offset+j];
+
+            if (from_veh > OTMUtils.epsilon) {
+
+                State state = states[j];
+                double flw = to_gamma * from_veh;
+
+                // remove from this cell
+                from_vehs[from_offset+j] = from_veh-flw;
+                total_flw += flw;
+
+                // update accumulator
+                if(acc!=null)
+                    acc.increment(state,flw);
+
+                // choose lane change direction in destination cell
+                // prefer middle
+                Set<Maneuver> new_lcs = to_lg.get_maneuvers_for_state(state);
+                Maneuver newmaneuver = new_lcs.contains(Maneuver.stay) ?  Maneuver.stay : new_lcs.iterator().next();
+                switch (newmaneuver) {
+                    case lcin:
+                        to.veh_in[to_offset+j] += flw;
+                        to_cell.total_vehs_in += flw;
+                        break;
+                    case stay:
+                        to.veh_dwn[to_offset+j] += flw;
+                        to_cell.total_vehs_dwn += flw;
+                        break;
+                    case lcout:
+                        to.veh_out[to_offset+j] += flw;
+                        to_cell.total_vehs_out += flw;
+                        break;
+                }
+            }
+        }
+        return total_flw;
+    }
+
+}
@@ -0,0 +1,512 @@
+package models.fluid.nodemodel;
+
+import core.State;
+import utils.OTMUtils;
+
+import java.util.*;
+
+// Array form of a NodeModel, built once the states are known (NodeModel.initialize).
+// Upstream lane groups (g), road connections (r) and downstream lane groups (h) are numbered
+// in the iteration order of the NodeModel maps, and their relations are stored as sparse
+// incidence lists: entries of list x are in [x_start[i],x_start[i+1]). The solver
+// runs on these arrays without streams, boxing, or allocation, and writes the resulting
+// flows into UpLaneGroup.f_gs and RoadConnection.f_rs.
+//
+// All sums are compensated and visit their terms in the same order as the map-based
+// formulation, so the flows are identical to it.
+class CompiledNodeModel {
+
+    private static final Double zero = 0d;
+
+    final int num_ulgs;
+    final int num_rcs;
+    final int num_dlgs;
+
+    private final UpLaneGroup [] ulgs;
+    private final RoadConnection [] rcs;
+    private final DnLaneGroup [] dlgs;
+
+    // upstream lane group states (gs) ...........................
+    private final int [] ulg_state_start;       // g -> gs
+    private final State [] gs_state;
+    private final int [] gs_rcinfo;             // gs -> i of the road connection it uses, or -1
+    private final double [] d_gs;
+    private final double [] delta_gs;
+    private final double [] f_gs;
+
+    // upstream lane group road connections (i) .................
+    private final int [] ulg_rc_start;          // g -> i
+    private final int [] i_rc;                  // i -> r
+    private final int [] i_state_start;         // i -> k, S_gr
+    private final int [] i_state_gs;            // k -> gs
+    private final double [] d_gr;
+
+    // road connection upstream lane groups ......................
+    private final int [] rc_ulg_start;          // r -> k
+    private final int [] rc_ulg_g;
+    private final int [] rc_ulg_i;
+
+    // road connection downstream lane groups (e) ................
+    private final int [] rc_dlg_start;          // r -> e
+    private final int [] e_dlg;                 // e -> h
+    private final double [] lambda_rh;
+    private final double [] alpha_rh;
+
+    // road connection states (rs) ...............................
+    private final int [] rc_state_start;        // r -> rs
+    private final State [] rs_state;
+    private final int [] rs_gs_start;           // rs -> k, one per upstream lane group of r
+    private final int [] rs_gs_g;
+    private final int [] rs_gs;
+    private final double [] f_rs;
+
+    // downstream lane group road connections ....................
+    private final int [] dlg_rc_start;          // h -> k
+    private final int [] dlg_rc_r;
+    private final int [] dlg_rc_e;
+
+    // per upstream lane group
+    private final boolean [] is_empty_or_blocked;
+    private final double [] gamma_g;
+
+    // per road connection
+    private final boolean [] rc_is_blocked;
+    private final double [] d_r;
+    private final double [] gamma_r;
+    private final double [] delta_r;
+
+    // per downstream lane group
+    private final boolean [] dlg_is_blocked;
+    private final double [] s_h;
+    private final double [] gamma_h;
+
+    // terms of the sum being computed
+    private final double [] terms;
+
+    CompiledNodeModel(NodeModel nm){
+
+        ulgs = nm.ulgs.values().toArray(new UpLaneGroup[0]);
+        rcs = nm.rcs.values().toArray(new RoadConnection[0]);
+        dlgs = nm.dlgs.values().toArray(new DnLaneGroup[0]);
+        num_ulgs = ulgs.length;
+        num_rcs = rcs.length;
+        num_dlgs = dlgs.length;
+
+        Map<RoadConnection,Integer> rc_index = new IdentityHashMap<>();
+        for(int r=0;r<num_rcs;r++)
+            rc_index.put(rcs[r],r);
+        Map<DnLaneGroup,Integer> dlg_index = new IdentityHashMap<>();
+        for(int h=0;h<num_dlgs;h++)
+            dlg_index.put(dlgs[h],h);
+        Map<UpLaneGroup,Integer> ulg_index = new IdentityHashMap<>();
+        for(int g=0;g<num_ulgs;g++)
+            ulg_index.put(ulgs[g],g);
+
+        int max_terms = 1;
+
+        // upstream lane groups: states and road connections
+        List<State> gs_state_list = new ArrayList<>();
+        List<Map<State,Integer>> ulg_gs = new ArrayList<>();
+        ulg_state_start = new int[num_ulgs+1];
+        ulg_rc_start = new int[num_ulgs+1];
+        List<Integer> i_rc_list = new ArrayList<>();
+        List<UpLaneGroup.RcInfo> rcinfos = new ArrayList<>();
+        for(int g=0;g<num_ulgs;g++){
+            UpLaneGroup ulg = ulgs[g];
+            ulg_state_start[g] = gs_state_list.size();
+            Map<State,Integer> gs = new HashMap<>();
+            for(State state : ulg.state_infos.keySet()){
+                gs.put(state,gs_state_list.size());
+                gs_state_list.add(state);
+            }
+            ulg_gs.add(gs);
+            ulg_rc_start[g] = rcinfos.size();
+            for(UpLaneGroup.RcInfo rcinfo : ulg.rc_infos.values()){
+                rcinfos.add(rcinfo);
+                i_rc_list.add(rc_index.get(rcinfo.rc));
+            }
+            max_terms = Math.max(max_terms,ulg.rc_infos.size());
+        }
+        ulg_state_start[num_ulgs] = gs_state_list.size();
+        ulg_rc_start[num_ulgs] = rcinfos.size();
+        gs_state = gs_state_list.toArray(new State[0]);
+        i_rc = i_rc_list.stream().mapToInt(x->x).toArray();
+        int num_gs = gs_state.length;
+        int num_i = rcinfos.size();
+
+        // S_gr
+        i_state_start = new int[num_i+1];
+        List<Integer> i_state_gs_list = new ArrayList<>();
+        for(int g=0;g<num_ulgs;g++)
+            for(int i=ulg_rc_start[g];i<ulg_rc_start[g+1];i++){
+                i_state_start[i] = i_state_gs_list.size();
+                for(State state : rcinfos.get(i).S_gr)
+                    i_state_gs_list.add(ulg_gs.get(g).get(state));
+                max_terms = Math.max(max_terms,rcinfos.get(i).S_gr.size());
+            }
+        i_state_start[num_i] = i_state_gs_list.size();
+        i_state_gs = i_state_gs_list.stream().mapToInt(x->x).toArray();
+
+        // road connection used by each upstream state, as in step 4
+        gs_rcinfo = new int[num_gs];
+        for(int g=0;g<num_ulgs;g++){
+            UpLaneGroup ulg = ulgs[g];
+            for(int gs=ulg_state_start[g];gs<ulg_state_start[g+1];gs++){
+                gs_rcinfo[gs] = -1;
+                State state = gs_state[gs];
+                if(!ulg.lg.get_link().states.contains(state))
+                    continue;
+                Long rc_id = ulg.lg.get_rc_for_state(state);
+                if(rc_id==null)
+                    continue;
+                for(int i=ulg_rc_start[g];i<ulg_rc_start[g+1];i++)
+                    if(rcs[i_rc[i]].id==rc_id)
+                        gs_rcinfo[gs] = i;
+            }
+        }
+
+        // road connections: upstream lane groups, downstream lane groups, and states
+        rc_ulg_start = new int[num_rcs+1];
+        rc_dlg_start = new int[num_rcs+1];
+        rc_state_start = new int[num_rcs+1];
+        List<Integer> rc_ulg_g_list = new ArrayList<>();
+        List<Integer> rc_ulg_i_list = new ArrayList<>();
+        List<Integer> e_dlg_list = new ArrayList<>();
+        List<Double> lambda_list = new ArrayList<>();
+        List<State> rs_state_list = new ArrayList<>();
+        List<Integer> rs_gs_start_list = new ArrayList<>();
+        List<Integer> rs_gs_g_list = new ArrayList<>();
+        List<Integer> rs_gs_list = new ArrayList<>();
+        for(int r=0;r<num_rcs;r++){
+            RoadConnection rc = rcs[r];
+
+            rc_ulg_start[r] = rc_ulg_g_list.size();
+            for(UpLaneGroup ulg : rc.ulgs){
+                int g = ulg_index.get(ulg);
+                rc_ulg_g_list.add(g);
+                int rcinfo = -1;
+                for(int i=ulg_rc_start[g];i<ulg_rc_start[g+1];i++)
+                    if(i_rc[i]==r)
+                        rcinfo = i;
+                rc_ulg_i_list.add(rcinfo);
+            }
+
+            rc_dlg_start[r] = e_dlg_list.size();
+            for(RoadConnection.DnLgInfo info : rc.dnlg_infos.values()){
+                e_dlg_list.add(dlg_index.get(info.dlg));
+                lambda_list.add(info.lambda_rh);
+            }
+
+            rc_state_start[r] = rs_state_list.size();
+            for(State state : rc.f_rs.keySet()){
+                rs_state_list.add(state);
+                rs_gs_start_list.add(rs_gs_list.size());
+                for(UpLaneGroup ulg : rc.ulgs){
+                    int g = ulg_index.get(ulg);
+                    Integer gs = ulg_gs.get(g).get(state);
+                    rs_gs_g_list.add(g);
+                    rs_gs_list.add(gs==null ? -1 : gs);
+                }
+            }
+
+            max_terms = Math.max(max_terms,Math.max(rc.ulgs.size(),rc.dnlg_infos.size()));
+        }
+        rc_ulg_start[num_rcs] = rc_ulg_g_list.size();
+        rc_dlg_start[num_rcs] = e_dlg_list.size();
+        rc_state_start[num_rcs] = rs_state_list.size();
+        rs_gs_start_list.add(rs_gs_list.size());
+        rc_ulg_g = rc_ulg_g_list.stream().mapToInt(x->x).toArray();
+        rc_ulg_i = rc_ulg_i_list.stream().mapToInt(x->x).toArray();
+        e_dlg = e_dlg_list.stream().mapToInt(x->x).toArray();
+        lambda_rh = lambda_list.stream().mapToDouble(x->x).toArray();
+        rs_state = rs_state_list.toArray(new State[0]);
+        rs_gs_start = rs_gs_start_list.stream().mapToInt(x->x).toArray();
+        rs_gs_g = rs_gs_g_list.stream().mapToInt(x->x).toArray();
+        rs_gs = rs_gs_list.stream().mapToInt(x->x).toArray();
+
+        // downstream lane groups: incoming road connections
+        dlg_rc_start = new int[num_dlgs+1];
+        List<Integer> dlg_rc_r_list = new ArrayList<>();
+        List<Integer> dlg_rc_e_list = new ArrayList<>();
+        for(int h=0;h<num_dlgs;h++){
+            dlg_rc_start[h] = dlg_rc_r_list.size();
+            for(RoadConnection rc : dlgs[h].rcs.values()){
+                int r = rc_index.get(rc);
+                int e = -1;
+                for(int x=rc_dlg_start[r];x<rc_dlg_start[r+1];x++)
+                    if(e_dlg[x]==h)
+                        e = x;
+                dlg_rc_r_list.add(r);
+                dlg_rc_e_list.add(e);
+            }
+            max_terms = Math.max(max_terms,dlgs[h].rcs.size());
+        }
+        dlg_rc_start[num_dlgs] = dlg_rc_r_list.size();
+        dlg_rc_r = dlg_rc_r_list.stream().mapToInt(x->x).toArray();
+        dlg_rc_e = dlg_rc_e_list.stream().mapToInt(x->x).toArray();
+
+        // state
+        d_gs = new double[num_gs];
+        delta_gs = new double[num_gs];
+        f_gs = new double[num_gs];
+        d_gr = new double[num_i];
+        alpha_rh = new double[lambda_rh.length];
+        f_rs = new double[rs_state.length];
+        is_empty_or_blocked = new boolean[num_ulgs];
+        gamma_g = new double[num_ulgs];
+        rc_is_blocked = new boolean[num_rcs];
+        d_r = new double[num_rcs];
+        gamma_r = new double[num_rcs];
+        delta_r = new double[num_rcs];
+        dlg_is_blocked = new boolean[num_dlgs];
+        s_h = new double[num_dlgs];
+        gamma_h = new double[num_dlgs];
+        terms = new double[max_terms];
+    }
+
+    ////////////////////////////////////////////
+    // solve
+    ////////////////////////////////////////////
+
+    // returns false if the iteration limit was reached
+    boolean solve(int max_iterations){
+        reset();
+        int it = 0;
+        while (it++ <= max_iterations) {
+
+            step0();
+
+            if(it>max_iterations) {
+                write_flows();
+                return false;
+            }
+
+            if (all_empty_or_blocked())
+                break;
+
+            step1();
+            step2();
+            step3();
+            step4();
+            step5();
+            step6();
+        }
+        write_flows();
+        return true;
+    }
+
+    private void reset(){
+
+        // upstream lane groups
+        for(int g=0;g<num_ulgs;g++){
+            is_empty_or_blocked[g] = false;
+            gamma_g[g] = Double.NaN;
+            Map<State,Double> demand = ulgs[g].lg.get_demand();
+            for(int gs=ulg_state_start[g];gs<ulg_state_start[g+1];gs++){
+                d_gs[gs] = demand.get(gs_state[gs]);
+                delta_gs[gs] = Double.NaN;
+                f_gs[gs] = 0d;
+            }
+        }
+        for(int i=0;i<d_gr.length;i++){
+            int n = 0;
+            for(int k=i_state_start[i];k<i_state_start[i+1];k++)
+                terms[n++] = d_gs[i_state_gs[k]];
+            d_gr[i] = OTMUtils.sum(terms,0,n);
+        }
+
+        // road connections
+        for(int r=0;r<num_rcs;r++){
+            rc_is_blocked[r] = false;
+            d_r[r] = Double.NaN;
+            gamma_r[r] = Double.NaN;
+        }
+        Arrays.fill(alpha_rh,0d);
+        Arrays.fill(f_rs,0d);
+
+        // downstream lane groups
+        for(int h=0;h<num_dlgs;h++){
+            dlg_is_blocked[h] = false;
+            s_h[h] = dlgs[h].lg.get_long_supply();
+            gamma_h[h] = Double.NaN;
+        }
+    }
+
+    private boolean all_empty_or_blocked(){
+        for(int g=0;g<num_ulgs;g++)
+            if(!is_empty_or_blocked[g])
+                return false;
+        return true;
+    }
+
+    // dlgs.is_blocked, rcs.is_blocked, ulgs.is_empty_or_blocked
+    private void step0(){
+
+        // block downstream lanegroups with zero supply
+        for(int h=0;h<num_dlgs;h++)
+            if(!dlg_is_blocked[h])
+                dlg_is_blocked[h] = s_h[h] < NodeModel.eps;
+
+        // block road connections connecting to blocked links
+        for(int r=0;r<num_rcs;r++){
+            if(rc_is_blocked[r])
+                continue;
+            boolean all_blocked = true;
+            for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                all_blocked &= dlg_is_blocked[e_dlg[e]];
+            rc_is_blocked[r] = all_blocked;
+        }
+
+        // upstream lanegroup is empty if sum of demands is zero
+        // and blocked if any of it connectors is blocked
+        for(int g=0;g<num_ulgs;g++){
+            if(is_empty_or_blocked[g])
+                continue;
+            int n = 0;
+            boolean blocked = false;
+            for(int i=ulg_rc_start[g];i<ulg_rc_start[g+1];i++){
+                terms[n++] = d_gr[i];
+                blocked |= d_gr[i]>0d && rc_is_blocked[i_rc[i]];
+            }
+            is_empty_or_blocked[g] = OTMUtils.sum(terms,0,n) < NodeModel.eps || blocked;
+        }
+    }
+
+    // d_r, alpha_rh
+    private void step1(){
+        for(int r=0;r<num_rcs;r++){
+
+            if(rc_is_blocked[r])
+                d_r[r] = 0d;
+            else {
+                int n = 0;
+                for(int k=rc_ulg_start[r];k<rc_ulg_start[r+1];k++)
+                    if(!is_empty_or_blocked[rc_ulg_g[k]])
+                        terms[n++] = d_gr[rc_ulg_i[k]];
+                d_r[r] = OTMUtils.sum(terms,0,n);
+            }
+
+            if(d_r[r] < NodeModel.eps)
+                continue;
+
+            boolean any_is_infinite = false;
+            for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                any_is_infinite |= Double.isInfinite(s_h[e_dlg[e]]);
+
+            if(any_is_infinite){
+                // distribute equally
+                double p = 1d/(rc_dlg_start[r+1]-rc_dlg_start[r]);
+                for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                    alpha_rh[e] = lambda_rh[e] * p;
+            } else {
+                // s_r: downstream supply seen by this road connection
+                int n = 0;
+                for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                    terms[n++] = lambda_rh[e] * s_h[e_dlg[e]];
+                double s_r = OTMUtils.sum(terms,0,n);
+                for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                    alpha_rh[e] = s_r<OTMUtils.epsilon ? 0d : lambda_rh[e] * s_h[e_dlg[e]] / s_r;
+            }
+        }
+    }
+
+    // gamma_h
+    private void step2(){
+        for(int h=0;h<num_dlgs;h++){
+            if(Double.isInfinite(s_h[h]))
+                gamma_h[h] = 0d;
+            else if(dlg_is_blocked[h])
+                gamma_h[h] = 1d;
+            else {
+                int n = 0;
+                for(int k=dlg_rc_start[h];k<dlg_rc_start[h+1];k++)
+                    terms[n++] = alpha_rh[dlg_rc_e[k]] * d_r[dlg_rc_r[k]];
+                double d_h = OTMUtils.sum(terms,0,n);
+                gamma_h[h] = d_h>s_h[h] ? 1d-s_h[h]/d_h : 0d;
+            }
+        }
+    }
+
+    // gamma_r
+    private void step3(){
+        for(int r=0;r<num_rcs;r++){
+            if(rc_is_blocked[r]) {
+                gamma_r[r] = 0d;
+                continue;
+            }
+            int n = 0;
+            for(int e=rc_dlg_start[r];e<rc_dlg_start[r+1];e++)
+                terms[n++] = gamma_h[e_dlg[e]] * alpha_rh[e];
+            gamma_r[r] = OTMUtils.sum(terms,0,n);
+        }
+    }
+
+    // gamma_g, delta_gs, f_gs
+    private void step4(){
+        for(int g=0;g<num_ulgs;g++){
+
+            if(is_empty_or_blocked[g]){
+                gamma_g[g] = 1d;
+                continue;
+            }
+
+            double max = Double.NEGATIVE_INFINITY;
+            for(int i=ulg_rc_start[g];i<ulg_rc_start[g+1];i++)
+                max = Math.max(max,gamma_r[i_rc[i]]);
+            gamma_g[g] = max;
+
+            for(int gs=ulg_state_start[g];gs<ulg_state_start[g+1];gs++){
+                double delta = d_gs[gs] * (1d-max);
+                delta_gs[gs] = delta;
+                d_gs[gs] -= delta;
+                f_gs[gs] += delta;
+
+                // reduce d_gr
+                if(gs_rcinfo[gs]>=0)
+                    d_gr[gs_rcinfo[gs]] -= delta;
+            }
+        }
+    }
+
+    // delta_rs, f_rs
+    private void step5(){
+        for(int r=0;r<num_rcs;r++){
+            delta_r[r] = 0d;
+            for(int rs=rc_state_start[r];rs<rc_state_start[r+1];rs++){
+                int n = 0;
+                for(int k=rs_gs_start[rs];k<rs_gs_start[rs+1];k++)
+                    if(!is_empty_or_blocked[rs_gs_g[k]])
+                        terms[n++] = delta_gs[rs_gs[k]];
+                double delta_rs = OTMUtils.sum(terms,0,n);
+                delta_r[r] += delta_rs;
+                f_rs[rs] += delta_rs;
+            }
+        }
+    }
+
+    // s_h
+    private void step6(){
+        for(int h=0;h<num_dlgs;h++){
+            int n = 0;
+            for(int k=dlg_rc_start[h];k<dlg_rc_start[h+1];k++){
+                int r = dlg_rc_r[k];
+                terms[n++] = delta_r[r]*alpha_rh[dlg_rc_e[k]]/(1d-gamma_r[r]);
+            }
+            s_h[h] -= (1d-gamma_h[h])*OTMUtils.sum(terms,0,n);
+        }
+    }
+
+    private void write_flows(){
+        for(int g=0;g<num_ulgs;g++){
+            Map<State,Double> f = ulgs[g].f_gs;
+            for(int gs=ulg_state_start[g];gs<ulg_state_start[g+1];gs++)
+                f.put(gs_state[gs], f_gs[gs]==0d ? zero : f_gs[gs]);
+        }
+        for(int r=0;r<num_rcs;r++){
+            Map<State,Double> f = rcs[r].f_rs;
+            for(int rs=rc_state_start[r];rs<rc_state_start[r+1];rs++)
+                f.put(rs_state[rs], f_rs[rs]==0d ? zero : f_rs[rs]);
+        }
+    }
+
+}
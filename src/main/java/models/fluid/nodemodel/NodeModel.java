@@ -3,7 +3,6 @@ package models.fluid.nodemodel;
 import core.*;
 import error.OTMException;
 import models.fluid.FluidLaneGroup;
-import utils.OTMUtils;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -21,6 +20,9 @@ public class NodeModel {
     public Map<Long, UpLaneGroup> ulgs;  // upstrm lane groups.
     public Map<Long, RoadConnection> rcs;  // road connections.
     public Map<Long, DnLaneGroup> dlgs; /// dnstrm lane groups.
+    public boolean is_active;           // solved in this step, see AbstractFluidModel.is_active
+
+    private CompiledNodeModel compiled;
 
     public NodeModel(Node node) {
         this.node = node;
@@ -139,59 +141,39 @@ public class NodeModel {
     public void initialize(Scenario scenario) {
         // allocate states in ulgs
         ulgs.values().forEach( ulg -> ulg.lg.get_link().states.forEach( state -> ulg.add_state(state)));
+
+        // the solver works on arrays built from the structure above
+        compiled = new CompiledNodeModel(this);
     }
 
     public Set<State> get_states_for_road_connection(long rc_id){
         return rcs.containsKey(rc_id) ? rcs.get(rc_id).get_states() : null;
     }
 
+    // computes UpLaneGroup.f_gs and RoadConnection.f_rs
     public void update_flow(float timestamp) {
 
-        // reset
-        ulgs.values().forEach(x->x.reset());
-        rcs.values().forEach(x->x.reset());
-        dlgs.values().forEach(x->x.reset());
-
-
         // ----------------------------------------
         if(debug && node.getId()==2l){
             System.out.println(String.format("%.1f node model %d START",timestamp,node.getId()));
             for(UpLaneGroup ulg : ulgs.values()){
-                for(Map.Entry<State, UpLaneGroup.StateInfo> e : ulg.state_infos.entrySet()){
+                for(Map.Entry<State,Double> e : ulg.lg.get_demand().entrySet()){
                     State state = e.getKey();
-                    UpLaneGroup.StateInfo stateinfo = e.getValue();
                     System.out.println(String.format("\tlink=%d\tlane=%d\tstate=(%d,%d)\tdemand=%.1f",
                             ulg.lg.get_link().getId(), ulg.lg.get_start_lane_dn(),
-                            state.commodity_id,state.pathOrlink_id,stateinfo.d_gs*720d));
+                            state.commodity_id,state.pathOrlink_id,e.getValue()*720d));
                 }
             }
 
             for(DnLaneGroup dlg : dlgs.values())
                 System.out.println(String.format("\tlink=%d\tlane=%d\tsupply=%.1f",
                         dlg.lg.get_link().getId(), dlg.lg.get_start_lane_dn(),
-                        dlg.s_h*720d));
+                        dlg.lg.get_long_supply()*720d));
         }
         // ---------------------------------------
 
-
-
-        // iteration
-        int it = 0;
-        while (it++ <= MAX_ITERATIONS) {
-
-            step0();
-
-            if (eval_stop(it))
-                break;
-
-            step1();
-            step2();
-            step3();
-            step4();
-            step5();
-            step6();
-        }
-
+        if(!compiled.solve(MAX_ITERATIONS))
+            System.out.println("Reached iteration limit for node " + node.getId());
 
         // ----------------------------------------
         if(debug && node.getId()==2l){
@@ -207,168 +189,4 @@ public class NodeModel {
         }
     }
 
-    private boolean eval_stop(int iteration){
-
-        if(iteration>MAX_ITERATIONS){
-            System.out.println("Reached iteration limit for node " + node.getId());
-            return true;
-        }
-
-        // stop if all ulgs lanegroups are either empty or blocked
-        return ulgs.values().stream().allMatch(ulg->ulg.is_empty_or_blocked);
-    }
-
-    private void step0(){
-        /**
-         * dlgs.is_blocked
-         * rcs.is_blocked
-         * uplgs.is_empty_or_blocked
-         */
-
-        // block downstream lanegroups with zero supply
-        dlgs.values().forEach(dlg -> dlg.update_is_blocked());
-
-        // block road connections connecting to blocked links or with control rate = 0
-        rcs.values().forEach(rc->rc.update_is_blocked());
-
-        // upstream lanegroup is empty if sum of demands is zero
-        // and blocked if any of it connectors is blocked
-        ulgs.values().forEach(ulg->ulg.update_is_empty_or_blocked());
-
-    }
-
-    private void step1(){
-        /** d_r, alpha_rh
-         */
-
-        for(RoadConnection rc : rcs.values()) {
-
-            rc.d_r = rc.is_blocked ? 0d : rc.ulgs.stream()
-                    .filter(ulg->!ulg.is_empty_or_blocked)
-                    .mapToDouble(ulg -> ulg.rc_infos.get(rc.id).d_gr)
-                    .sum();
-
-            if(rc.d_r< NodeModel.eps)
-                continue;
-
-            boolean any_is_infinite = rc.dnlg_infos.values().stream().anyMatch(x-> Double.isInfinite(x.dlg.s_h));
-
-            if(any_is_infinite){
-
-                // distribute equally
-                double p = 1d/rc.dnlg_infos.size();
-
-                // alpha_rh: distribution amongst downstream lanegroups
-                rc.dnlg_infos.values().forEach( x -> x.alpha_rh =  x.lambda_rh * p );
-
-
-            } else {
-                // s_r: downstream supply seen by this road connection
-                double s_r = rc.dnlg_infos.values().stream()
-                        .mapToDouble(x->x.lambda_rh *x.dlg.s_h).sum();
-
-                // alpha_rh: distribution amongst downstream lanegroups
-                rc.dnlg_infos.values().forEach( x -> x.alpha_rh = s_r<OTMUtils.epsilon ? 0d : x.lambda_rh * x.dlg.s_h / s_r);
-            }
-        }
-
-    }
-
-    private void step2(){
-        /**  gamma_h */
-
-        for(DnLaneGroup dlg : dlgs.values() ) {
-
-            // for MN model
-            if(Double.isInfinite(dlg.s_h))
-                dlg.gamma_h = 0d;
-
-            else if (dlg.is_blocked)
-                dlg.gamma_h = 1d;
-
-            else {
-
-                // total_demand = sum of demands in upstream road connections, times the proportion
-                // directed at this lanegroup
-//                Double d_h = dlg.rcs.values().stream().mapToDouble(rc -> rc.dnlg_infos.get(dlg.lg.id).alpha_rh * Math.min(rc.d_r, rc.fbar)).sum();
-                Double d_h = dlg.rcs.values().stream().mapToDouble(rc -> rc.dnlg_infos.get(dlg.lg.getId()).alpha_rh * rc.d_r).sum();
-                dlg.gamma_h = d_h>dlg.s_h ? 1d-dlg.s_h /d_h : 0d;
-            }
-
-        }
-    }
-
-    private void step3(){
-        /** gamma_r */
-        for(RoadConnection rc : rcs.values() )
-            rc.gamma_r = rc.is_blocked ? 0d : rc.dnlg_infos.values().stream().mapToDouble(x -> x.dlg.gamma_h * x.alpha_rh).sum();
-    }
-
-    private void step4(){
-        /** gamma_g, delta_gs, f_gs */
-
-        for(UpLaneGroup ulg : ulgs.values() ) {
-            ulg.gamma_g = ulg.is_empty_or_blocked ?
-                    1d :
-                    ulg.rc_infos.values().stream().mapToDouble(rc -> rc.rc.gamma_r).max().getAsDouble();
-
-            if(!ulg.is_empty_or_blocked){
-
-                for( Map.Entry<State,UpLaneGroup.StateInfo> e : ulg.state_infos.entrySet()){
-
-                    State state = e.getKey();
-                    UpLaneGroup.StateInfo stateInfo = e.getValue();
-
-                    stateInfo.delta_gs = stateInfo.d_gs * (1d-ulg.gamma_g);
-                    stateInfo.d_gs -= stateInfo.delta_gs;
-                    ulg.f_gs.put(state,ulg.f_gs.get(state)+stateInfo.delta_gs);
-
-                    // reduce d_gr
-                    if(ulg.lg.get_link().states.contains(state) ){
-                        Long rc_id = ulg.lg.get_rc_for_state(state);
-                        if(ulg.rc_infos.containsKey(rc_id))
-                            ulg.rc_infos.get(rc_id).d_gr -= stateInfo.delta_gs;
-                    }
-
-                }
-            }
-
-        }
-
-    }
-
-    private void step5(){
-        /** delta_rs, f_rs */
-
-        for(RoadConnection rc : rcs.values()){
-
-            rc.delta_r = 0d;
-
-            for(State state : rc.f_rs.keySet()){
-
-                // delta_rs, f_rs
-                double delta_rs = rc.ulgs.stream()
-                        .filter(x->!x.is_empty_or_blocked)
-                        .mapToDouble(x->x.state_infos.get(state).delta_gs)
-                        .sum();
-
-                rc.delta_r += delta_rs;
-                rc.f_rs.put( state , rc.f_rs.get(state) + delta_rs );
-
-            }
-        }
-    }
-
-    private void step6(){
-        /** s_h */
-
-        for(DnLaneGroup dlg : dlgs.values() ) {
-            double sum = dlg.rcs.values().stream()
-                    .mapToDouble(rc -> rc.delta_r*rc.dnlg_infos.get(dlg.lg.getId()).alpha_rh/(1d-rc.gamma_r))
-                    .sum();
-            dlg.s_h -= (1d-dlg.gamma_h)*sum;
-        }
-
-    }
-
 }
@@ -12,25 +12,15 @@ public class RoadConnection {
     public class DnLgInfo {
         public final DnLaneGroup dlg;
         public final double lambda_rh;
-        public double alpha_rh;
         public DnLgInfo(DnLaneGroup dlg,double lambda_rh){
             this.dlg = dlg;
             this.lambda_rh = lambda_rh;
         }
-        public void reset(){
-            alpha_rh = 0f;
-        }
     }
 
     public long id;
     public core.RoadConnection rc;
 
-    public boolean is_blocked;
-    public Double d_r;
-    public Double gamma_r;
-    public double delta_r;
-//    public double fbar; // vps, imposed by external controller;
-
     public Set<UpLaneGroup> ulgs;
     public Map<Long,DnLgInfo> dnlg_infos;
     public Map<State,Double> f_rs;
@@ -42,8 +32,6 @@ public class RoadConnection {
     public RoadConnection(Long id, core.RoadConnection rc){
         this.id = id;
         this.rc = rc;
-        this.d_r = Double.NaN;
-        this.gamma_r = Double.NaN;
         this.ulgs = new HashSet<>();
         this.dnlg_infos = new HashMap<>();
         this.f_rs = new HashMap<>();
@@ -71,10 +59,6 @@ public class RoadConnection {
 
     public void add_state(State state){
         f_rs.put(state,0d);
-
-        for(DnLgInfo dnLgInfo : dnlg_infos.values()){
-            dnLgInfo.dlg.add_state(state);
-        }
     }
 
     ////////////////////////////////////////////
@@ -85,33 +69,4 @@ public class RoadConnection {
         return f_rs.keySet();
     }
 
-    ////////////////////////////////////////////
-    // update
-    ////////////////////////////////////////////
-
-    public void reset(){
-        is_blocked = false;
-        d_r = Double.NaN;
-        gamma_r = Double.NaN;
-
-        dnlg_infos.values().forEach(x->x.reset());
-
-        f_rs.keySet().forEach(x->f_rs.put(x,0d));
-
-//        // fbar
-//        if(Double.isInfinite(rc.external_max_flow_vps))
-//            fbar = Double.POSITIVE_INFINITY;
-//        else if(rc.external_max_flow_vps< NodeModel.eps)
-//            fbar = 0d;
-//        else {
-//            float dt = ((AbstractFluidModel)this.rc.get_start_link().model).dt;
-//            fbar = rc.external_max_flow_vps * dt;
-//        }
-    }
-
-    public void update_is_blocked(){
-        if(!is_blocked)
-            is_blocked = dnlg_infos.values().stream().allMatch(x->x.dlg.is_blocked); // || fbar< NodeModel.eps;
-    }
-
 }
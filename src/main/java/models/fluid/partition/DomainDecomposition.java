@@ -0,0 +1,156 @@
+package models.fluid.partition;
+
+import core.AbstractFluidModel;
+import core.Link;
+import core.packet.PacketLink;
+import error.OTMException;
+import models.fluid.nodemodel.NodeModel;
+import models.fluid.nodemodel.RoadConnection;
+import utils.Pair;
+import utils.WorkerPool;
+
+import java.util.*;
+import java.util.concurrent.Future;
+
+// Runs a fluid model as k subdomains, each on its own thread (see NetworkPartitioner).
+// A subdomain owns the links that end in its nodes and the node models of those nodes.
+// The flow update runs in phases with a barrier after each:
+//  1. lane changes, demand and supply of own links
+//  2. own node models. These read the supply of downstream links, which may belong to
+//     another subdomain. A transport between processes would have to send these too.
+//  3. sources, sinks, and node releases. Packets for own links are added directly, the
+//     rest are sent through the channel to the owner of the link.
+//  4. each subdomain adds the packets it received, taking channels in order of sender.
+// Packets for links of other models are added by the calling thread at the end.
+// The state update is a single phase over own links.
+public class DomainDecomposition {
+
+    public final AbstractFluidModel model;
+    public final Subdomain [] subdomains;
+    public final Map<Long,Integer> node2domain;
+    public final int cut_road_connections;
+
+    private final int [] link2domain;      // Link.index -> subdomain, k for links of other models
+    private final InterfacePacketChannel [][] channels;    // [from][to], to==k for links of other models
+
+    private interface InterfacePhase {
+        void run(Subdomain d) throws OTMException;
+    }
+
+    public DomainDecomposition(AbstractFluidModel model, Link[] links, NodeModel[] node_models, Set<Link> source_links, Set<Link> sink_links, int k){
+
+        this.model = model;
+        List<Link> link_list = Arrays.asList(links);
+        node2domain = new NetworkPartitioner(link_list).partition(k);
+        cut_road_connections = NetworkPartitioner.cut_road_connections(link_list,node2domain);
+
+        subdomains = new Subdomain[k];
+        for(int i=0;i<k;i++)
+            subdomains[i] = new Subdomain(model.name,i);
+
+        link2domain = new int[links.length==0 ? 0 : links[0].get_network().num_links()];
+        Arrays.fill(link2domain,k);
+        for(Link link : links){
+            Subdomain d = subdomains[node2domain.get(link.get_end_node().getId())];
+            link2domain[link.index] = d.id;
+            d.links.add(link);
+            d.num_cells += NetworkPartitioner.num_cells(link);
+            if(source_links.contains(link))
+                d.source_links.add(link);
+            if(sink_links.contains(link))
+                d.sink_links.add(link);
+        }
+        for(NodeModel node_model : node_models)
+            subdomains[node2domain.get(node_model.node.getId())].node_models.add(node_model);
+
+        channels = new InterfacePacketChannel[k][k+1];
+        for(int i=0;i<k;i++)
+            for(int j=0;j<=k;j++)
+                if(i!=j)
+                    channels[i][j] = new PacketChannelMemory();
+    }
+
+    public void update_flow(float timestamp) throws OTMException {
+
+        run_phase(d -> {
+            for(Link link : d.links)
+                if(model.is_active(link))
+                    model.compute_lanechange_demand_supply(link,timestamp);
+        });
+
+        run_phase(d -> {
+            for(NodeModel node_model : d.node_models) {
+                node_model.is_active = model.is_active(node_model);
+                if(node_model.is_active)
+                    node_model.update_flow(timestamp);
+            }
+        });
+
+        run_phase(d -> {
+            for(Link link : d.source_links)
+                AbstractFluidModel.add_source_flow(link);
+
+            for(Link link : d.sink_links)
+                AbstractFluidModel.release_sink_flow(link);
+
+            for(NodeModel node_model : d.node_models){
+                if(!node_model.is_active)
+                    continue;
+                for(RoadConnection rc : node_model.rcs.values()) {
+                    Link link = rc.rc.get_end_link();
+                    PacketLink packet = new PacketLink(rc.f_rs, rc.rc);
+                    int owner = link2domain[link.index];
+                    if(owner==d.id)
+                        link.get_model().add_vehicle_packet(link,timestamp,packet);
+                    else
+                        channels[d.id][owner].send(link,packet);
+                }
+                AbstractFluidModel.release_node_flows(node_model);
+            }
+        });
+
+        run_phase(d -> {
+            for(int from=0;from<subdomains.length;from++)
+                if(from!=d.id)
+                    add_packets(channels[from][d.id],timestamp);
+        });
+
+        // links of other models
+        for(int from=0;from<subdomains.length;from++)
+            add_packets(channels[from][subdomains.length],timestamp);
+    }
+
+    public void update_fluid_state(float timestamp) throws OTMException {
+        run_phase(d -> {
+            for(Link link : d.links)
+                if(model.is_active(link)) {
+                    model.update_link_state(link, timestamp);
+                    model.update_activity(link);
+                }
+        });
+    }
+
+    // stop the threads of the subdomains, see AbstractFluidModel.terminate
+    public void close(){
+        for(Subdomain d : subdomains)
+            d.close();
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private static void add_packets(InterfacePacketChannel channel,float timestamp) throws OTMException {
+        for(Pair<Link,PacketLink> e : channel.receive())
+            e.left.get_model().add_vehicle_packet(e.left,timestamp,e.right);
+    }
+
+    // run the phase on all subdomains and wait for all of them
+    private void run_phase(InterfacePhase phase) throws OTMException {
+        List<Future<Void>> futures = new ArrayList<>(subdomains.length);
+        for(Subdomain d : subdomains)
+            futures.add(d.get_thread().submit(() -> { phase.run(d); return null; }));
+        WorkerPool.await(futures);
+    }
+
+}
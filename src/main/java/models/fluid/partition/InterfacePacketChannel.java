@@ -0,0 +1,19 @@
+package models.fluid.partition;
+
+import core.Link;
+import core.packet.PacketLink;
+import utils.Pair;
+
+import java.util.List;
+
+// One-way channel for packets that cross a subdomain boundary.
+// send is called by the sending subdomain during the flow update, receive by the
+// receiving subdomain after all subdomains have finished sending.
+public interface InterfacePacketChannel {
+
+    void send(Link link, PacketLink packet);
+
+    // packets sent since the last call, in the order they were sent
+    List<Pair<Link,PacketLink>> receive();
+
+}
@@ -0,0 +1,268 @@
+package models.fluid.partition;
+
+import core.AbstractLaneGroup;
+import core.Link;
+import core.Network;
+import core.RoadConnection;
+import models.fluid.FluidLaneGroup;
+
+import java.util.*;
+
+// Splits the nodes of a network into k subdomains with about the same number of cells,
+// cutting as few road connections as possible. A link belongs to the subdomain of its
+// end node, together with the node model that releases its flow. Hence the weight of a
+// node is the number of cells in the links that end there, and a link is cut if its start
+// node is in another subdomain. The cost of cutting it is the number of road connections
+// that end in it, since each of them becomes a packet sent across the boundary.
+//
+// Method: recursive bisection. Each bisection grows one side breadth-first from a
+// pseudo-peripheral node until it reaches its share of the weight, then moves boundary
+// nodes that reduce the cut while the balance stays within tolerance. Ties are broken by
+// node id, so the result depends only on the network.
+public class NetworkPartitioner {
+
+    public static final double imbalance = 0.03;   // allowed deviation of a side from its share, fraction of the weight
+    private static final int refine_passes = 10;
+
+    // graph. Nodes are indexed in increasing order of id.
+    private final long[] node_ids;
+    private final long[] weight;        // cells in links ending in the node
+    private final int[][] adj;          // neighbors, either direction
+    private final int[][] adj_cost;     // road connections cut if the edge is cut
+
+    public NetworkPartitioner(Network network){
+        this(network.links.values());
+    }
+
+    public NetworkPartitioner(Collection<Link> links){
+
+        TreeSet<Long> ids = new TreeSet<>();
+        for(Link link : links){
+            ids.add(link.get_start_node().getId());
+            ids.add(link.get_end_node().getId());
+        }
+        node_ids = ids.stream().mapToLong(x->x).toArray();
+        Map<Long,Integer> index = new HashMap<>();
+        for(int i=0;i<node_ids.length;i++)
+            index.put(node_ids[i],i);
+
+        weight = new long[node_ids.length];
+        List<TreeMap<Integer,Integer>> edges = new ArrayList<>();
+        for(int i=0;i<node_ids.length;i++)
+            edges.add(new TreeMap<>());
+        for(Link link : links){
+            int s = index.get(link.get_start_node().getId());
+            int e = index.get(link.get_end_node().getId());
+            weight[e] += num_cells(link);
+            if(s==e)
+                continue;
+            int cost = num_road_connections_into(link);
+            edges.get(s).merge(e,cost,Integer::sum);
+            edges.get(e).merge(s,cost,Integer::sum);
+        }
+
+        adj = new int[node_ids.length][];
+        adj_cost = new int[node_ids.length][];
+        for(int i=0;i<node_ids.length;i++){
+            adj[i] = edges.get(i).keySet().stream().mapToInt(x->x).toArray();
+            adj_cost[i] = edges.get(i).values().stream().mapToInt(x->x).toArray();
+        }
+    }
+
+    // node id -> subdomain in [0,k)
+    public Map<Long,Integer> partition(int k){
+        int [] part = new int[node_ids.length];
+        int [] all = new int[node_ids.length];
+        for(int i=0;i<all.length;i++)
+            all[i] = i;
+        bisect(all,k,0,part);
+        Map<Long,Integer> X = new HashMap<>();
+        for(int i=0;i<node_ids.length;i++)
+            X.put(node_ids[i],part[i]);
+        return X;
+    }
+
+    public static int num_cells(Link link){
+        int n = 0;
+        for(AbstractLaneGroup lg : link.get_lgs())
+            n += lg instanceof FluidLaneGroup && ((FluidLaneGroup) lg).cells!=null ? ((FluidLaneGroup) lg).cells.size() : 1;
+        return n;
+    }
+
+    // number of road connections whose end link starts in a different subdomain than its end node
+    public static int cut_road_connections(Collection<Link> links,Map<Long,Integer> node2domain){
+        int cut = 0;
+        for(Link link : links){
+            Integer s = node2domain.get(link.get_start_node().getId());
+            Integer e = node2domain.get(link.get_end_node().getId());
+            if(s!=null && e!=null && !s.equals(e))
+                cut += num_road_connections_into(link);
+        }
+        return cut;
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private static int num_road_connections_into(Link link){
+        int n = 0;
+        for(RoadConnection rc : link.get_start_node().get_road_connections())
+            if(rc.get_end_link()==link)
+                n++;
+        return n;
+    }
+
+    // split nodes into k parts, numbered from first_part
+    private void bisect(int [] nodes,int k,int first_part,int [] part){
+
+        if(k==1 || nodes.length==0){
+            for(int v : nodes)
+                part[v] = first_part;
+            return;
+        }
+
+        if(nodes.length==1){
+            part[nodes[0]] = first_part;
+            return;
+        }
+
+        int k0 = k/2;
+        long total = 0;
+        long max_weight = 0;
+        for(int v : nodes) {
+            total += weight[v];
+            max_weight = Math.max(max_weight,weight[v]);
+        }
+        double target = total * k0 / (double) k;
+        double tol = Math.max(imbalance*total,max_weight);
+
+        // side[v] = -1 outside this subproblem, 0 or 1 inside
+        int [] side = new int[node_ids.length];
+        Arrays.fill(side,-1);
+        for(int v : nodes)
+            side[v] = 1;
+
+        long w0 = grow(nodes,side,target);
+        refine(nodes,side,w0,target,tol);
+
+        int n0 = 0;
+        for(int v : nodes)
+            if(side[v]==0)
+                n0++;
+        int [] nodes0 = new int[n0];
+        int [] nodes1 = new int[nodes.length-n0];
+        int i0 = 0, i1 = 0;
+        for(int v : nodes)
+            if(side[v]==0)
+                nodes0[i0++] = v;
+            else
+                nodes1[i1++] = v;
+
+        bisect(nodes0,k0,first_part,part);
+        bisect(nodes1,k-k0,first_part+k0,part);
+    }
+
+    // move nodes from side 1 to side 0 until side 0 reaches the target weight. The next node is
+    // the one on the frontier with the largest gain, i.e. connections to side 0 minus connections
+    // to side 1, which keeps the boundary short.
+    private long grow(int [] nodes,int [] side,double target){
+        long w0 = 0;
+        int next_seed = 0;
+        int [] gain = new int[node_ids.length];
+        for(int v : nodes)
+            for(int j=0;j<adj[v].length;j++)
+                if(side[adj[v][j]]>=0)
+                    gain[v] -= adj_cost[v][j];
+
+        // entries are {gain,node}; entries whose gain is out of date are skipped
+        PriorityQueue<int[]> frontier = new PriorityQueue<>((a,b) -> a[0]!=b[0] ? Integer.compare(b[0],a[0]) : Integer.compare(a[1],b[1]));
+        int seed = peripheral(nodes[0],side);
+        frontier.add(new int[]{gain[seed],seed});
+        while(w0<target){
+            if(frontier.isEmpty()){
+                // disconnected: continue from the first node still on side 1
+                while(next_seed<nodes.length && side[nodes[next_seed]]!=1)
+                    next_seed++;
+                if(next_seed==nodes.length)
+                    break;
+                int v = nodes[next_seed];
+                frontier.add(new int[]{gain[v],v});
+            }
+            int [] e = frontier.poll();
+            int v = e[1];
+            if(side[v]!=1 || e[0]!=gain[v])
+                continue;
+            if(w0>0 && Math.abs(w0+weight[v]-target) > Math.abs(w0-target))
+                break;
+            side[v] = 0;
+            w0 += weight[v];
+            for(int j=0;j<adj[v].length;j++){
+                int u = adj[v][j];
+                if(side[u]!=1)
+                    continue;
+                gain[u] += 2*adj_cost[v][j];
+                frontier.add(new int[]{gain[u],u});
+            }
+        }
+        return w0;
+    }
+
+    // greedy boundary refinement: move nodes with positive gain, or zero gain and better balance
+    private void refine(int [] nodes,int [] side,long w0,double target,double tol){
+        for(int pass=0;pass<refine_passes;pass++){
+            boolean moved = false;
+            for(int v : nodes){
+                int gain = 0;
+                for(int j=0;j<adj[v].length;j++){
+                    int u = adj[v][j];
+                    if(side[u]<0)
+                        continue;
+                    gain += side[u]==side[v] ? -adj_cost[v][j] : adj_cost[v][j];
+                }
+                if(gain<0)
+                    continue;
+                long new_w0 = side[v]==0 ? w0-weight[v] : w0+weight[v];
+                boolean balanced = Math.abs(new_w0-target) <= tol;
+                boolean better_balance = Math.abs(new_w0-target) < Math.abs(w0-target);
+                if( balanced && (gain>0 || better_balance) && has_neighbor_across(v,side) ){
+                    side[v] = 1-side[v];
+                    w0 = new_w0;
+                    moved = true;
+                }
+            }
+            if(!moved)
+                break;
+        }
+    }
+
+    private boolean has_neighbor_across(int v,int [] side){
+        for(int u : adj[v])
+            if(side[u]>=0 && side[u]!=side[v])
+                return true;
+        return false;
+    }
+
+    // last node reached by two breadth-first searches, the first one starting at v
+    private int peripheral(int v,int [] side){
+        return farthest(farthest(v,side),side);
+    }
+
+    private int farthest(int v,int [] side){
+        boolean [] seen = new boolean[node_ids.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(v);
+        seen[v] = true;
+        int last = v;
+        while(!queue.isEmpty()){
+            last = queue.poll();
+            for(int u : adj[last])
+                if(side[u]>=0 && !seen[u]){
+                    seen[u] = true;
+                    queue.add(u);
+                }
+        }
+        return last;
+    }
+
+}
@@ -0,0 +1,30 @@
+package models.fluid.partition;
+
+import core.Link;
+import core.packet.PacketLink;
+import utils.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// In-process channel. Sending and receiving are separated by a barrier, so the buffer
+// needs no locking.
+public class PacketChannelMemory implements InterfacePacketChannel {
+
+    private List<Pair<Link,PacketLink>> buffer = new ArrayList<>();
+
+    @Override
+    public void send(Link link, PacketLink packet) {
+        buffer.add(new Pair<>(link,packet));
+    }
+
+    @Override
+    public List<Pair<Link,PacketLink>> receive() {
+        if(buffer.isEmpty())
+            return buffer;
+        List<Pair<Link,PacketLink>> X = buffer;
+        buffer = new ArrayList<>();
+        return X;
+    }
+
+}
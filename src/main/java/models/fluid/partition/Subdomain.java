@@ -0,0 +1,46 @@
+package models.fluid.partition;
+
+import core.Link;
+import models.fluid.nodemodel.NodeModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Links and node models updated by one thread. Lists keep the order of the model.
+public class Subdomain {
+
+    public final int id;
+    public final List<Link> links = new ArrayList<>();
+    public final List<Link> source_links = new ArrayList<>();
+    public final List<Link> sink_links = new ArrayList<>();
+    public final List<NodeModel> node_models = new ArrayList<>();
+    public long num_cells;
+
+    private final String thread_name;
+    private ExecutorService thread;     // started on first use, stopped by close
+
+    public Subdomain(String model_name,int id){
+        this.id = id;
+        this.thread_name = "otm-" + model_name + "-subdomain-" + id;
+    }
+
+    ExecutorService get_thread(){
+        if(thread==null)
+            thread = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r,thread_name);
+                t.setDaemon(true);
+                return t;
+            });
+        return thread;
+    }
+
+    // stop the thread. It starts again if the subdomain is used afterwards.
+    public void close(){
+        if(thread!=null)
+            thread.shutdown();
+        thread = null;
+    }
+
+}
@@ -21,6 +21,13 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         vehicle_scheduled = false;
     }
 
+    // the event of the last run is gone
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        vehicle_scheduled = false;
+        super.initialize(scenario);
+    }
+
     @Override
     public void set_demand_vps(Dispatcher dispatcher,float time,double value) throws OTMException {
         super.set_demand_vps(dispatcher,time,value);
@@ -32,7 +39,7 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         if(vehicle_scheduled)
             return;
 
-        Float wait_time = OTMUtils.get_waiting_time(source_demand_vps,link.get_model().stochastic_process);
+        Float wait_time = OTMUtils.get_waiting_time(source_demand_vps,link.get_model().stochastic_process,random);
         if(wait_time!=null) {             ;
             dispatcher.register_event(new EventCreateVehicle(dispatcher, timestamp + wait_time, this));
             vehicle_scheduled = true;
@@ -44,7 +51,7 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         AbstractVehicleModel model = (AbstractVehicleModel) link.get_model();
 
         // create a vehicle
-        AbstractVehicle vehicle = model.create_vehicle(commodity.getId(),commodity.vehicle_event_listeners);
+        AbstractVehicle vehicle = model.create_vehicle(link.get_scenario().get_vehicle_id(),commodity.getId(),commodity.vehicle_event_listeners);
 
         // sample key
         State state = sample_state();
@@ -88,7 +88,8 @@ public abstract class VehicleLaneGroup extends AbstractLaneGroup {
             vehs.addAll( buffer.add_packet_and_extract_vehicles(vp.container,this) );
 
         // set next link id
-        vehs.forEach(v->v.set_next_link_id(next_link_id));
+        StateRegistry states = link.get_scenario().states;
+        vehs.forEach(v->v.set_next_link_id(states,next_link_id));
 
         return vehs;
     }
@@ -4,7 +4,7 @@ import core.AbstractVehicle;
 import core.Link;
 import core.RoadConnection;
 import dispatch.Dispatcher;
-import dispatch.EventPoke;
+import dispatch.EventPokePeriodic;
 import dispatch.Pokable;
 import error.OTMErrorLog;
 import error.OTMException;
@@ -15,6 +15,7 @@ import output.AbstractOutput;
 import output.InterfaceVehicleListener;
 import core.Scenario;
 import utils.StochasticProcess;
+import utils.WorkerPool;
 
 import java.util.*;
 
@@ -22,9 +23,20 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
 
     public final float dt;
 
+    // The per lane group passes of the update run on the pool. Releases move vehicles
+    // across links, so they run serially, in the order of the lane group array.
+    protected final WorkerPool pool;                // null if serial
+    protected NewellLaneGroup[] lanegroup_array;    // in the order of links
+    protected double[] upstream_positions;          // of each lane group, published after the releases
+
     public ModelNewell(String name, Set<Link> links, StochasticProcess process, jaxb.ModelParams params) throws OTMException {
         super(name,links,process);
         this.dt = params.getSimDt()==null ? -1 : params.getSimDt();
+
+        int threads = params.getThreads()==null ? 1 : params.getThreads();
+        if(threads<1)
+            throw new OTMException("Model " + name + ": threads must be positive.");
+        this.pool = threads>1 ? new WorkerPool(threads) : null;
     }
 
     //////////////////////////////////////////////////////////////
@@ -68,8 +80,8 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
     }
 
     @Override
-    public AbstractVehicle create_vehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
-        return new NewellVehicle(comm_id,event_listeners);
+    public AbstractVehicle create_vehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
+        return new NewellVehicle(id,comm_id,event_listeners);
     }
 
     //////////////////////////////////////////////////
@@ -92,9 +104,32 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
 
     }
 
+    @Override
+    public void initialize(Scenario scenario, float start_time) throws OTMException {
+        super.initialize(scenario,start_time);
+        List<NewellLaneGroup> lgs = new ArrayList<>();
+        for(Link link : links)
+            for(AbstractLaneGroup lg : link.get_lgs())
+                lgs.add((NewellLaneGroup) lg);
+        lanegroup_array = lgs.toArray(new NewellLaneGroup[0]);
+
+        // handles on the next links of each lane group
+        upstream_positions = new double[lanegroup_array.length];
+        for(int i=0;i<lanegroup_array.length;i++)
+            lanegroup_array[i].index = i;
+        for(NewellLaneGroup lg : lanegroup_array)
+            lg.set_next_links(upstream_positions);
+    }
+
+    @Override
+    public void terminate() {
+        if(pool!=null)
+            pool.close();
+    }
+
     @Override
     public void register_with_dispatcher(Scenario scenario, Dispatcher dispatcher, float start_time) {
-        dispatcher.register_event(new EventPoke(dispatcher, 60,start_time + dt, this));
+        dispatcher.register_event(new EventPokePeriodic(dispatcher, 60,start_time + dt, dt, this));
     }
 
     //////////////////////////////////////////////////
@@ -104,15 +139,14 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
     @Override
     public void poke(Dispatcher dispatcher, float timestamp) throws OTMException {
         update_state(timestamp);
-        dispatcher.register_event(new EventPoke(dispatcher, 6,timestamp + dt, this));
     }
 
-    private void update_state(float timestamp) throws OTMException{
+    protected void update_state(float timestamp) throws OTMException{
 
         // apply Newell's update formula to all vehicles
-        for(Link link : links) {
-            for (AbstractLaneGroup alg : link.get_lgs()) {
-                NewellLaneGroup lg = (NewellLaneGroup) alg;
+        for_each_lanegroup((from,to) -> {
+            for(int i=from;i<to;i++) {
+                NewellLaneGroup lg = lanegroup_array[i];
                 for( NewellVehicle vehicle : lg.vehicles ) {
                     double dx = Math.min(lg.dv, vehicle.headway - lg.dw);
                     dx = Math.min( dx , vehicle.headway * lg.dc);
@@ -120,65 +154,40 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
                     vehicle.new_pos = vehicle.pos + dx;
                 }
             }
-        }
+        });
 
         // move vehicles to new link
-        for(Link link : links) {
-            for (AbstractLaneGroup alg : link.get_lgs()) {
-                NewellLaneGroup lg = (NewellLaneGroup) alg;
-                Iterator<NewellVehicle> it = lg.vehicles.iterator();
-                while (it.hasNext()) {
-                    NewellVehicle vehicle = it.next();
-                    // possibly release the vehicle from this lanegroup
-                    if (vehicle.new_pos > lg.get_length()) {
-                        boolean released = lg.release_vehicle(timestamp, it, vehicle);
-
-                        if(!released)
-                            vehicle.new_pos = (vehicle.pos + lg.get_length())/2d;
+        for(NewellLaneGroup lg : lanegroup_array) {
+            Iterator<NewellVehicle> it = lg.vehicles.iterator();
+            while (it.hasNext()) {
+                NewellVehicle vehicle = it.next();
+                // possibly release the vehicle from this lanegroup
+                if (vehicle.new_pos > lg.get_length()) {
+                    boolean released = lg.release_vehicle(timestamp, it, vehicle);
+
+                    if(!released)
+                        vehicle.new_pos = (vehicle.pos + lg.get_length())/2d;
 
-                    }
                 }
             }
         }
 
         // update position
-        for(Link link : links) {
-            for (AbstractLaneGroup alg : link.get_lgs()) {
-                NewellLaneGroup lg = (NewellLaneGroup) alg;
-                Iterator<NewellVehicle> it = lg.vehicles.iterator();
-                while (it.hasNext()) {
-                    NewellVehicle vehicle = it.next();
+        for_each_lanegroup((from,to) -> {
+            for(int i=from;i<to;i++) {
+                for (NewellVehicle vehicle : lanegroup_array[i].vehicles)
                     vehicle.pos = vehicle.new_pos;
-                }
+                upstream_positions[i] = lanegroup_array[i].get_upstream_vehicle_position();
             }
-        }
+        });
 
         // update headway
-        for(Link link : links) {
-            for (AbstractLaneGroup alg : link.get_lgs()) {
-                NewellLaneGroup lg = (NewellLaneGroup) alg;
-                Iterator<NewellVehicle> it = lg.vehicles.iterator();
-                while (it.hasNext()) {
-                    NewellVehicle vehicle = it.next();
-                    if(vehicle.leader==null) {
-
-                        if(vehicle.get_next_link_id()==null)
-                            vehicle.headway = Double.POSITIVE_INFINITY;
-                        else{
-
-                            Collection<AbstractLaneGroup> next_lgs = link.get_network().links.get(vehicle.get_next_link_id()).get_lgs();
-                            OptionalDouble next_vehicle_position = next_lgs.stream()
-                                    .mapToDouble(x->x.get_upstream_vehicle_position())
-                                    .min();
-
-                            if( !next_vehicle_position.isPresent() || Double.isNaN(next_vehicle_position.getAsDouble()) ){
-                                vehicle.headway = Double.POSITIVE_INFINITY;
-                            } else {
-                                vehicle.headway = next_vehicle_position.getAsDouble() + vehicle.get_lanegroup().get_length() - vehicle.pos;
-                            }
-
-                        }
-                    }
+        for_each_lanegroup((from,to) -> {
+            for(int i=from;i<to;i++) {
+                NewellLaneGroup lg = lanegroup_array[i];
+                for(NewellVehicle vehicle : lg.vehicles) {
+                    if(vehicle.leader==null)
+                        vehicle.headway = lg.headway_to_next_link(vehicle,vehicle.pos);
                     else{
                         if(vehicle.leader.get_lanegroup()==vehicle.get_lanegroup())
                             vehicle.headway = vehicle.leader.pos - vehicle.pos;
@@ -189,8 +198,17 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
 
                 lg.update_long_supply();
             }
-        }
+        });
+
+    }
 
+    // A task may write only to its own lane groups and their vehicles. The headway pass reads
+    // the positions of other lane groups, which are not written in that pass.
+    protected void for_each_lanegroup(WorkerPool.InterfaceTask task) throws OTMException {
+        if(pool==null)
+            task.run(0,lanegroup_array.length);
+        else
+            pool.run(lanegroup_array.length,task);
     }
 
 }
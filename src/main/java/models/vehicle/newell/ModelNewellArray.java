@@ -0,0 +1,76 @@
+package models.vehicle.newell;
+
+import core.AbstractLaneGroup;
+import core.Link;
+import core.RoadConnection;
+import error.OTMException;
+import utils.StochasticProcess;
+
+import java.util.Set;
+
+// Newell's model with the vehicles of each lane group in primitive arrays (model type
+// "micro_array", see NewellArrayLaneGroup). The new position, release and headway of the
+// vehicles behind the front one are done in a single sweep over each lane group. The
+// headway of front vehicles depends on other lane groups, so it is set once all positions
+// have been committed. Results are the same as ModelNewell, with or without threads.
+public class ModelNewellArray extends ModelNewell {
+
+    public ModelNewellArray(String name, Set<Link> links, StochasticProcess process, jaxb.ModelParams params) throws OTMException {
+        super(name,links,process,params);
+    }
+
+    @Override
+    public AbstractLaneGroup create_lane_group(Link link, core.geometry.Side side, Float length, int num_lanes, int start_lane, Set<RoadConnection> out_rcs,jaxb.Roadparam rp) throws OTMException {
+        return new NewellArrayLaneGroup(link,side,length,num_lanes,start_lane,out_rcs,rp);
+    }
+
+    @Override
+    protected void update_state(float timestamp) throws OTMException{
+
+        if(pool==null) {
+
+            for (NewellLaneGroup lg : lanegroup_array)
+                ((NewellArrayLaneGroup) lg).start_step();
+
+            // new positions, releases, and headways behind the front vehicles
+            for (NewellLaneGroup lg : lanegroup_array)
+                ((NewellArrayLaneGroup) lg).sweep(timestamp);
+
+            for (int i=0;i<lanegroup_array.length;i++) {
+                ((NewellArrayLaneGroup) lanegroup_array[i]).commit_positions();
+                upstream_positions[i] = lanegroup_array[i].get_upstream_vehicle_position();
+            }
+        }
+
+        // with threads the sweep is split around the releases, which run serially
+        else {
+
+            for_each_lanegroup((from,to) -> {
+                for(int i=from;i<to;i++) {
+                    NewellArrayLaneGroup lg = (NewellArrayLaneGroup) lanegroup_array[i];
+                    lg.start_step();
+                    lg.update_positions();
+                }
+            });
+
+            for (NewellLaneGroup lg : lanegroup_array)
+                ((NewellArrayLaneGroup) lg).release(timestamp);
+
+            for_each_lanegroup((from,to) -> {
+                for(int i=from;i<to;i++) {
+                    NewellArrayLaneGroup lg = (NewellArrayLaneGroup) lanegroup_array[i];
+                    lg.update_headways_behind_head();
+                    lg.commit_positions();
+                    upstream_positions[i] = lg.get_upstream_vehicle_position();
+                }
+            });
+        }
+
+        for_each_lanegroup((from,to) -> {
+            for(int i=from;i<to;i++)
+                ((NewellArrayLaneGroup) lanegroup_array[i]).update_front_headways();
+        });
+
+    }
+
+}
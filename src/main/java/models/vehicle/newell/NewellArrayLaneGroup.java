@@ -0,0 +1,352 @@
+package models.vehicle.newell;
+
+import core.*;
+import core.packet.PacketLaneGroup;
+import core.packet.PacketLink;
+import error.OTMException;
+import traveltime.VehicleLaneGroupTimer;
+import utils.OTMUtils;
+
+import java.util.OptionalDouble;
+import java.util.Set;
+
+// Newell lane group with its vehicles in a ring buffer of primitive arrays, front to back
+// (model type "micro_array"). Positions and headways live in double[] arrays, and the
+// vehicle objects are kept in a side array for listeners, timers and outputs. The
+// position of a vehicle object is only up to date once it has left the lane group.
+public class NewellArrayLaneGroup extends NewellLaneGroup {
+
+    private static final int initial_capacity = 8;
+
+    // ring buffer
+    private NewellVehicle[] veh;
+    private double[] pos;           // meters
+    private double[] new_pos;       // meters, position at the end of the current step
+    private double[] headway;       // meters
+    private int head;
+    private int size;
+    private long head_seq;          // seq of the vehicle at the head
+    private int num_detached;       // vehicles behind the head without a leader, see release_head
+
+    // current step
+    private int num_old;            // vehicles present when the step started
+    private int num_swept;          // vehicles whose headway was set by the sweep
+
+    ////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////
+
+    public NewellArrayLaneGroup(Link link, core.geometry.Side side, float length, int num_lanes, int start_lane, Set<RoadConnection> out_rcs, jaxb.Roadparam rp) throws OTMException {
+        super(link, side, length, num_lanes, start_lane, out_rcs, rp);
+        veh = new NewellVehicle[initial_capacity];
+        pos = new double[initial_capacity];
+        new_pos = new double[initial_capacity];
+        headway = new double[initial_capacity];
+    }
+
+    ////////////////////////////////////////////
+    // InterfaceLaneGroup
+    ///////////////////////////////////////////
+
+    @Override
+    public Double get_upstream_vehicle_position(){
+        return size==0 ? Double.NaN : pos[slot(size-1)];
+    }
+
+    @Override
+    public void add_vehicle_packet(float timestamp, PacketLaneGroup vp, Long next_link_id) throws OTMException {
+
+        for(AbstractVehicle aveh : create_vehicles_from_packet(vp,next_link_id)){
+
+            NewellVehicle vehicle = (NewellVehicle)aveh;
+
+            vehicle.lg = this;
+
+            double p = vehicle.pos;
+            double np = vehicle.new_pos;
+            double h;
+
+            if(size>0) {
+
+                int s = slot(size-1);
+                NewellVehicle leader = veh[s];
+                leader.follower = vehicle;
+                vehicle.leader = leader;
+
+                np = Math.min( np , pos[s] - dw);
+                np = Math.max( np , 0d);
+                p = np;
+                h = pos[s] - p;
+            }
+
+            else {
+                vehicle.leader = null;
+                h = Double.POSITIVE_INFINITY;
+            }
+
+            append(vehicle,p,np,h);
+
+            // inform the travel timers
+            if(travel_timer!=null)
+                ((VehicleLaneGroupTimer)travel_timer).vehicle_enter(timestamp,vehicle);
+
+        }
+
+        update_long_supply();
+
+    }
+
+    @Override
+    public float vehs_dwn_for_comm(Long comm_id) {
+        // called by set_road_params in the super constructor, before the arrays exist
+        if(veh==null)
+            return 0f;
+        if(comm_id==null)
+            return size;
+        int n = 0;
+        for(int k=0;k<size;k++)
+            if(veh[slot(k)].get_commodity_id()==comm_id)
+                n++;
+        return n;
+    }
+
+    ////////////////////////////////////////////
+    // vehicles, front to back
+    ///////////////////////////////////////////
+
+    @Override
+    public int num_vehicles(){
+        return size;
+    }
+
+    @Override
+    public NewellVehicle vehicle_at(int k){
+        return veh[slot(k)];
+    }
+
+    @Override
+    public double position_at(int k){
+        return pos[slot(k)];
+    }
+
+    // current position of any vehicle
+    protected static double position_of(NewellVehicle vehicle){
+        if(vehicle.lg instanceof NewellArrayLaneGroup) {
+            NewellArrayLaneGroup lg = (NewellArrayLaneGroup) vehicle.lg;
+            int k = lg.index_of(vehicle);
+            if (k >= 0)
+                return lg.pos[lg.slot(k)];
+        }
+        return vehicle.pos;
+    }
+
+    // position of the vehicle from the head, -1 if it is not here
+    private int index_of(NewellVehicle vehicle){
+        long k = vehicle.seq - head_seq;
+        return k >= 0 && k < size && veh[slot((int) k)] == vehicle ? (int) k : -1;
+    }
+
+    ////////////////////////////////////////////
+    // update, called by ModelNewellArray
+    ///////////////////////////////////////////
+
+    protected void start_step(){
+        num_old = size;
+    }
+
+    // new positions, release from the front, and headways behind the front vehicle.
+    // Other lane groups still see the positions of the previous step.
+    protected void sweep(float timestamp) throws OTMException {
+        update_positions();
+        release(timestamp);
+        update_headways_behind_head();
+    }
+
+    // Newell's update formula for the vehicles present at the start of the step, run over
+    // the contiguous pieces of the ring so that the loop is a plain array loop.
+    protected void update_positions(){
+        int first = Math.min(num_old, veh.length-head);
+        update_positions(head, head+first);
+        update_positions(0, num_old-first);
+    }
+
+    // release vehicles from the front while they fit into their next link
+    protected void release(float timestamp) throws OTMException {
+        while(size>0 && new_pos[head] > length)
+            if(!release_head(timestamp)) {
+                new_pos[head] = (pos[head] + length) / 2d;
+                break;
+            }
+    }
+
+    protected void update_headways_behind_head(){
+        if(num_detached==0)
+            for(int k=1;k<size;k++)
+                headway[slot(k)] = new_pos[slot(k-1)] - new_pos[slot(k)];
+        else
+            for(int k=1;k<size;k++)
+                if(veh[slot(k)].leader!=null)
+                    headway[slot(k)] = new_pos[slot(k-1)] - new_pos[slot(k)];
+        num_swept = size;
+    }
+
+    protected void commit_positions(){
+        double[] x = pos;
+        pos = new_pos;
+        new_pos = x;
+    }
+
+    // headways that depend on other lane groups: the front vehicle, and vehicles without
+    // a leader. Also those of the vehicles that arrived after the sweep.
+    protected void update_front_headways() throws OTMException {
+
+        if(size>0)
+            headway[head] = headway_of(0);
+
+        for(int k=num_detached>0 ? 1 : Math.max(1,num_swept);k<size;k++)
+            if(k>=num_swept || veh[slot(k)].leader==null)
+                headway[slot(k)] = headway_of(k);
+
+        update_long_supply();
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    // headway of the k-th vehicle from committed positions
+    private double headway_of(int k) throws OTMException {
+        int s = slot(k);
+        NewellVehicle vehicle = veh[s];
+
+        if(vehicle.leader==null)
+            return headway_to_next_link(vehicle,pos[s]);
+
+        // the leader of a vehicle behind the head is the vehicle in front of it
+        if(k>0)
+            return pos[slot(k-1)] - pos[s];
+
+        double leader_pos = position_of(vehicle.leader);
+        return vehicle.leader.get_lanegroup()==this ? leader_pos - pos[s] : leader_pos - pos[s] + length;
+    }
+
+    private void update_positions(int from,int to){
+        double[] p = pos;
+        double[] np = new_pos;
+        double[] h = headway;
+        double v = dv, w = dw, c = dc;
+        for(int s=from;s<to;s++){
+            double dx = Math.min(v, h[s] - w);
+            dx = Math.min( dx , h[s] * c);
+            np[s] = p[s] + Math.max( dx , 0d );
+        }
+    }
+
+    private int slot(int k){
+        return (head+k) & (veh.length-1);
+    }
+
+    private void append(NewellVehicle vehicle,double p,double np,double h){
+        if(size==veh.length)
+            grow();
+        int s = slot(size);
+        veh[s] = vehicle;
+        pos[s] = p;
+        new_pos[s] = np;
+        headway[s] = h;
+        vehicle.seq = head_seq + size;
+        size++;
+    }
+
+    private void grow(){
+        int n = 2*veh.length;
+        NewellVehicle[] v = new NewellVehicle[n];
+        double[] p = new double[n];
+        double[] np = new double[n];
+        double[] h = new double[n];
+        for(int k=0;k<size;k++){
+            int s = slot(k);
+            v[k] = veh[s];
+            p[k] = pos[s];
+            np[k] = new_pos[s];
+            h[k] = headway[s];
+        }
+        veh = v;
+        pos = p;
+        new_pos = np;
+        headway = h;
+        head = 0;
+    }
+
+    private boolean release_head(float timestamp) throws OTMException {
+
+        NewellVehicle vehicle = veh[head];
+
+        double next_supply = Double.POSITIVE_INFINITY;
+        Link next_link = null;
+        RoadConnection rc = null;
+
+        if(!link.is_sink()){
+
+            // get next link
+            State state = vehicle.get_state();
+            Long next_link_id = state.isPath ? link.get_next_link_in_path(state.pathOrlink_id).getId() : state.pathOrlink_id;
+
+            rc = outlink2roadconnection.get(next_link_id);
+            next_link = rc.get_end_link();
+
+            // at least one candidate lanegroup must have space for one vehicle.
+            // Otherwise the road connection is blocked.
+            OptionalDouble next_supply_o = rc.get_out_lanegroups().stream()
+                    .mapToDouble(AbstractLaneGroup::get_long_supply)
+                    .max();
+
+            assert(next_supply_o.isPresent());
+            next_supply = next_supply_o.getAsDouble();
+        }
+
+        if(next_supply > OTMUtils.epsilon){
+
+            // possibly disconnect from follower. The follower is the vehicle that entered a lane
+            // group behind this one. It may have moved on since, and be anywhere in its lane group.
+            if(next_link==null || !(next_link.get_model() instanceof AbstractVehicleModel))
+                if(vehicle.follower!=null) {
+                    NewellVehicle follower = vehicle.follower;
+                    if(follower.leader!=null && follower.lg instanceof NewellArrayLaneGroup && ((NewellArrayLaneGroup) follower.lg).index_of(follower)>0)
+                        ((NewellArrayLaneGroup) follower.lg).num_detached++;
+                    follower.headway = Double.POSITIVE_INFINITY;
+                    follower.leader = null;
+                }
+
+            // remove the vehicle from the lanegroup. It carries its positions to the next one.
+            vehicle.pos = pos[head];
+            vehicle.new_pos = new_pos[head] - length;
+            vehicle.headway = headway[head];
+            veh[head] = null;
+            head = slot(1);
+            head_seq++;
+            size--;
+            if(size>0 && veh[head].leader==null && num_detached>0)
+                num_detached--;
+
+            // inform flow accumulators
+            update_flow_accummulators(vehicle.get_state(), 1f);
+
+            // inform the travel timers
+            if(travel_timer!=null)
+                ((VehicleLaneGroupTimer)travel_timer).vehicle_exit(timestamp,vehicle,link.getId(),next_link);
+
+            // send vehicle core.packet to next link
+            if(next_link!=null && rc!=null)
+                next_link.get_model().add_vehicle_packet(next_link,timestamp,new PacketLink(vehicle,rc));
+
+            update_long_supply();
+
+            return true;
+        }
+
+        return false;
+
+    }
+
+}
@@ -14,6 +14,7 @@ import core.packet.PacketLaneGroup;
 import core.packet.PacketLink;
 import core.Scenario;
 import traveltime.VehicleLaneGroupTimer;
+import utils.LongMap;
 import utils.OTMUtils;
 
 import java.util.*;
@@ -32,6 +33,13 @@ public class NewellLaneGroup extends VehicleLaneGroup {
     public double dw;   // w*dt [meters per dt]
     public double dc;   // rate*dt [veh per dt]
 
+    // For the headway of vehicles without a leader. The model publishes the upstream vehicle
+    // position of each of its lane groups once per step, and next links of the same model
+    // are read from there. Set by ModelNewell.initialize.
+    protected int index;                        // in upstream_positions
+    protected double[] upstream_positions;
+    protected LongMap<int[]> next_link_lgs;     // next link id -> indices of its lane groups
+
     ////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////
@@ -166,6 +174,9 @@ public class NewellLaneGroup extends VehicleLaneGroup {
 
     @Override
     public float vehs_dwn_for_comm(Long comm_id) {
+        // called by set_road_params in the super constructor, before the list exists
+        if(vehicles==null)
+            return 0f;
         return comm_id==null ?
                 vehicles.size() :
                 vehicles.stream().filter(v->v.get_commodity_id()==comm_id).count();
@@ -176,6 +187,22 @@ public class NewellLaneGroup extends VehicleLaneGroup {
         throw new OTMException("NOT IMPLEMENTED awpirg -jqig");
     }
 
+    ////////////////////////////////////////////
+    // vehicles, front to back
+    ///////////////////////////////////////////
+
+    public int num_vehicles(){
+        return vehicles.size();
+    }
+
+    public NewellVehicle vehicle_at(int k){
+        return vehicles.get(k);
+    }
+
+    public double position_at(int k){
+        return vehicles.get(k).pos;
+    }
+
     ////////////////////////////////////////////
     // InterfaceLaneGroup
     ///////////////////////////////////////////
@@ -237,4 +264,39 @@ public class NewellLaneGroup extends VehicleLaneGroup {
         return false;
 
     }
+    // called by ModelNewell.initialize, once the indices of its lane groups are set
+    protected void set_next_links(double[] upstream_positions) throws OTMException {
+        this.upstream_positions = upstream_positions;
+        next_link_lgs = new LongMap<>();
+        for(RoadConnection rc : outlink2roadconnection.values()){
+            Link next_link = rc.get_end_link();
+            if(next_link!=null && next_link.get_model()==link.get_model())
+                next_link_lgs.put(next_link.getId(), next_link.get_lgs().stream()
+                        .mapToInt(x->((NewellLaneGroup) x).index)
+                        .toArray());
+        }
+    }
+
+    // headway of a vehicle without a leader at position p, to the last vehicle of its next link
+    protected double headway_to_next_link(NewellVehicle vehicle, double p) throws OTMException {
+        Long next_link_id = vehicle.get_next_link_id();
+        if(next_link_id==null)
+            return Double.POSITIVE_INFINITY;
+        double next_vehicle_position = next_link_upstream_position(next_link_id);
+        return Double.isNaN(next_vehicle_position) ? Double.POSITIVE_INFINITY : next_vehicle_position + length - p;
+    }
+
+    // smallest upstream vehicle position in the next link, NaN if one of its lane groups is empty
+    private double next_link_upstream_position(long next_link_id) throws OTMException {
+        int[] lgs = next_link_lgs==null ? null : next_link_lgs.get(next_link_id);
+        if(lgs==null)
+            return link.get_network().get_link(next_link_id).get_lgs().stream()
+                    .mapToDouble(x->x.get_upstream_vehicle_position())
+                    .min()
+                    .orElse(Double.POSITIVE_INFINITY);
+        double x = Double.POSITIVE_INFINITY;
+        for(int i : lgs)
+            x = Math.min(x,upstream_positions[i]);
+        return x;
+    }
 }
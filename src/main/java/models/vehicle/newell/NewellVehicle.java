@@ -14,6 +14,8 @@ public class NewellVehicle extends AbstractVehicle {
     public NewellVehicle leader;
     public NewellVehicle follower;
 
+    public long seq;            // order of arrival in a NewellArrayLaneGroup
+
     ///////////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////////////
@@ -27,8 +29,8 @@ public class NewellVehicle extends AbstractVehicle {
         this.follower = null;
     }
 
-    public NewellVehicle(Long comm_id, Set<InterfaceVehicleListener> event_listeners){
-        super(comm_id,event_listeners);
+    public NewellVehicle(long id, Long comm_id, Set<InterfaceVehicleListener> event_listeners){
+        super(id,comm_id,event_listeners);
         this.pos = 0d;
         this.new_pos = 0d;
         this.headway = Double.NaN;
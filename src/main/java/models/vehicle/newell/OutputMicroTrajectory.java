@@ -49,8 +49,8 @@ public class OutputMicroTrajectory extends AbstractOutputTimed {
                 for(Link link : model.links){
                     for(AbstractLaneGroup alg : link.get_lgs()){
                         NewellLaneGroup lg = (NewellLaneGroup) alg;
-                        for(NewellVehicle vehicle : lg.vehicles)
-                            writer.write(String.format("%.2f\t%d\t%d\t%.2f\n",timestamp,vehicle.getId(), lg.getId(),vehicle.pos));
+                        for(int k=0;k<lg.num_vehicles();k++)
+                            writer.write(String.format("%.2f\t%d\t%d\t%.2f\n",timestamp,lg.vehicle_at(k).getId(), lg.getId(),lg.position_at(k)));
                     }
                 }
             } catch (IOException e) {
@@ -14,6 +14,7 @@ import core.packet.PacketLink;
 import core.Scenario;
 import traveltime.VehicleLaneGroupTimer;
 import utils.OTMUtils;
+import utils.StochasticProcess;
 
 import java.util.*;
 
@@ -30,6 +31,15 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     public float transit_time_sec;
     public double saturation_flow_rate_vps;
 
+    // release process. It runs only while vehicles wait and downstream can take them.
+    // A deterministic process keeps its grid of release times while dormant, in next_release_time.
+    private boolean release_scheduled;
+    private float next_release_time;
+    private final Set<MesoLaneGroup> blocked_upstream = new LinkedHashSet<>();   // dormant on this lanegroup's supply
+
+    // moves vehicles from the transit queue to the waiting queue, at the exit time of the first one
+    private EventTransitToWaiting transit_event;
+
     ////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////
@@ -55,10 +65,13 @@ public class MesoLaneGroup extends VehicleLaneGroup {
         super.initialize(scenario, start_time);
         transit_queue.initialize();
         waiting_queue.initialize();
+        transit_event = null;
 //        current_max_flow_rate_vps = saturation_flow_rate_vps;
 
-        // register first vehicle exit
-        schedule_release_vehicle(start_time);
+        // first vehicle exit, once a vehicle waits
+        release_scheduled = false;
+        blocked_upstream.clear();
+        sleep_release(start_time);
 
         update_long_supply();
     }
@@ -95,12 +108,12 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     public void set_actuator_capacity_vps(double rate_vps) {
         if(rate_vps<-OTMUtils.epsilon)
             return;
-        this.saturation_flow_rate_vps = Math.min(nom_saturation_flow_rate_vps,rate_vps);
+        set_saturation_flow_rate(Math.min(nom_saturation_flow_rate_vps,rate_vps));
     }
 
     @Override
     public void set_to_nominal_capacity() {
-        this.saturation_flow_rate_vps = nom_saturation_flow_rate_vps;
+        set_saturation_flow_rate(nom_saturation_flow_rate_vps);
     }
 
 
@@ -141,7 +154,7 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     public void add_vehicle_packet(float timestamp, PacketLaneGroup vp, Long next_link_id) throws OTMException {
 
         // for each vehicle
-        Dispatcher dispatcher = link.get_scenario().dispatcher;
+        float exit_time = timestamp + transit_time_sec;
         for(AbstractVehicle absveh : create_vehicles_from_packet(vp,next_link_id)){
 
             MesoVehicle veh = (MesoVehicle) absveh;
@@ -152,17 +165,17 @@ public class MesoLaneGroup extends VehicleLaneGroup {
                     ev.move_from_to_queue(timestamp,veh,veh.my_queue,transit_queue);
 
             // tell the vehicle it has moved
-            veh.move_to_queue(timestamp,transit_queue);
+            veh.move_to_queue(timestamp,transit_queue,exit_time);
 
             // tell the travel timers
             if (travel_timer != null)
                 ((VehicleLaneGroupTimer)travel_timer).vehicle_enter(timestamp,veh);
 
-            // register_with_dispatcher dispatch to go to waiting queue
-            dispatcher.register_event(new EventTransitToWaiting(dispatcher,timestamp + transit_time_sec,veh));
-
         }
 
+        // register_with_dispatcher dispatch to go to waiting queue, unless one comes earlier
+        schedule_transit_to_waiting();
+
         update_long_supply();
 
     }
@@ -203,20 +216,23 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     @Override
     public void release_vehicle_packets(float timestamp) throws OTMException {
 
-        // schedule the next vehicle release dispatch
-        schedule_release_vehicle(timestamp);
+        release_scheduled = false;
 
-        // ignore if waiting queue is empty
-        if(waiting_queue.num_vehicles()==0)
+        // go dormant if waiting queue is empty. EventTransitToWaiting wakes the process.
+        if(waiting_queue.num_vehicles()==0) {
+            sleep_release(timestamp);
             return;
+        }
 
         // otherwise get the first vehicle
         MesoVehicle vehicle = waiting_queue.peek_vehicle();
 
         // is this vehicle waiting to change lanes out of its queue?
         // if so, the lane group is blocked
-        if(vehicle.waiting_for_lane_change)
+        if(vehicle.waiting_for_lane_change) {
+            schedule_release_vehicle(timestamp);
             return;
+        }
 
         double next_supply = Double.POSITIVE_INFINITY;;
         Link next_link = null;
@@ -237,17 +253,28 @@ public class MesoLaneGroup extends VehicleLaneGroup {
                     .mapToDouble(AbstractLaneGroup::get_long_supply)
                     .max();
 
-            if(!next_supply_o.isPresent())
+            if(!next_supply_o.isPresent()) {
+                schedule_release_vehicle(timestamp);
                 return;
+            }
 
             next_supply = next_supply_o.getAsDouble();
 
+            // blocked by meso lanegroups: go dormant until one of them releases a vehicle.
+            // Other models do not signal their supply, so they are polled.
+            if(next_supply <= OTMUtils.epsilon && rc.get_out_lanegroups().stream().allMatch(x->x instanceof MesoLaneGroup)) {
+                for(AbstractLaneGroup lg : rc.get_out_lanegroups())
+                    ((MesoLaneGroup) lg).blocked_upstream.add(this);
+                sleep_release(timestamp);
+                return;
+            }
+
         }
 
         if(next_supply > OTMUtils.epsilon){
 
             // remove vehicle from this lanegroup
-            waiting_queue.remove_given_vehicle(timestamp,vehicle);
+            vehicle.release_from_queue();
 
             // inform flow accumulators
             update_flow_accummulators(vehicle.get_state(),1f);
@@ -271,12 +298,59 @@ public class MesoLaneGroup extends VehicleLaneGroup {
 
             update_long_supply();
 
+            // lanegroups blocked on this one may release again
+            wake_blocked_upstream(timestamp);
+
         }
 
+        // schedule the next vehicle release dispatch
+        schedule_release_vehicle(timestamp);
+
+    }
+
+    // used by EventTransitToWaiting. Vehicles whose transit has ended join the waiting queue.
+    public void transit_to_waiting(float timestamp) throws OTMException {
+
+        transit_event = null;
+
+        while(transit_queue.peek_exit_time()<=timestamp){
+            MesoVehicle vehicle = transit_queue.peek_vehicle();
+
+            // inform listeners
+            if(vehicle.get_event_listeners()!=null)
+                for(InterfaceVehicleListener ev : vehicle.get_event_listeners())
+                    ev.move_from_to_queue(timestamp,vehicle,vehicle.my_queue,waiting_queue);
+
+            vehicle.move_to_queue(timestamp,waiting_queue);
+        }
+
+        schedule_transit_to_waiting();
+
+        // start releasing if the lanegroup was dormant
+        wake_release(timestamp);
+    }
+
+    // start the release process if it is dormant and a vehicle waits. A deterministic process
+    // resumes on its grid, at the first release time not before now. A poisson process is
+    // memoryless, so it restarts with a fresh waiting time.
+    public void wake_release(float timestamp){
+        if(release_scheduled || waiting_queue.num_vehicles()==0)
+            return;
+        if(link.get_model().stochastic_process==StochasticProcess.deterministic){
+            if(saturation_flow_rate_vps<=0d)
+                return;
+            advance_release_grid(timestamp);
+            register_release(next_release_time);
+        }
+        else
+            schedule_release_vehicle(timestamp);
     }
 
     @Override
     public float vehs_dwn_for_comm(Long c){
+        // called by set_road_params in the super constructor, before the queues exist
+        if(transit_queue==null)
+            return 0f;
         return (float) (transit_queue.num_vehicles_for_commodity(c) + waiting_queue.num_vehicles_for_commodity(c));
     }
 
@@ -286,14 +360,66 @@ public class MesoLaneGroup extends VehicleLaneGroup {
 
     private void schedule_release_vehicle(float nowtime){
 
-        Float wait_time = OTMUtils.get_waiting_time(saturation_flow_rate_vps,link.get_model().stochastic_process);
+        Float wait_time = OTMUtils.get_waiting_time(saturation_flow_rate_vps,link.get_model().stochastic_process,random);
 
         if(wait_time!=null){
-            Scenario scenario = link.get_scenario();
             float timestamp = nowtime + wait_time;
-            scenario.dispatcher.register_event(
-                    new EventReleaseVehicleFromLaneGroup(scenario.dispatcher,timestamp,this));
+            next_release_time = timestamp;
+            register_release(timestamp);
         }
     }
 
+    // one event per lanegroup, at the exit time of the first vehicle in transit
+    private void schedule_transit_to_waiting(){
+        float exit_time = transit_queue.peek_exit_time();
+        if(exit_time==Float.POSITIVE_INFINITY || (transit_event!=null && transit_event.timestamp<=exit_time))
+            return;
+        Dispatcher dispatcher = link.get_scenario().dispatcher;
+        if(transit_event!=null)
+            dispatcher.cancel_event(transit_event);
+        transit_event = new EventTransitToWaiting(dispatcher,exit_time,this);
+        dispatcher.register_event(transit_event);
+    }
+
+    private void register_release(float timestamp){
+        Scenario scenario = link.get_scenario();
+        scenario.dispatcher.register_event(
+                new EventReleaseVehicleFromLaneGroup(scenario.dispatcher,timestamp,this));
+        release_scheduled = true;
+    }
+
+    // a deterministic process that goes dormant keeps its next release time
+    private void sleep_release(float nowtime){
+        if(link.get_model().stochastic_process==StochasticProcess.deterministic && saturation_flow_rate_vps>0d)
+            next_release_time = nowtime + (float) (1.0/saturation_flow_rate_vps);
+    }
+
+    // move the deterministic grid of a dormant process to the first release time not before now
+    private void advance_release_grid(float nowtime){
+        if(release_scheduled || link.get_model().stochastic_process!=StochasticProcess.deterministic || saturation_flow_rate_vps<=0d)
+            return;
+        float wait_time = (float) (1.0/saturation_flow_rate_vps);
+        while(next_release_time<nowtime)
+            next_release_time += wait_time;
+    }
+
+    private void wake_blocked_upstream(float timestamp){
+        if(blocked_upstream.isEmpty())
+            return;
+        List<MesoLaneGroup> lgs = new ArrayList<>(blocked_upstream);
+        blocked_upstream.clear();
+        for(MesoLaneGroup lg : lgs)
+            lg.wake_release(timestamp);
+    }
+
+    // a dormant deterministic process keeps the grid of the old rate up to now
+    private void set_saturation_flow_rate(double rate_vps){
+        Dispatcher dispatcher = link.get_scenario()==null ? null : link.get_scenario().dispatcher;
+        if(dispatcher!=null)
+            advance_release_grid(dispatcher.current_time);
+        this.saturation_flow_rate_vps = rate_vps;
+        if(dispatcher!=null)
+            wake_release(dispatcher.current_time);
+    }
+
 }
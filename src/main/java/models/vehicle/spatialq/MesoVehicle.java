@@ -8,7 +8,8 @@ import java.util.Set;
 
 public class MesoVehicle extends AbstractVehicle {
 
-    public Queue my_queue;
+    public Queue my_queue;              // current queue, or the last one after release_from_queue
+    private boolean released;           // true once removed from the head of my_queue
     public boolean waiting_for_lane_change;
 
     ///////////////////////////////////////////////////
@@ -20,8 +21,8 @@ public class MesoVehicle extends AbstractVehicle {
         this.waiting_for_lane_change = false;
     }
 
-    public MesoVehicle(Long comm_id, Set<InterfaceVehicleListener> event_listeners){
-        super(comm_id,event_listeners);
+    public MesoVehicle(long id, Long comm_id, Set<InterfaceVehicleListener> event_listeners){
+        super(id,comm_id,event_listeners);
         this.waiting_for_lane_change = false;
     }
 
@@ -73,15 +74,29 @@ public class MesoVehicle extends AbstractVehicle {
     ////////////////////////////////////////////////
 
     public void move_to_queue(float timestamp, Queue to_queue) throws OTMException {
+        move_to_queue(timestamp,to_queue,timestamp);
+    }
+
+    // used by MesoLaneGroup.release_vehicle. The vehicle leaves the head of its waiting queue,
+    // and keeps it in my_queue to report it as the from queue when it enters the next lanegroup.
+    public void release_from_queue() throws OTMException {
+        if(released || my_queue==null || my_queue.poll_vehicle()!=this)
+            throw new OTMException(String.format("Vehicle %d is not at the head of its queue.",getId()));
+        released = true;
+    }
+
+    // exit_time orders the vehicle in to_queue
+    public void move_to_queue(float timestamp, Queue to_queue, float exit_time) throws OTMException {
 
         Queue from_queue = my_queue;
 
         // remove vehicle from its current queue
-        if(from_queue!=null)
+        if(from_queue!=null && !released)
             from_queue.remove_given_vehicle(timestamp,this);
+        released = false;
 
         // add to the to_queue
-        to_queue.add_vehicle(this);
+        to_queue.add_vehicle(this,exit_time);
 
         // update vehicle queue reference
         my_queue = to_queue;
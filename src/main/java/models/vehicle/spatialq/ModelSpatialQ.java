@@ -84,8 +84,8 @@ public class ModelSpatialQ extends AbstractVehicleModel {
     }
 
     @Override
-    public AbstractVehicle create_vehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
-        return new MesoVehicle(comm_id,event_listeners);
+    public AbstractVehicle create_vehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
+        return new MesoVehicle(id,comm_id,event_listeners);
     }
 
     //////////////////////////////////////////////////////////////
@@ -2,20 +2,31 @@ package models.vehicle.spatialq;
 
 import error.OTMErrorLog;
 import error.OTMException;
+import utils.LongMap;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+// FIFO of vehicles in a ring buffer, ordered by the time at which each vehicle may leave.
+// In the transit queue this is the end of its transit, in the waiting queue the time it
+// arrived. Vehicles are added at the tail unless they leave earlier than the tail, and
+// removed at the head. Vehicle counts per commodity are kept as vehicles come and go.
 public class Queue {
 
     public enum Type {transit,waiting}
 
+    private static final int initial_capacity = 8;
+
     public final String id;
     public final Queue.Type type;
     public final MesoLaneGroup lanegroup;
-    private List<MesoVehicle> vehicles;
+
+    private MesoVehicle[] vehicles;
+    private float[] exit_times;
+    private int head;
+    private int size;
+    private LongMap<int[]> commodity_count;
 //    private PriorityQueue<LaneChangeRequest> lane_change_requests;
 
     ///////////////////////////////////////////////////
@@ -25,7 +36,7 @@ public class Queue {
     public Queue(MesoLaneGroup lanegroup, Queue.Type type) {
         this.type = type;
         this.lanegroup = lanegroup;
-        this.vehicles = new ArrayList<>();
+        clear();
 //        this.lane_change_requests = new PriorityQueue<>(LaneChangeRequest::compareTimestamp);
         switch(type){
             case transit:
@@ -44,7 +55,7 @@ public class Queue {
     }
 
     public void initialize() throws OTMException {
-        vehicles = new ArrayList<>();
+        clear();
     }
 
     /**
@@ -52,18 +63,19 @@ public class Queue {
      * @return Number of vehicles in queue
      */
     public long size() {
-        return vehicles.size();
+        return size;
     }
 
     /**
-     * Fetch the ids of MesoVehicles present 
+     * Fetch the ids of MesoVehicles present
      * within the queue.
      * @return List of MesoVehicle ids
      */
     public List<Long> get_vehicle_ids() {
-        return vehicles.stream()
-            .map(x -> x.getId())
-            .collect(Collectors.toList());
+        List<Long> X = new ArrayList<>(size);
+        for(int i=0;i<size;i++)
+            X.add(vehicles[slot(i)].getId());
+        return X;
     }
 
     ///////////////////////////////////////////////////
@@ -71,11 +83,47 @@ public class Queue {
     ///////////////////////////////////////////////////
 
     public MesoVehicle peek_vehicle() {
-        return vehicles.isEmpty() ? null : vehicles.get(0);
+        return size==0 ? null : vehicles[head];
+    }
+
+    // exit time of the first vehicle, infinity if the queue is empty
+    public float peek_exit_time() {
+        return size==0 ? Float.POSITIVE_INFINITY : exit_times[head];
+    }
+
+    // remove and return the first vehicle, null if the queue is empty
+    public MesoVehicle poll_vehicle() {
+        if(size==0)
+            return null;
+        MesoVehicle v = vehicles[head];
+        vehicles[head] = null;
+        head = slot(1);
+        size--;
+        count(v,-1);
+        return v;
     }
 
     public void remove_given_vehicle(float timestamp, MesoVehicle v) throws OTMException {
-        this.vehicles.remove(v);
+
+        // usually the first vehicle
+        if(size>0 && vehicles[head]==v){
+            poll_vehicle();
+            return;
+        }
+
+        int k = 1;
+        while(k<size && vehicles[slot(k)]!=v)
+            k++;
+        if(k>=size)
+            throw new OTMException(String.format("Vehicle %d is not in queue %s.",v.getId(),id));
+
+        for(int i=k;i<size-1;i++){
+            vehicles[slot(i)] = vehicles[slot(i+1)];
+            exit_times[slot(i)] = exit_times[slot(i+1)];
+        }
+        vehicles[slot(size-1)] = null;
+        size--;
+        count(v,-1);
 
 //        // process any lane change requests
 //        Link link = lanegroup.link;
@@ -83,24 +131,49 @@ public class Queue {
 
     }
 
+    // add at the tail, leaving with the last vehicle
     public void add_vehicle(MesoVehicle v) {
-        this.vehicles.add(v);
+        add_vehicle(v,size==0 ? Float.NEGATIVE_INFINITY : exit_times[slot(size-1)]);
+    }
+
+    // add behind all vehicles that leave no later than exit_time
+    public void add_vehicle(MesoVehicle v, float exit_time) {
+        if(size==vehicles.length)
+            grow();
+        int k = size;
+        while(k>0 && exit_times[slot(k-1)]>exit_time){
+            vehicles[slot(k)] = vehicles[slot(k-1)];
+            exit_times[slot(k)] = exit_times[slot(k-1)];
+            k--;
+        }
+        vehicles[slot(k)] = v;
+        exit_times[slot(k)] = exit_time;
+        size++;
+        count(v,1);
     }
 
     public void add_vehicles(Set<MesoVehicle> v) {
-        this.vehicles.addAll(v);
+        for(MesoVehicle x : v)
+            add_vehicle(x);
     }
 
     public void clear() {
-        this.vehicles.clear();
+        vehicles = new MesoVehicle[initial_capacity];
+        exit_times = new float[initial_capacity];
+        head = 0;
+        size = 0;
+        commodity_count = new LongMap<>();
     }
 
     public long num_vehicles_for_commodity(Long c) {
-        return c==null ? vehicles.size() : vehicles.stream().filter(x -> x.get_commodity_id()==c).count();
+        if(c==null)
+            return size;
+        int [] n = commodity_count.get(c);
+        return n==null ? 0 : n[0];
     }
 
     public int num_vehicles(){
-        return vehicles.size();
+        return size;
     }
 
 //    public void submit_lane_change_request(LaneChangeRequest r){
@@ -114,4 +187,34 @@ public class Queue {
 //                        .collect(toSet()) );
 //    }
 
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    // buffer index of the k-th vehicle
+    private int slot(int k){
+        return (head+k) & (vehicles.length-1);
+    }
+
+    private void grow(){
+        MesoVehicle[] new_vehicles = new MesoVehicle[2*vehicles.length];
+        float[] new_exit_times = new float[2*vehicles.length];
+        for(int i=0;i<size;i++){
+            new_vehicles[i] = vehicles[slot(i)];
+            new_exit_times[i] = exit_times[slot(i)];
+        }
+        vehicles = new_vehicles;
+        exit_times = new_exit_times;
+        head = 0;
+    }
+
+    private void count(MesoVehicle v,int delta){
+        int [] n = commodity_count.get(v.get_commodity_id());
+        if(n==null){
+            n = new int[1];
+            commodity_count.put(v.get_commodity_id(),n);
+        }
+        n[0] += delta;
+    }
+
 }
@@ -23,6 +23,7 @@ public abstract class AbstractOutput implements InterfaceOutput {
         link_flw,
         link_veh,
         link_sumveh,
+        link_aggregate,
         vht,
         lanegroup_flw,
         lanegroup_veh,
@@ -50,6 +51,8 @@ public abstract class AbstractOutput implements InterfaceOutput {
     public Writer writer;
     public final String prefix;
     public final boolean write_to_file;
+    public Float compression_dt;    // seconds of simulated time per compressed block, null for plain text
+    protected CompressedBlockStream compressed_stream;
 
     //////////////////////////////////////////////////////
     // construction
@@ -78,9 +81,14 @@ public abstract class AbstractOutput implements InterfaceOutput {
         try {
             String filename = get_output_file();
             if( filename!=null && !filename.isEmpty() ) {
-                writer = new OutputStreamWriter(new FileOutputStream(filename));
+                if(compression_dt==null)
+                    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename)));
+                else {
+                    compressed_stream = new CompressedBlockStream(filename + ".otmz", compression_dt);
+                    writer = new BufferedWriter(new OutputStreamWriter(compressed_stream));
+                }
             }
-        } catch (FileNotFoundException exc) {
+        } catch (IOException exc) {
             throw new OTMException(exc);
         }
     }
@@ -94,6 +102,7 @@ public abstract class AbstractOutput implements InterfaceOutput {
         } catch (IOException e) {
             throw new OTMException(e);
         }
+        compressed_stream = null;
     }
 
     //////////////////////////////////////////////////////
@@ -106,6 +115,8 @@ public abstract class AbstractOutput implements InterfaceOutput {
             if(!path.exists())
                 errorLog.addError("Could not pth: " + path);
         }
+        if(compression_dt!=null && !(compression_dt>0f))
+            errorLog.addError("compression_dt must be positive");
     }
 
     public void initialize(Scenario scenario) throws OTMException {
@@ -119,6 +130,32 @@ public abstract class AbstractOutput implements InterfaceOutput {
         return output_folder + File.separator + prefix;
     }
 
+    // writes the main file in gzip blocks of block_dt seconds of simulated time, see CompressedBlockStream
+    public void set_compression(Float block_dt){
+        this.compression_dt = block_dt;
+    }
+
+    // data written to the main file after this call belongs to the given time, which decides its
+    // compressed block. Called on the thread that writes the file.
+    protected void mark_time(float timestamp) throws OTMException {
+        if(compressed_stream==null)
+            return;
+        try {
+            writer.flush();
+            compressed_stream.mark_time(timestamp);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // runs a write to the files on the output writer thread of the scenario, or here if there is none
+    protected void submit(AsyncOutputWriter.InterfaceTask task) throws OTMException {
+        if(scenario.output_writer==null)
+            task.run();
+        else
+            scenario.output_writer.submit(task);
+    }
+
     //////////////////////////////////////////////////////
     // final
     //////////////////////////////////////////////////////
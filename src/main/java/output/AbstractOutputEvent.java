@@ -45,11 +45,16 @@ public abstract class AbstractOutputEvent extends AbstractOutput implements Inte
 
     public final void write(AbstractEventWrapper event) throws OTMException {
         if(write_to_file){
-            try {
-                writer.write(event.timestamp+"\t"+event.asString()+"\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
+            // formatted here, since the wrapped objects may change later
+            String line = event.timestamp+"\t"+event.asString()+"\n";
+            submit(() -> {
+                mark_time(event.timestamp);
+                try {
+                    writer.write(line);
+                } catch (IOException e) {
+                    throw new OTMException(e);
+                }
+            });
         } else {
             events.add(event);
         }
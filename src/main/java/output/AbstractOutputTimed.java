@@ -9,14 +9,26 @@ import cmd.RunParameters;
 import core.Scenario;
 
 import java.io.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public abstract class AbstractOutputTimed extends AbstractOutput implements InterfacePlottable {
 
+    // text: values, times and columns in separate text files.
+    // binary32/binary64: a single file of float32/float64 columns, see BinaryOutputWriter.
+    public enum Format {text,binary32,binary64}
+
     // timed output
     public Float outDt;			// output frequency in seconds
     public Commodity commodity;
     public Writer time_writer;
     public static String delim = ",";
+    public Format format = Format.text;
+    public boolean store_float32 = false;   // values kept in memory as float32, see TimeSeries
+    protected BinaryOutputWriter binary_writer;
+
+    // rows handed back by the writer, for outputs with columns
+    private final Queue<double[]> free_rows = new ConcurrentLinkedQueue<>();
 
     //////////////////////////////////////////////////////
     // construction
@@ -45,13 +57,16 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
 
     @Override
     public void open() throws OTMException {
+        // the binary file is opened by initialize, once the columns are known
+        if(format!=Format.text)
+            return;
         super.open();
-        if(write_to_file){
+        if(write_to_file && has_time_file()){
             try {
                 String filename = get_output_file();
                 if(filename!=null) {
                     String subfilename = filename.substring(0,filename.length()-4);
-                    time_writer = new OutputStreamWriter(new FileOutputStream(subfilename+"_time.txt"));
+                    time_writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(subfilename+"_time.txt")));
                 }
             } catch (FileNotFoundException exc) {
                 throw new OTMException(exc);
@@ -63,6 +78,10 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
     @Override
     public void close() throws OTMException {
         super.close();
+        if(binary_writer!=null){
+            binary_writer.close();
+            binary_writer = null;
+        }
         if(time_writer==null)
             return;
         try {
@@ -74,7 +93,8 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
 
     @Override
     public void register(RunParameters props, Dispatcher dispatcher) {
-        dispatcher.register_event(new EventTimedWrite(dispatcher,props.start_time,this));
+        if(outDt!=null)
+            dispatcher.register_event(new EventTimedWrite(dispatcher,props.start_time,this));
     }
 
     //////////////////////////////////////////////////////
@@ -82,8 +102,11 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
     //////////////////////////////////////////////////////
 
     public void validate_post_init(OTMErrorLog errorLog) {
+        super.validate_post_init(errorLog);
         if(outDt==null || Float.isNaN(outDt) || outDt<=0f)
             errorLog.addError("outDt is not defined");
+        if(compression_dt!=null && format!=Format.text)
+            errorLog.addError("compression is only available for text outputs");
     }
 
     @Override
@@ -93,7 +116,8 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
     }
 
     public void write(float timestamp) throws OTMException {
-        if(write_to_file) {
+        mark_time(timestamp);
+        if(time_writer!=null) {
             try {
                 time_writer.write(timestamp + "\n");
             } catch (IOException e) {
@@ -102,6 +126,68 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
         }
     }
 
+    public void set_format(Format format) throws OTMException {
+        if(format!=Format.text && !has_columns())
+            throw new OTMException("Binary format is not available for " + getClass().getSimpleName() + ".");
+        this.format = format;
+    }
+
+    // outputs with one value per column and output time, which can be written in binary
+    protected boolean has_columns(){
+        return false;
+    }
+
+    // outputs that write their times in a separate _time.txt file
+    protected boolean has_time_file(){
+        return true;
+    }
+
+    // a buffer for one row of n values
+    protected double[] take_row(int n){
+        double[] row = free_rows.poll();
+        return row!=null && row.length==n ? row : new double[n];
+    }
+
+    // writes the row and returns its buffer to the pool, on the output writer thread if there is one
+    protected void submit_row(float timestamp,double[] row) throws OTMException {
+        submit(() -> {
+            write_row(timestamp,row);
+            free_rows.offer(row);
+        });
+    }
+
+    protected void write_row(float timestamp,double[] row) throws OTMException {
+        if(binary_writer!=null){
+            binary_writer.write_time(timestamp);
+            binary_writer.write_values(row);
+            return;
+        }
+        mark_time(timestamp);
+        try {
+            if(time_writer!=null)
+                time_writer.write(timestamp + "\n");
+            for(int i=0;i<row.length;i++){
+                if(i>0)
+                    writer.write(AbstractOutputTimed.delim);
+                writer.write(format_value(row[i]));
+            }
+            writer.write("\n");
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    protected String format_value(double value){
+        return String.format("%f",value);
+    }
+
+    // opens the binary file in place of the text files
+    protected void open_binary(long[] ids,int[] sub_ids) throws OTMException {
+        String filename = get_output_file();
+        if(filename!=null)
+            binary_writer = new BinaryOutputWriter(filename.substring(0,filename.length()-4) + ".bin", outDt, ids, sub_ids, format==Format.binary32);
+    }
+
     //////////////////////////////////////////////////////
     // final
     //////////////////////////////////////////////////////
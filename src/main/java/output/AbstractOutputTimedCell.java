@@ -11,7 +11,7 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import profiles.Profile1D;
 import profiles.Profile2D;
-import utils.OTMUtils;
+import profiles.TimeSeries;
 
 import java.io.*;
 import java.util.*;
@@ -22,6 +22,7 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
     public List<Long> link_ids;
     public ArrayList<FluidLaneGroup> ordered_lgs;
     public Map<Long, List<CellProfile>> lgprofiles;  // lgid -> list<profiles>
+    private int num_cells;
     abstract protected double[] get_value_for_lanegroup(FluidLaneGroup lg);
 
     //////////////////////////////////////////////////////
@@ -50,21 +51,13 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
 
     @Override
     public final void write(float timestamp) throws OTMException {
-        super.write(timestamp);
         if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(FluidLaneGroup lg : ordered_lgs){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    String str = OTMUtils.format_delim(get_value_for_lanegroup(lg),",");
-                    writer.write(str);  // TODO THIS WILL FAIL
-                }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
+            double[] row = take_row(num_cells);
+            int c = 0;
+            for(FluidLaneGroup lg : ordered_lgs)
+                for(double value : get_value_for_lanegroup(lg))
+                    row[c++] = value;
+            submit_row(timestamp,row);
         } else {
             for(FluidLaneGroup lg : ordered_lgs){
                 List<CellProfile> cellprofs = lgprofiles.get(lg.getId());
@@ -86,6 +79,16 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
             errorLog.addError("no lanegroups in output request");
     }
 
+    @Override
+    protected boolean has_columns(){
+        return true;
+    }
+
+    @Override
+    protected String format_value(double value){
+        return Double.toString(value);
+    }
+
     @Override
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
@@ -111,7 +114,21 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
             }
         }
 
-        if(write_to_file){
+        num_cells = ordered_lgs.stream().mapToInt(lg->lg.cells.size()).sum();
+
+        if(write_to_file && format!=Format.text){
+            // one column per cell: lane group id and cell index
+            long[] ids = new long[num_cells];
+            int[] cell_ids = new int[num_cells];
+            int c = 0;
+            for(FluidLaneGroup lg : ordered_lgs)
+                for(int i=0;i<lg.cells.size();i++,c++){
+                    ids[c] = lg.getId();
+                    cell_ids[c] = i;
+                }
+            open_binary(ids,cell_ids);
+        }
+        else if(write_to_file){
             try {
                 String filename = get_output_file();
                 if(filename!=null) {
@@ -165,6 +182,10 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
     // final
     //////////////////////////////////////////////////////
 
+    public final List<TimeSeries> get_timeseries_for_lg(FluidLaneGroup lg){
+        return lgprofiles.get(lg.getId()).stream().map(p->p.series).collect(Collectors.toList());
+    }
+
     public final ArrayList<FluidLaneGroup> get_ordered_lgs(){
         return ordered_lgs;
     }
@@ -192,12 +213,14 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
     //////////////////////////////////////////////////////
 
     public class CellProfile {
-        public Profile1D profile;
+        public TimeSeries series;
+        public Profile1D profile;   // view on series
         public void initialize(float outDt){
-            this.profile = new Profile1D(null, outDt);
+            this.series = new TimeSeries(0f, outDt, store_float32);
+            this.profile = series.as_profile();
         }
         public void add_value(double value){
-            profile.add_entry(value);
+            series.add(value);
         }
     }
 
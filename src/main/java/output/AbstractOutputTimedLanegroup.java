@@ -7,6 +7,7 @@ import error.OTMException;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import profiles.Profile1D;
+import profiles.TimeSeries;
 import core.Scenario;
 
 import java.io.*;
@@ -51,20 +52,11 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
 
     @Override
     public final void write(float timestamp) throws OTMException {
-        super.write(timestamp);
         if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(AbstractLaneGroup lg : ordered_lgs){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    writer.write(String.format("%f",get_value_for_lanegroup(lg)));
-                }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
+            double[] row = take_row(ordered_lgs.size());
+            for(int i=0;i<row.length;i++)
+                row[i] = get_value_for_lanegroup(ordered_lgs.get(i));
+            submit_row(timestamp,row);
         } else {
             for(AbstractLaneGroup lg : ordered_lgs){
                 LaneGroupProfile lgProfile = lgprofiles.get(lg.getId());
@@ -77,6 +69,11 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
     // AbstractOutput
     //////////////////////////////////////////////////////
 
+    @Override
+    protected boolean has_columns(){
+        return true;
+    }
+
     @Override
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
@@ -91,7 +88,9 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
             }
         }
 
-        if(write_to_file){
+        if(write_to_file && format!=Format.text)
+            open_binary(ordered_lgs.stream().mapToLong(AbstractLaneGroup::getId).toArray(),null);
+        else if(write_to_file){
             try {
                 String filename = get_output_file();
                 if(filename!=null) {
@@ -153,6 +152,10 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
         return profiles;
     }
 
+    public final TimeSeries get_timeseries_for_lgid(Long lg_id){
+        return lgprofiles.containsKey(lg_id) ? lgprofiles.get(lg_id).series : null;
+    }
+
     public final void plot_for_links(Set<Long> link_ids,String filename) throws OTMException {
 
         Set<AbstractLaneGroup> lgs = new HashSet<>();
@@ -176,15 +179,17 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
 
     public class LaneGroupProfile {
         public AbstractLaneGroup lg;
-        public Profile1D profile;
+        public TimeSeries series;
+        public Profile1D profile;   // view on series
         public LaneGroupProfile(AbstractLaneGroup lg){
             this.lg = lg;
         }
         public void initialize(float outDt){
-            this.profile = new Profile1D(null, outDt);
+            this.series = new TimeSeries(0f, outDt, store_float32);
+            this.profile = series.as_profile();
         }
         public void add_value(double value){
-            profile.add_entry(value);
+            series.add(value);
         }
     }
 }
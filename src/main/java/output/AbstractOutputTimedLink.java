@@ -7,6 +7,7 @@ import core.Link;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import profiles.Profile1D;
+import profiles.TimeSeries;
 import core.Scenario;
 
 import java.io.*;
@@ -83,20 +84,11 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
 
     @Override
     public final void write(float timestamp) throws OTMException {
-        super.write(timestamp);
         if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(Long link_id : ordered_ids){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    writer.write(String.format("%f",get_value_for_link(link_id)));
-                }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
+            double[] row = take_row(ordered_ids.length);
+            for(int i=0;i<ordered_ids.length;i++)
+                row[i] = get_value_for_link(ordered_ids[i]);
+            submit_row(timestamp,row);
         } else {
             for(Long link_id : ordered_ids) {
                 LinkProfile linkProfile = linkprofiles.get(link_id);
@@ -126,11 +118,18 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
             errorLog.addError("no links in output request");
     }
 
+    @Override
+    protected boolean has_columns(){
+        return true;
+    }
+
     @Override
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
         // write links
-        if(write_to_file) {
+        if(write_to_file && format!=Format.text)
+            open_binary(ordered_ids,null);
+        else if(write_to_file) {
             try {
                 String filename = get_output_file();
                 if (filename != null) {
@@ -179,6 +178,10 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
         return linkprofiles.get(link_id).profile;
     }
 
+    public final TimeSeries get_timeseries_for_linkid(Long link_id){
+        return linkprofiles.get(link_id).series;
+    }
+
     public final void plot_for_links(Set<Long> link_ids,String filename) throws OTMException {
 
         if(link_ids==null)
@@ -202,15 +205,17 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
 
     public class LinkProfile {
         public Link link;
-        public Profile1D profile;
+        public TimeSeries series;
+        public Profile1D profile;   // view on series
         public LinkProfile(Link link){
             this.link = link;
         }
         public void initialize(float outDt){
-            this.profile = new Profile1D(null, outDt);
+            this.series = new TimeSeries(0f, outDt, store_float32);
+            this.profile = series.as_profile();
         }
         public void add_value(double value){
-            profile.add_entry(value);
+            series.add(value);
         }
     }
 
@@ -0,0 +1,109 @@
+package output;
+
+import error.OTMException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Writes output files on a dedicated thread. The simulation thread copies the values of an
+// output into a pooled buffer (or formats an event) and puts a task on a queue. The writer
+// thread runs the tasks in order, so every file receives its rows in the order they were
+// produced. Only the writer thread touches the files between Scenario.initialize and
+// Scenario.terminate, which flushes the queue before the files are closed.
+// Back-pressure: with "block" the queue holds at most capacity tasks, and the simulation waits
+// for the writer when it is full. With "grow" the queue is unbounded and the simulation never
+// waits, at the cost of memory when the disk is slower than the simulation.
+public class AsyncOutputWriter {
+
+    public enum Backpressure {block,grow}
+
+    public interface InterfaceTask {
+        void run() throws OTMException;
+    }
+
+    public final int capacity;
+    public final Backpressure backpressure;
+    private final BlockingQueue<InterfaceTask> queue;
+    private final Thread thread;
+    private volatile Throwable failure;     // first failure of the writer thread
+    private boolean stopped;
+
+    public AsyncOutputWriter(int capacity,Backpressure backpressure) throws OTMException {
+        if(capacity<1)
+            throw new OTMException("Output queue capacity must be positive.");
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+        this.queue = backpressure==Backpressure.block ? new ArrayBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+        this.thread = new Thread(this::loop,"otm-output-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void submit(InterfaceTask task) throws OTMException {
+        check();
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        }
+    }
+
+    // returns once all tasks submitted so far have run
+    public void flush() throws OTMException {
+        if(stopped)
+            return;
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            queue.put(done::countDown);
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        }
+        check();
+    }
+
+    // flushes and stops the writer thread
+    public void close() throws OTMException {
+        if(stopped)
+            return;
+        try {
+            flush();
+        } finally {
+            stopped = true;
+            thread.interrupt();
+        }
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private void check() throws OTMException {
+        if(stopped)
+            throw new OTMException("Output writer is closed.");
+        if(failure!=null)
+            throw failure instanceof OTMException ? (OTMException) failure : new OTMException(failure);
+    }
+
+    private void loop(){
+        while(true){
+            InterfaceTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                if(failure==null)
+                    failure = t;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package output;
+
+import error.OTMException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Reads a file written by BinaryOutputWriter, see there for the layout.
+public class BinaryOutputReader {
+
+    public final float dt;
+    public final long[] ids;
+    public final int[] sub_ids;
+    public final int value_bytes;
+    public final float[] times;
+    public final double[][] values;     // [row][column]
+
+    public BinaryOutputReader(String filename) throws OTMException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[4];
+            buffer.get(magic);
+            if(!Arrays.equals(magic,BinaryOutputWriter.magic))
+                throw new OTMException("Not a binary output file: " + filename);
+            int header_size = buffer.getInt();
+            value_bytes = buffer.getInt();
+            int n = buffer.getInt();
+            dt = buffer.getFloat();
+            ids = new long[n];
+            for(int i=0;i<n;i++)
+                ids[i] = buffer.getLong();
+            sub_ids = new int[n];
+            for(int i=0;i<n;i++)
+                sub_ids[i] = buffer.getInt();
+
+            buffer.position(header_size);
+            int num_rows = buffer.remaining() / (4 + n*value_bytes);
+            times = new float[num_rows];
+            values = new double[num_rows][n];
+            for(int k=0;k<num_rows;k++){
+                times[k] = buffer.getFloat();
+                for(int i=0;i<n;i++)
+                    values[k][i] = value_bytes==4 ? buffer.getFloat() : buffer.getDouble();
+            }
+
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public int get_column(long id, int sub_id){
+        for(int i=0;i<ids.length;i++)
+            if(ids[i]==id && sub_ids[i]==sub_id)
+                return i;
+        return -1;
+    }
+
+    public double[] get_values_for_column(int column){
+        double[] X = new double[values.length];
+        for(int k=0;k<values.length;k++)
+            X[k] = values[k][column];
+        return X;
+    }
+
+}
@@ -0,0 +1,108 @@
+package output;
+
+import error.OTMException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Writes a timed output as little-endian binary columns, one row per output time, through a
+// FileChannel and a large direct buffer. The file holds a header followed by the rows:
+//
+//   bytes    type        content
+//   0        char[4]     "OTMB"
+//   4        int32       header size in bytes, which is the offset of the first row
+//   8        int32       bytes per value: 4 (float32) or 8 (float64)
+//   12       int32       number of columns n
+//   16       float32     output dt in seconds
+//   20       int64[n]    column ids: link or lane group ids
+//   20+8n    int32[n]    column sub-ids: cell index for cell outputs, 0 otherwise
+//   20+12n   rows        float32 time, then n values
+//
+// In numpy, with h = np.fromfile(f,'<i4',4) and n = h[3]:
+//   ids  = np.fromfile(f,'<i8',n,offset=20)
+//   rows = np.fromfile(f,[('time','<f4'),('values','<f%d'%h[2],(n,))],offset=h[1])
+// See BinaryOutputReader for Java.
+public class BinaryOutputWriter {
+
+    public static final byte[] magic = {'O','T','M','B'};
+    private static final int buffer_size = 1<<20;
+
+    public final int num_columns;
+    public final int value_bytes;
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+
+    public BinaryOutputWriter(String filename, float dt, long[] ids, int[] sub_ids, boolean float32) throws OTMException {
+        this.num_columns = ids.length;
+        this.value_bytes = float32 ? 4 : 8;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(buffer_size,header_size(num_columns))).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+
+        buffer.put(magic);
+        buffer.putInt(header_size(num_columns));
+        buffer.putInt(value_bytes);
+        buffer.putInt(num_columns);
+        buffer.putFloat(dt);
+        for(long id : ids)
+            buffer.putLong(id);
+        for(int i=0;i<num_columns;i++)
+            buffer.putInt(sub_ids==null ? 0 : sub_ids[i]);
+    }
+
+    public static int header_size(int num_columns){
+        return 20 + 12*num_columns;
+    }
+
+    // starts a row
+    public void write_time(float time) throws OTMException {
+        if(buffer.remaining()<4)
+            flush();
+        buffer.putFloat(time);
+    }
+
+    public void write_value(double value) throws OTMException {
+        if(buffer.remaining()<8)
+            flush();
+        if(value_bytes==4)
+            buffer.putFloat((float) value);
+        else
+            buffer.putDouble(value);
+    }
+
+    public void write_values(double[] values) throws OTMException {
+        for(double value : values)
+            write_value(value);
+    }
+
+    public void close() throws OTMException {
+        if(channel==null)
+            return;
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+        channel = null;
+    }
+
+    private void flush() throws OTMException {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+        buffer.clear();
+    }
+
+}
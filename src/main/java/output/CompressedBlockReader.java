@@ -0,0 +1,132 @@
+package output;
+
+import error.OTMException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+// Reads a file written by CompressedBlockStream, see there for the layout. Only the index is
+// read on construction; blocks are read and decompressed on request.
+public class CompressedBlockReader implements AutoCloseable {
+
+    public final String filename;
+    public final float block_dt;
+    public final float[] first_times;       // per block
+    public final float[] last_times;
+    public final long[] offsets;
+    public final int[] compressed_bytes;
+    public final int[] raw_bytes;
+    private final FileChannel channel;
+
+    public CompressedBlockReader(String filename) throws OTMException {
+        this.filename = filename;
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            long size = channel.size();
+            if(size < 12 + CompressedBlockStream.trailer_bytes)
+                throw new OTMException("Not a compressed output file: " + filename);
+
+            ByteBuffer header = read(0,12);
+            check_magic(header);
+            if(header.getInt()!=CompressedBlockStream.version)
+                throw new OTMException("Unknown version of compressed output file: " + filename);
+            block_dt = header.getFloat();
+
+            ByteBuffer trailer = read(size - CompressedBlockStream.trailer_bytes, CompressedBlockStream.trailer_bytes);
+            int num_blocks = trailer.getInt();
+            long index_offset = trailer.getLong();
+            check_magic(trailer);
+
+            ByteBuffer index = read(index_offset, num_blocks * CompressedBlockStream.index_entry_bytes);
+            first_times = new float[num_blocks];
+            last_times = new float[num_blocks];
+            offsets = new long[num_blocks];
+            compressed_bytes = new int[num_blocks];
+            raw_bytes = new int[num_blocks];
+            for(int k=0;k<num_blocks;k++){
+                first_times[k] = index.getFloat();
+                last_times[k] = index.getFloat();
+                offsets[k] = index.getLong();
+                compressed_bytes[k] = index.getInt();
+                raw_bytes[k] = index.getInt();
+            }
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public int num_blocks(){
+        return offsets.length;
+    }
+
+    // uncompressed content of block k
+    public byte[] read_block(int k) throws OTMException {
+        try {
+            ByteBuffer compressed = read(offsets[k], compressed_bytes[k]);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw_bytes[k]);
+            try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.array()))) {
+                byte[] buffer = new byte[1<<16];
+                int n;
+                while((n=in.read(buffer))>0)
+                    out.write(buffer,0,n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // text of all blocks with data between start_time and end_time, inclusive. The first and last
+    // blocks may hold times outside of the window.
+    public String read_window(float start_time,float end_time) throws OTMException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(int k=0;k<num_blocks();k++)
+            if(last_times[k]>=start_time && first_times[k]<=end_time)
+                out.writeBytes(read_block(k));
+        return new String(out.toByteArray(), Charset.defaultCharset());
+    }
+
+    public String read_all() throws OTMException {
+        return read_window(Float.NEGATIVE_INFINITY,Float.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public void close() throws OTMException {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private ByteBuffer read(long position,int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining())
+            if(channel.read(buffer,position+buffer.position())<0)
+                throw new IOException("Unexpected end of " + filename);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void check_magic(ByteBuffer buffer) throws OTMException {
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        if(!Arrays.equals(magic,CompressedBlockStream.magic))
+            throw new OTMException("Not a compressed output file: " + filename);
+    }
+
+}
@@ -0,0 +1,127 @@
+package output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Output file made of gzip blocks, one per block_dt seconds of simulated time, with an index
+// in a footer so that a time window can be read by decompressing only its blocks. The writer
+// calls mark_time before the data of each time; a new block starts when the time passes the
+// end of the current one. All numbers are little-endian:
+//
+//   "OTMZ", int32 version, float32 block_dt
+//   blocks: each one a complete gzip member
+//   index: per block, float32 first time, float32 last time, int64 offset, int32 compressed
+//          bytes, int32 uncompressed bytes
+//   int32 number of blocks, int64 offset of the index, "OTMZ"
+//
+// See CompressedBlockReader.
+public class CompressedBlockStream extends OutputStream {
+
+    public static final byte[] magic = {'O','T','M','Z'};
+    public static final int version = 1;
+    public static final int index_entry_bytes = 24;
+    public static final int trailer_bytes = 16;
+
+    public final float block_dt;
+    private FileChannel channel;
+    private final ByteArrayOutputStream raw = new ByteArrayOutputStream(1<<16);
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(1<<14);
+    private final List<Block> blocks = new ArrayList<>();
+    private long offset;
+
+    // current block
+    private boolean in_block;
+    private float block_start;
+    private float first_time;
+    private float last_time;
+
+    public CompressedBlockStream(String filename,float block_dt) throws IOException {
+        this.block_dt = block_dt;
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(magic).putInt(version).putFloat(block_dt).flip();
+        write_fully(header);
+    }
+
+    // data written after this call belongs to the given time
+    public void mark_time(float time) throws IOException {
+        if(in_block && time >= block_start + block_dt)
+            finish_block();
+        if(!in_block){
+            block_start = blocks.isEmpty() ? time : block_start + block_dt * (float) Math.floor((time-block_start)/block_dt);
+            first_time = time;
+            in_block = true;
+        }
+        last_time = time;
+    }
+
+    @Override
+    public void write(int b) {
+        raw.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        raw.write(b,off,len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(channel==null)
+            return;
+        finish_block();
+        ByteBuffer index = ByteBuffer.allocate(blocks.size()*index_entry_bytes + trailer_bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for(Block block : blocks)
+            index.putFloat(block.first_time).putFloat(block.last_time).putLong(block.offset).putInt(block.compressed_bytes).putInt(block.raw_bytes);
+        index.putInt(blocks.size()).putLong(offset).put(magic).flip();
+        write_fully(index);
+        channel.close();
+        channel = null;
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private void finish_block() throws IOException {
+        if(!in_block && raw.size()==0)
+            return;
+        compressed.reset();
+        try(GZIPOutputStream gz = new GZIPOutputStream(compressed,1<<16)) {
+            raw.writeTo(gz);
+        }
+        Block block = new Block();
+        block.first_time = first_time;
+        block.last_time = last_time;
+        block.offset = offset;
+        block.compressed_bytes = compressed.size();
+        block.raw_bytes = raw.size();
+        blocks.add(block);
+        write_fully(ByteBuffer.wrap(compressed.toByteArray()));
+        raw.reset();
+        in_block = false;
+    }
+
+    private void write_fully(ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining())
+            offset += channel.write(buffer);
+    }
+
+    private static class Block {
+        float first_time;
+        float last_time;
+        long offset;
+        int compressed_bytes;
+        int raw_bytes;
+    }
+
+}
@@ -33,7 +33,8 @@ public class OutputCellSumVehicles extends AbstractOutputTimedCell {
         super.register(props, dispatcher); // registers write to files
 
         // regsister read vehicles event
-        dispatcher.register_event(new EventUpdateTotalCellVehicles(dispatcher,props.start_time,this));
+        if(simDt!=null)
+            dispatcher.register_event(new EventUpdateTotalCellVehicles(dispatcher,props.start_time,this));
     }
 
     @Override
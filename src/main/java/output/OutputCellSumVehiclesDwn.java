@@ -37,7 +37,8 @@ public class OutputCellSumVehiclesDwn extends AbstractOutputTimedCell {
         super.register(props, dispatcher); // registers write to files
 
         // regsister read vehicles event
-        dispatcher.register_event(new EventUpdateTotalCellVehiclesDwn(dispatcher,props.start_time,this));
+        if(simDt!=null)
+            dispatcher.register_event(new EventUpdateTotalCellVehiclesDwn(dispatcher,props.start_time,this));
     }
 
     @Override
@@ -55,7 +55,8 @@ public class OutputLaneGroupSumVehicles extends AbstractOutputTimedLanegroup {
         super.register(props, dispatcher); // registers write to files
 
         // regsister read vehicles event
-        dispatcher.register_event(new EventUpdateTotalLanegroupVehicles(dispatcher,props.start_time,this));
+        if(simDt!=null)
+            dispatcher.register_event(new EventUpdateTotalLanegroupVehicles(dispatcher,props.start_time,this));
     }
 
     @Override
@@ -53,7 +53,8 @@ public class OutputLaneGroupSumVehiclesDwn  extends AbstractOutputTimedLanegroup
         super.register(props, dispatcher); // registers write to files
 
         // regsister read vehicles event
-        dispatcher.register_event(new EventUpdateTotalLanegroupVehiclesDwn(dispatcher,props.start_time,this));
+        if(simDt!=null)
+            dispatcher.register_event(new EventUpdateTotalLanegroupVehiclesDwn(dispatcher,props.start_time,this));
     }
 
     @Override
@@ -0,0 +1,316 @@
+package output;
+
+import commodity.Subnetwork;
+import core.AbstractLaneGroup;
+import core.FlowAccumulatorState;
+import core.Link;
+import core.Scenario;
+import error.OTMErrorLog;
+import error.OTMException;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import utils.OTMUtils;
+
+import java.io.IOException;
+import java.util.*;
+
+// Aggregates of the links of a subnetwork over periods, computed during the run in place of
+// per-dt values. Every outDt seconds each link is sampled for its vehicles and for the vehicles
+// that left it since the last sample. Per period, for each link and for the subnetwork total:
+//   vht    vehicle hours, sum of vehicles*outDt
+//   vkt    vehicle kilometers, sum of exiting vehicles*length
+//   speed  vkt/vht [kph]
+//   delay  vht - vkt/free flow speed [veh.hr], NaN for links without road parameters. These are
+//          left out of the total delay.
+//   veh    mean, min, max and quantiles of the sampled vehicles
+//   flw    mean, min, max and quantiles of the sampled exit flows [veh/hr]
+// Only the aggregates are kept or written, one line per link and period plus a total line with
+// link "all". period should be a multiple of outDt; null aggregates over the whole run.
+public class OutputLinkAggregates extends AbstractOutputTimed {
+
+    public static double relative_accuracy = 0.01;      // of the quantiles
+    public static double [] quantiles = {0.5,0.9,0.95};
+
+    public final Float period;
+    public long [] ordered_ids;
+    public List<Period> periods;    // completed periods, when not writing to file
+
+    private Link [] links;
+    private FlowAccumulatorState [][] flw_accs;     // [link][lane group]
+    private double [] last_count;
+    private Map<Long,Aggregate> current;
+    private Aggregate current_total;
+    private float period_start;
+    private float last_time;        // NaN before the first sample
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public OutputLinkAggregates(Scenario scenario, String prefix, String output_folder, Long commodity_id, Long subnetwork_id, Float outDt, Float period) throws OTMException {
+        super(scenario,prefix,output_folder,commodity_id,outDt);
+        this.type = Type.link_aggregate;
+        this.period = period;
+
+        Subnetwork subnetwork = null;
+        if(subnetwork_id!=null){
+            subnetwork = scenario.subnetworks.get(subnetwork_id);
+            if(subnetwork==null)
+                throw new OTMException("Bad subnetwork id in output request.");
+        }
+
+        // subnetwork==null, all links
+        Collection<Long> link_ids = subnetwork==null ? scenario.network.links.keySet() : subnetwork.get_link_ids();
+        ordered_ids = link_ids.stream().mapToLong(x->x).sorted().toArray();
+        links = new Link[ordered_ids.length];
+        for(int i=0;i<ordered_ids.length;i++)
+            links[i] = scenario.network.links.get(ordered_ids[i]);
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public String get_output_file() {
+        return write_to_file ? super.get_output_file() + "_link_aggregates.txt" : null;
+    }
+
+    // start and end times are in the lines
+    @Override
+    protected boolean has_time_file(){
+        return false;
+    }
+
+    // the last period, which may be shorter
+    @Override
+    public void close() throws OTMException {
+        if(!Float.isNaN(last_time) && last_time>period_start)
+            end_period(last_time);
+        last_time = Float.NaN;
+        super.close();
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void validate_post_init(OTMErrorLog errorLog) {
+        super.validate_post_init(errorLog);
+        if(links.length==0)
+            errorLog.addError("no links in output request");
+        if(period!=null && outDt!=null && !(period>=outDt))
+            errorLog.addError("aggregation period is shorter than outDt");
+    }
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        last_time = Float.NaN;
+        super.initialize(scenario);
+
+        Set<Long> comm_ids = commodity==null ? null : OTMUtils.hashset(commodity.getId());
+        flw_accs = new FlowAccumulatorState[links.length][];
+        for(int i=0;i<links.length;i++){
+            Collection<AbstractLaneGroup> lgs = links[i].get_lgs();
+            flw_accs[i] = new FlowAccumulatorState[lgs.size()];
+            int j = 0;
+            for(AbstractLaneGroup lg : lgs)
+                flw_accs[i][j++] = lg.request_flow_accumulator(comm_ids);
+        }
+        last_count = new double[links.length];
+        periods = new ArrayList<>();
+        start_period();
+
+        if(write_to_file && writer!=null) {
+            try {
+                writer.write(header());
+            } catch (IOException e) {
+                throw new OTMException(e);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutputTimed
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void write(float timestamp) throws OTMException {
+
+        // first sample starts the counts
+        if(Float.isNaN(last_time)){
+            for(int i=0;i<links.length;i++)
+                last_count[i] = get_exit_count(i);
+            period_start = timestamp;
+            last_time = timestamp;
+            return;
+        }
+
+        // the interval (last_time,timestamp] belongs to the period of last_time
+        if(period!=null && last_time>=period_start+period)
+            end_period(last_time);
+
+        float dt = timestamp - last_time;
+        double dt_hr = dt/3600d;
+        Long comm_id = commodity==null ? null : commodity.getId();
+        double total_veh = 0d;
+        double total_exits = 0d;
+        double total_vkt = 0d;
+        double total_delay = 0d;
+        for(int i=0;i<links.length;i++){
+            Link link = links[i];
+            double veh = link.get_veh_for_commodity(comm_id);
+            double count = get_exit_count(i);
+            double exits = count - last_count[i];
+            last_count[i] = count;
+            double vkt = exits * link.get_full_length() / 1000d;
+            double delay = link.road_param_full==null ? Double.NaN : veh*dt_hr - vkt/link.road_param_full.getSpeed();
+            current.get(link.getId()).add(veh,exits,vkt,delay,dt);
+            total_veh += veh;
+            total_exits += exits;
+            total_vkt += vkt;
+            if(!Double.isNaN(delay))
+                total_delay += delay;
+        }
+        current_total.add(total_veh,total_exits,total_vkt,total_delay,dt);
+        last_time = timestamp;
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfacePlottable
+    //////////////////////////////////////////////////////
+
+    @Override
+    public String get_yaxis_label() {
+        return "VHT [veh.hr]";
+    }
+
+    // total vht per period
+    @Override
+    public void plot(String filename) throws OTMException {
+        XYSeries series = new XYSeries("vht");
+        for(Period p : periods)
+            series.add(p.start_time,p.total.vht);
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        dataset.addSeries(series);
+        make_time_chart(dataset,type.name(),get_yaxis_label(),filename);
+    }
+
+    //////////////////////////////////////////////////////
+    // final
+    //////////////////////////////////////////////////////
+
+    public final List<Period> get_periods(){
+        return periods;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private double get_exit_count(int i){
+        double count = 0d;
+        for(FlowAccumulatorState fa : flw_accs[i])
+            count += commodity==null ? fa.get_total_count() : fa.get_count_for_commodity(commodity.getId());
+        return count;
+    }
+
+    private void start_period(){
+        current = new HashMap<>();
+        for(long link_id : ordered_ids)
+            current.put(link_id,new Aggregate());
+        current_total = new Aggregate();
+    }
+
+    private void end_period(float end_time) throws OTMException {
+        Period p = new Period(period_start,end_time,current,current_total);
+        start_period();
+        period_start = end_time;
+        if(write_to_file){
+            // formatted here, the writer thread only writes
+            StringBuilder str = new StringBuilder();
+            for(long link_id : ordered_ids)
+                p.links.get(link_id).append_line(str,p,String.format("%d",link_id));
+            p.total.append_line(str,p,"all");
+            String text = str.toString();
+            submit(() -> {
+                mark_time(p.start_time);
+                try {
+                    writer.write(text);
+                } catch (IOException e) {
+                    throw new OTMException(e);
+                }
+            });
+        } else
+            periods.add(p);
+    }
+
+    private static String header(){
+        List<String> cols = new ArrayList<>(Arrays.asList("start","end","link","vht","vkt","speed","delay"));
+        for(String x : new String[]{"veh","flw"}){
+            cols.add(x + "_mean");
+            cols.add(x + "_min");
+            cols.add(x + "_max");
+            for(double q : quantiles)
+                cols.add(String.format("%s_p%s",x,format_quantile(q)));
+        }
+        return String.join(delim,cols) + "\n";
+    }
+
+    private static String format_quantile(double q){
+        double pct = 100d*q;
+        return pct==Math.rint(pct) ? String.format("%d",(long) pct) : String.format("%s",pct).replace('.','_');
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    public static class Period {
+        public final float start_time;
+        public final float end_time;
+        public final Map<Long,Aggregate> links;
+        public final Aggregate total;
+        public Period(float start_time,float end_time,Map<Long,Aggregate> links,Aggregate total){
+            this.start_time = start_time;
+            this.end_time = end_time;
+            this.links = links;
+            this.total = total;
+        }
+    }
+
+    public static class Aggregate {
+        public double vht;      // [veh.hr]
+        public double vkt;      // [veh.km]
+        public double delay;    // [veh.hr]
+        public final RunningStats veh = new RunningStats(relative_accuracy);
+        public final RunningStats flw = new RunningStats(relative_accuracy);    // [veh/hr]
+
+        public void add(double veh,double exits,double vkt,double delay,float dt){
+            this.vht += veh*dt/3600d;
+            this.vkt += vkt;
+            this.delay += delay;
+            this.veh.add(veh);
+            this.flw.add(exits*3600d/dt);
+        }
+
+        // [kph]
+        public double speed(){
+            return vht>0d ? vkt/vht : Double.NaN;
+        }
+
+        private void append_line(StringBuilder str,Period p,String link){
+            str.append(p.start_time).append(delim).append(p.end_time).append(delim).append(link);
+            for(double x : new double[]{vht,vkt,speed(),delay})
+                str.append(delim).append(x);
+            for(RunningStats s : new RunningStats[]{veh,flw}){
+                str.append(delim).append(s.mean()).append(delim).append(s.min).append(delim).append(s.max);
+                for(double q : quantiles)
+                    str.append(delim).append(s.quantile(q));
+            }
+            str.append("\n");
+        }
+    }
+
+}
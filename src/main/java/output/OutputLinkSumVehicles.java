@@ -55,7 +55,8 @@ public class OutputLinkSumVehicles  extends AbstractOutputTimedLink {
         super.register(props, dispatcher); // registers write to files
 
         // regsister read vehicles event
-        dispatcher.register_event(new EventUpdateTotalLinkVehicles(dispatcher,props.start_time,this));
+        if(simDt!=null)
+            dispatcher.register_event(new EventUpdateTotalLinkVehicles(dispatcher,props.start_time,this));
     }
 
     @Override
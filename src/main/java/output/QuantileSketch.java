@@ -0,0 +1,77 @@
+package output;
+
+import java.util.Arrays;
+
+// Streaming quantiles of non-negative values with bounded relative error, in the manner of
+// DDSketch: values are counted in logarithmic buckets of ratio gamma = (1+a)/(1-a), so every
+// quantile is returned within a fraction a of a value of the stream, in memory that grows with
+// log(max/min) and not with the number of values. Values below min_value count as zero.
+public class QuantileSketch {
+
+    public static final double min_value = 1e-6;
+
+    public final double relative_accuracy;
+    private final double gamma;
+    private final double log_gamma;
+
+    private long[] counts = new long[0];    // counts[k] for bucket key offset+k
+    private int offset;
+    private long zero_count;
+    private long count;
+
+    public QuantileSketch(double relative_accuracy){
+        this.relative_accuracy = relative_accuracy;
+        this.gamma = (1d+relative_accuracy)/(1d-relative_accuracy);
+        this.log_gamma = Math.log(gamma);
+    }
+
+    public void add(double x){
+        if(Double.isNaN(x))
+            return;
+        count++;
+        if(x<min_value){
+            zero_count++;
+            return;
+        }
+        int key = (int) Math.ceil(Math.log(x)/log_gamma);
+        if(counts.length==0){
+            counts = new long[8];
+            offset = key;
+        } else if(key<offset){
+            int shift = offset-key;
+            long[] x_counts = new long[counts.length+shift];
+            System.arraycopy(counts,0,x_counts,shift,counts.length);
+            counts = x_counts;
+            offset = key;
+        } else if(key-offset>=counts.length)
+            counts = Arrays.copyOf(counts,Math.max(key-offset+1,2*counts.length));
+        counts[key-offset]++;
+    }
+
+    // value at quantile q in [0,1], NaN if empty
+    public double quantile(double q){
+        if(count==0)
+            return Double.NaN;
+        long rank = (long) Math.floor(q*(count-1));
+        if(rank<zero_count)
+            return 0d;
+        long seen = zero_count;
+        for(int k=0;k<counts.length;k++){
+            seen += counts[k];
+            if(seen>rank)
+                return 2d*Math.pow(gamma,offset+k)/(gamma+1d);
+        }
+        return 2d*Math.pow(gamma,offset+counts.length-1)/(gamma+1d);
+    }
+
+    public long get_count(){
+        return count;
+    }
+
+    public void clear(){
+        Arrays.fill(counts,0L);
+        zero_count = 0;
+        count = 0;
+    }
+
+}
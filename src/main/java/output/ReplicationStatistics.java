@@ -0,0 +1,89 @@
+package output;
+
+import core.OTM;
+import core.Replications;
+import error.OTMException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Mean, variance and 95% confidence interval across replications of an in-memory timed link
+// output, for every link and output time. Each replication is folded in with Welford's update
+// and then dropped, so memory does not grow with the number of replications. Use as the
+// collector of Replications, with the output requested in the setup.
+public class ReplicationStatistics implements Replications.InterfaceCollector {
+
+    // two-sided 95% quantiles of Student's t for 1 to 30 degrees of freedom
+    private static final double[] t95 = {
+            12.706,4.303,3.182,2.776,2.571,2.447,2.365,2.306,2.262,2.228,
+            2.201,2.179,2.160,2.145,2.131,2.120,2.110,2.101,2.093,2.086,
+            2.080,2.074,2.069,2.064,2.060,2.056,2.052,2.048,2.045,2.042};
+
+    public final Class<? extends AbstractOutputTimedLink> output_class;
+    private int count;
+    private final Map<Long,double[]> mean = new HashMap<>();     // link id -> mean per output time
+    private final Map<Long,double[]> m2 = new HashMap<>();       // link id -> sum of squared deviations
+
+    public ReplicationStatistics(Class<? extends AbstractOutputTimedLink> output_class){
+        this.output_class = output_class;
+    }
+
+    //////////////////////////////////////////////////////
+    // Replications.InterfaceCollector
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void collect(int replication, OTM otm) throws OTMException {
+        AbstractOutputTimedLink output = null;
+        for(AbstractOutput x : otm.output.get_data())
+            if(output_class.isInstance(x))
+                output = (AbstractOutputTimedLink) x;
+        if(output==null)
+            throw new OTMException("Replication " + replication + " has no in-memory " + output_class.getSimpleName() + ".");
+
+        count++;
+        for(long link_id : output.get_link_ids()){
+            double[] x = output.get_timeseries_for_linkid(link_id).to_array();
+            double[] mu = mean.computeIfAbsent(link_id, id->new double[x.length]);
+            double[] s = m2.computeIfAbsent(link_id, id->new double[x.length]);
+            if(mu.length!=x.length)
+                throw new OTMException("Replication " + replication + " has a different number of output times.");
+            for(int k=0;k<x.length;k++){
+                double delta = x[k] - mu[k];
+                mu[k] += delta / count;
+                s[k] += delta * (x[k] - mu[k]);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // get
+    //////////////////////////////////////////////////////
+
+    public int get_num_replications(){
+        return count;
+    }
+
+    public double[] get_mean(long link_id){
+        return mean.get(link_id).clone();
+    }
+
+    // sample variance, NaN with fewer than two replications
+    public double[] get_variance(long link_id){
+        double[] s = m2.get(link_id);
+        double[] v = new double[s.length];
+        for(int k=0;k<s.length;k++)
+            v[k] = count<2 ? Double.NaN : s[k]/(count-1);
+        return v;
+    }
+
+    // half width of the 95% confidence interval of the mean
+    public double[] get_confidence_half_width(long link_id){
+        double[] v = get_variance(link_id);
+        double t = count<2 ? Double.NaN : count-1<=t95.length ? t95[count-2] : 1.96;
+        for(int k=0;k<v.length;k++)
+            v[k] = t * Math.sqrt(v[k]/count);
+        return v;
+    }
+
+}
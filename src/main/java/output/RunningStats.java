@@ -0,0 +1,42 @@
+package output;
+
+// Count, sum, mean, min, max and quantiles of a stream of values, in constant memory.
+public class RunningStats {
+
+    public long count;
+    public double sum;
+    public double min = Double.POSITIVE_INFINITY;
+    public double max = Double.NEGATIVE_INFINITY;
+    public final QuantileSketch sketch;
+
+    public RunningStats(double relative_accuracy){
+        this.sketch = new QuantileSketch(relative_accuracy);
+    }
+
+    public void add(double x){
+        if(Double.isNaN(x))
+            return;
+        count++;
+        sum += x;
+        min = Math.min(min,x);
+        max = Math.max(max,x);
+        sketch.add(x);
+    }
+
+    public double mean(){
+        return count==0 ? Double.NaN : sum/count;
+    }
+
+    public double quantile(double q){
+        return sketch.quantile(q);
+    }
+
+    public void clear(){
+        count = 0;
+        sum = 0d;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sketch.clear();
+    }
+
+}
@@ -0,0 +1,65 @@
+package profiles;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Piecewise constant profile in primitive arrays, for lookups during a run. Step i holds from
+// start_time+i*dt until the next step, and the last step holds until the end of the run. There
+// is one column per key of a Profile2D (output link ids for splits), or a single column without
+// keys for a Profile1D. Built with Profile1D.compile() and Profile2D.compile().
+public class CompiledProfile {
+
+    public final float start_time;
+    public final float dt;                  // 0 for a constant profile
+    public final int num_steps;
+    public final long [] keys;              // column keys, null for a Profile1D
+    public final double [][] values;        // [column][step]
+
+    public CompiledProfile(float start_time,Float dt,long [] keys,double [][] values){
+        this.start_time = start_time;
+        this.dt = dt==null ? 0f : dt;
+        this.keys = keys;
+        this.values = values;
+        this.num_steps = values.length==0 ? 0 : values[0].length;
+    }
+
+    ////////////////////////////////
+    // get
+    ////////////////////////////////
+
+    // step in effect at a time, -1 before start_time
+    public int get_index_for_time(float time){
+        if(time<start_time || num_steps==0)
+            return -1;
+        if(dt==0f)
+            return 0;
+        return Math.min(num_steps-1,(int)((time-start_time)/dt));
+    }
+
+    // step that follows step i, -1 if the profile does not change after i
+    public int get_next_index(int i){
+        if(i>=0 && dt==0f)
+            return -1;
+        return i+1<num_steps ? i+1 : -1;
+    }
+
+    public float get_time_for_index(int i){
+        return start_time + i*dt;
+    }
+
+    // single column value of step i, 0 before start_time
+    public double get_value(int i){
+        return i<0 ? 0d : values[0][i];
+    }
+
+    // key -> value of step i, null before start_time
+    public Map<Long,Double> get_map(int i){
+        if(i<0)
+            return null;
+        Map<Long,Double> r = new HashMap<>();
+        for(int k=0;k<keys.length;k++)
+            r.put(keys[k],values[k][i]);
+        return r;
+    }
+
+}
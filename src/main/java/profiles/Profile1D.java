@@ -184,6 +184,14 @@ public class Profile1D {
                 start_time + dt + dt*((float)Math.floor((now-start_time)/dt)) ;
     }
 
+    // primitive copy for lookups during a run
+    public CompiledProfile compile(){
+        double [] x = new double[values.size()];
+        for(int i=0;i<x.length;i++)
+            x[i] = values.get(i);
+        return new CompiledProfile(start_time,dt,null,new double[][]{x});
+    }
+
     ///////////////////////////////////////
     // plot
     ///////////////////////////////////////
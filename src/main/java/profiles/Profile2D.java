@@ -155,6 +155,18 @@ public class Profile2D {
         return x;
     }
 
+    // primitive copy for lookups during a run, one column per key
+    public CompiledProfile compile(){
+        long [] keys = new long[values.size()];
+        double [][] x = new double[values.size()][];
+        int k = 0;
+        for(Map.Entry<Long,List<Double>> e : values.entrySet()){
+            keys[k] = e.getKey();
+            x[k++] = e.getValue().stream().mapToDouble(v->v).toArray();
+        }
+        return new CompiledProfile(start_time,dt,keys,x);
+    }
+
     ////////////////////////////////
     // other
     ////////////////////////////////
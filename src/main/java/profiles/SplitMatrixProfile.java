@@ -6,10 +6,10 @@ import core.Link;
 import error.OTMErrorLog;
 import error.OTMException;
 import dispatch.Dispatcher;
-import dispatch.EventSplitChange;
 import core.Node;
 import core.Scenario;
 import utils.OTMUtils;
+import utils.RandomStreams;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -24,7 +24,13 @@ public class SplitMatrixProfile {
     public Map<Long,Double> outlink2split;         // output link id -> split
     public Set<Long> outlinks_without_splits;
     public double total_split;
-    private List<LinkCumSplit> link_cumsplit;      // output link id -> cummulative split
+    private Long [] cum_link_ids;                 // output link ids, in the order of cum_splits
+    private float [] cum_splits;                  // split of the output links before each one
+    private SplittableRandom random;
+
+    // splits for the run, set on initialize
+    private CompiledProfile compiled_splits;
+    private int next_change;                      // step of the scheduled change
 
     ////////////////////////////////////////////
     // construction
@@ -78,13 +84,19 @@ public class SplitMatrixProfile {
 
     }
 
+    // random stream of this profile, restarted for every run
+    public void initialize_random(RandomStreams streams){
+        random = streams.get_stream(RandomStreams.Source.split, link_in.getId(), commodity_id);
+    }
+
     public void initialize(Dispatcher dispatcher) throws OTMException {
         if(splits==null)
             return;
-        float now = dispatcher.current_time;
-        this.set_all_current_splits(splits.get_value_for_time(now));
-        Map<Long,Double> time_splits = splits.get_value_for_time(now);
-        dispatcher.register_event(new EventSplitChange(dispatcher,now, this, time_splits));
+        compiled_splits = splits.compile();
+        int i = compiled_splits.get_index_for_time(dispatcher.current_time);
+        if(i>=0)
+            this.set_all_current_splits(compiled_splits.get_map(i));
+        register_next_change(dispatcher,i);
     }
 
     ////////////////////////
@@ -94,19 +106,31 @@ public class SplitMatrixProfile {
     // return an output link id according to split ratios for this commodity and line
     public Long sample_output_link(){
 
-        double r = OTMUtils.random_zero_to_one();
-
-        Optional<LinkCumSplit> z = link_cumsplit.stream()
-                .filter(x->x.cumsplit<r)  // get all cumsplit < out
-                .reduce((a,b)->b);        // get last such vauue
+        double r = random.nextDouble();
+
+        // last link with cumulative split < r
+        int lo = 0;
+        int hi = cum_splits.length;
+        while(lo<hi){
+            int mid = (lo+hi)>>>1;
+            if(cum_splits[mid]<r)
+                lo = mid+1;
+            else
+                hi = mid;
+        }
 
-        return z.isPresent() ? z.get().link_id : null;
+        return lo==0 ? null : cum_link_ids[lo-1];
     }
 
     ///////////////////////////////////////////
-    // used by EventSplitChange
+    // used by EventProfileChanges
     ///////////////////////////////////////////
 
+    public void apply_scheduled_change(Dispatcher dispatcher,float timestamp) {
+        set_all_current_splits(compiled_splits.get_map(next_change));
+        register_next_change(dispatcher,next_change);
+    }
+
     public void set_all_current_splits(Map<Long,Double> newsplit) {
         this.outlink2split = newsplit;
         propagate_split_change();
@@ -138,13 +162,15 @@ public class SplitMatrixProfile {
             }
         }
 
-        if(outlink2split.size()<=1)
-            return;
-
+        // sampling table
+        int n = outlink2split.size();
+        cum_link_ids = new Long[n];
+        cum_splits = new float[n];
         float s = 0f;
-        link_cumsplit = new ArrayList<>();
+        int i = 0;
         for(Map.Entry<Long,Double> e : outlink2split.entrySet()){
-            link_cumsplit.add(new LinkCumSplit(e.getKey(),s));
+            cum_link_ids[i] = e.getKey();
+            cum_splits[i++] = s;
             s += e.getValue();
         }
 
@@ -187,9 +213,12 @@ public class SplitMatrixProfile {
 //        }
 //    }
 
-    public void register_next_change(Dispatcher dispatcher,TimeMap time_map){
-        if(time_map!=null)
-            dispatcher.register_event(new EventSplitChange(dispatcher,time_map.time, this, time_map.value));
+    private void register_next_change(Dispatcher dispatcher,int current){
+        int i = compiled_splits.get_next_index(current);
+        if(i>=0){
+            next_change = i;
+            dispatcher.register_split_change(compiled_splits.get_time_for_index(i),this);
+        }
     }
 
     ///////////////////////////////////////////
@@ -224,16 +253,4 @@ public class SplitMatrixProfile {
         return link_in;
     }
 
-    ///////////////////////////////////////////
-    // class
-    ///////////////////////////////////////////
-
-    private class LinkCumSplit{
-        public Long link_id;
-        public Float cumsplit;
-        public LinkCumSplit(Long link_id, Float cumsplit) {
-            this.link_id = link_id;
-            this.cumsplit = cumsplit;
-        }
-    }
 }
@@ -0,0 +1,153 @@
+package profiles;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Growable series of values at regular times, stored in chunks of primitive doubles, or of
+// floats in float32 mode. Appending copies at most the first chunk. as_list() and
+// as_profile() are views on the series, with boxing only on access, so that outputs can be
+// read through the Profile1D API without copying.
+public class TimeSeries {
+
+    private static final int chunk_bits = 12;
+    private static final int chunk_size = 1<<chunk_bits;    // values per chunk
+    private static final int chunk_mask = chunk_size-1;
+    private static final int first_chunk_size = 16;     // the first chunk grows up to chunk_size, for short series
+
+    public final float start_time;
+    public final float dt;
+    public final boolean float32;
+
+    private double[][] dchunks;
+    private float[][] fchunks;
+    private int size;
+
+    public TimeSeries(float start_time,float dt,boolean float32){
+        this.start_time = start_time;
+        this.dt = dt;
+        this.float32 = float32;
+        if(float32)
+            fchunks = new float[1][];
+        else
+            dchunks = new double[1][];
+    }
+
+    ////////////////////////////////
+    // add, get, set
+    ////////////////////////////////
+
+    public void add(double x){
+        int c = size >>> chunk_bits;
+        int i = size & chunk_mask;
+        if(float32){
+            if(c==fchunks.length)
+                fchunks = Arrays.copyOf(fchunks,2*c);
+            if(fchunks[c]==null)
+                fchunks[c] = new float[c==0 ? first_chunk_size : chunk_size];
+            else if(i==fchunks[c].length)
+                fchunks[c] = Arrays.copyOf(fchunks[c],Math.min(2*i,chunk_size));
+            fchunks[c][i] = (float) x;
+        } else {
+            if(c==dchunks.length)
+                dchunks = Arrays.copyOf(dchunks,2*c);
+            if(dchunks[c]==null)
+                dchunks[c] = new double[c==0 ? first_chunk_size : chunk_size];
+            else if(i==dchunks[c].length)
+                dchunks[c] = Arrays.copyOf(dchunks[c],Math.min(2*i,chunk_size));
+            dchunks[c][i] = x;
+        }
+        size++;
+    }
+
+    public double get(int k){
+        if(k<0 || k>=size)
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for length " + size);
+        return float32 ? fchunks[k >>> chunk_bits][k & chunk_mask] : dchunks[k >>> chunk_bits][k & chunk_mask];
+    }
+
+    public void set(int k,double x){
+        if(k<0 || k>=size)
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for length " + size);
+        if(float32)
+            fchunks[k >>> chunk_bits][k & chunk_mask] = (float) x;
+        else
+            dchunks[k >>> chunk_bits][k & chunk_mask] = x;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    ////////////////////////////////
+    // access without copies
+    ////////////////////////////////
+
+    public List<Double> as_list(){
+        return new ListView();
+    }
+
+    public Profile1D as_profile(){
+        return new Profile1D(start_time,dt,as_list());
+    }
+
+    // copies length values from index 'from' into dst, one chunk at a time
+    public void copy_to(int from,double[] dst,int dst_from,int length){
+        if(from<0 || length<0 || from+length>size)
+            throw new IndexOutOfBoundsException("Range " + from + "+" + length + " out of bounds for length " + size);
+        while(length>0){
+            int c = from >>> chunk_bits;
+            int i = from & chunk_mask;
+            int n = Math.min(length,chunk_size-i);
+            if(float32)
+                for(int k=0;k<n;k++)
+                    dst[dst_from+k] = fchunks[c][i+k];
+            else
+                System.arraycopy(dchunks[c],i,dst,dst_from,n);
+            from += n;
+            dst_from += n;
+            length -= n;
+        }
+    }
+
+    public double[] to_array(){
+        double[] x = new double[size];
+        copy_to(0,x,0,size);
+        return x;
+    }
+
+    private class ListView extends AbstractList<Double> implements RandomAccess {
+
+        @Override
+        public Double get(int index) {
+            return TimeSeries.this.get(index);
+        }
+
+        @Override
+        public Double set(int index, Double element) {
+            double old = TimeSeries.this.get(index);
+            TimeSeries.this.set(index,element);
+            return old;
+        }
+
+        // appending only
+        @Override
+        public void add(int index, Double element) {
+            if(index!=size)
+                throw new UnsupportedOperationException("TimeSeries only appends.");
+            TimeSeries.this.add(element);
+            modCount++;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import actuator.InterfaceTarget;
 import core.*;
 import dispatch.Dispatcher;
 import dispatch.EventPoke;
+import dispatch.EventPokePeriodic;
 import dispatch.Pokable;
 import error.OTMErrorLog;
 import error.OTMException;
@@ -60,7 +61,10 @@ public abstract class AbstractSensor implements Pokable, InterfaceScenarioElemen
         dt_inv = dt==null ? null : 3600d/dt;
 
         Dispatcher dispatcher = scenario.dispatcher;
-        dispatcher.register_event(new EventPoke(dispatcher,10,dispatcher.current_time,this));
+        if(dt!=null && dt>0)
+            dispatcher.register_event(new EventPokePeriodic(dispatcher,10,dispatcher.current_time,dt,this));
+        else
+            dispatcher.register_event(new EventPoke(dispatcher,10,dispatcher.current_time,this));
     }
 
     public void validate_post_init(OTMErrorLog errorLog){
@@ -96,10 +100,6 @@ public abstract class AbstractSensor implements Pokable, InterfaceScenarioElemen
         // write to output
 //        if(event_output!=null)
 //            event_output.write(timestamp,new EventWrapperSensor(measurement));
-
-        // wake up in dt, if dt is defined
-        if(dt>0)
-            dispatcher.register_event(new EventPoke(dispatcher,1,timestamp+dt,this));
     }
 
     /////////////////////////////////////////////////////////////////////
@@ -47,9 +47,6 @@ public class LinkTravelTimeManager {
 
         // update link travel times
         links.forEach(link->link.link_tt.update_travel_time());
-
-        // set new event
-        scenario.dispatcher.register_event(new EventComputeTravelTime(scenario.dispatcher,now+dt,this));
     }
 
 }
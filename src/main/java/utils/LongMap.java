@@ -0,0 +1,169 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Map from long keys to objects, with open addressing and linear probing. Lookups do not box
+// the key. It is meant for id lookups on hot paths; the HashMaps that it shadows stay in place
+// for iteration, whose order some of the simulation depends on.
+@SuppressWarnings("unchecked")
+public class LongMap<V> {
+
+    private static final long free = Long.MIN_VALUE;   // marks an empty slot. Used as a key, it is kept aside.
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private boolean has_free_key;
+    private V free_value;
+
+    public LongMap(){
+        this(16);
+    }
+
+    public LongMap(int expected_size){
+        int capacity = 4;
+        while(capacity < 2*expected_size)
+            capacity *= 2;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        Arrays.fill(keys,free);
+    }
+
+    public V get(long key){
+        if(key==free)
+            return has_free_key ? free_value : null;
+        int mask = keys.length-1;
+        for(int i=slot(key,mask); ; i=(i+1) & mask){
+            if(keys[i]==key)
+                return (V) values[i];
+            if(keys[i]==free)
+                return null;
+        }
+    }
+
+    public boolean containsKey(long key){
+        if(key==free)
+            return has_free_key;
+        int mask = keys.length-1;
+        for(int i=slot(key,mask); ; i=(i+1) & mask){
+            if(keys[i]==key)
+                return true;
+            if(keys[i]==free)
+                return false;
+        }
+    }
+
+    // returns the previous value
+    public V put(long key,V value){
+        if(key==free){
+            V old = free_value;
+            if(!has_free_key)
+                size++;
+            has_free_key = true;
+            free_value = value;
+            return old;
+        }
+        int mask = keys.length-1;
+        int i = slot(key,mask);
+        while(keys[i]!=free){
+            if(keys[i]==key){
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i+1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if(2*size>keys.length)
+            rehash(2*keys.length);
+        return null;
+    }
+
+    // returns the removed value. Later entries of the probe sequence are shifted back into the gap.
+    public V remove(long key){
+        if(key==free){
+            if(!has_free_key)
+                return null;
+            V old = free_value;
+            has_free_key = false;
+            free_value = null;
+            size--;
+            return old;
+        }
+        int mask = keys.length-1;
+        int i = slot(key,mask);
+        while(keys[i]!=key){
+            if(keys[i]==free)
+                return null;
+            i = (i+1) & mask;
+        }
+        V old = (V) values[i];
+        size--;
+
+        int gap = i;
+        for(int j=(gap+1) & mask; keys[j]!=free; j=(j+1) & mask){
+            int home = slot(keys[j],mask);
+            // move j into the gap unless its home lies cyclically in (gap,j]
+            boolean stays = gap<=j ? (gap<home && home<=j) : (gap<home || home<=j);
+            if(!stays){
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = free;
+        values[gap] = null;
+        return old;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size==0;
+    }
+
+    // in slot order
+    public List<V> values(){
+        List<V> X = new ArrayList<>(size);
+        if(has_free_key)
+            X.add(free_value);
+        for(int i=0;i<keys.length;i++)
+            if(keys[i]!=free)
+                X.add((V) values[i]);
+        return X;
+    }
+
+    ///////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////
+
+    private static int slot(long key,int mask){
+        long h = key * 0x9E3779B97F4A7C15L;    // Fibonacci hashing spreads sequential ids
+        return (int) (h ^ (h>>>32)) & mask;
+    }
+
+    private void rehash(int capacity){
+        long[] old_keys = keys;
+        Object[] old_values = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        Arrays.fill(keys,free);
+        int mask = capacity-1;
+        for(int k=0;k<old_keys.length;k++){
+            if(old_keys[k]==free)
+                continue;
+            int i = slot(old_keys[k],mask);
+            while(keys[i]!=free)
+                i = (i+1) & mask;
+            keys[i] = old_keys[k];
+            values[i] = old_values[k];
+        }
+    }
+
+}
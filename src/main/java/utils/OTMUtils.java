@@ -16,24 +16,10 @@ import java.util.*;
 public class OTMUtils {
 
     public static double epsilon = 1e-6;
-    public static long lane_group_counter;
-    public static long vehicle_id_count;
-
-    private static Random random;
-
-    static{
-        lane_group_counter = 0;
-        vehicle_id_count = 0;
-        random = new Random();
-    }
-
-    public static void reset_counters(){
-        lane_group_counter = 0;
-        vehicle_id_count = 0;
-    }
+    public static Long default_random_seed;     // seed of scenarios created afterwards, see Scenario.random_seed
 
     public static void set_random_seed(long seed){
-        random = new Random(seed);
+        default_random_seed = seed;
     }
 
     ///////////////////////////////////////////////////
@@ -104,6 +90,22 @@ public class OTMUtils {
         return X.values().stream().mapToDouble(Double::doubleValue).sum();
     }
 
+    // compensated sum of X[from..to), same result as summing a DoubleStream of those values
+    public static double sum(double[] X,int from,int to){
+        double sum = 0d;
+        double c = 0d;          // negated low-order bits
+        double simple = 0d;
+        for(int i=from;i<to;i++){
+            double y = X[i] - c;
+            double t = sum + y;
+            c = (t - sum) - y;
+            sum = t;
+            simple += X[i];
+        }
+        double s = sum - c;
+        return Double.isNaN(s) && Double.isInfinite(simple) ? simple : s;
+    }
+
     public static List<Double> times(List<Double> X,Double a){
         if(X==null)
             return null;
@@ -131,7 +133,7 @@ public class OTMUtils {
         return Y;
     }
 
-    public static Float get_waiting_time(double rate,StochasticProcess process){
+    public static Float get_waiting_time(double rate,StochasticProcess process,SplittableRandom random){
 
         if(rate<=0d)
             return null;
@@ -147,18 +149,6 @@ public class OTMUtils {
         return (float) wait;
     }
 
-    public static int random_int(int min, int max){
-        return min + random.nextInt(max);
-    }
-
-    public static double random_double(double min,double max){
-        return min + random_zero_to_one()*(max-min);
-    }
-
-    public static double random_zero_to_one(){
-        return random.nextDouble();
-    }
-
     public static double snap_to_grid(double x,double gridsize){
         return Math.round(x/gridsize)*gridsize;
     }
@@ -167,11 +157,11 @@ public class OTMUtils {
     // sets
     ///////////////////////////////////////////////////
 
-    public static <T> T sample_from_set(Set<T> set){
+    public static <T> T sample_from_set(Set<T> set,SplittableRandom random){
         int size = set.size();
         if(size==1)
             return (T) set.toArray()[0];
-        int item = random.nextInt(size); // In real life, the Random object should be rather more shared than this
+        int item = random.nextInt(size);
         int i = 0;
         for(T obj : set)
         {
@@ -339,18 +329,6 @@ public class OTMUtils {
         return str;
     }
 
-    ///////////////////////////////////////////////////
-    // counter
-    ///////////////////////////////////////////////////
-
-    public static long get_lanegroup_id(){
-        return lane_group_counter++;
-    }
-
-    public static long get_vehicle_id(){
-        return vehicle_id_count++;
-    }
-
     ///////////////////////////////////////////////////
     // file
     ///////////////////////////////////////////////////
@@ -0,0 +1,37 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+// Random numbers of a scenario, as independent streams per source of randomness. The seed of
+// each stream is a hash of the scenario seed, the kind of source and keys that identify the
+// source (link ids, commodity ids, lanes), so a stream does not depend on the order in which
+// streams are created, nor on the draws of other streams. A run is then reproducible however
+// the events of different sources interleave, and scenarios in one JVM do not interfere.
+public class RandomStreams {
+
+    public enum Source {demand,lanegroup,split}
+
+    private static final long golden_gamma = 0x9e3779b97f4a7c15L;
+
+    public final long seed;
+
+    public RandomStreams(long seed){
+        this.seed = seed;
+    }
+
+    // a new stream for the source with the given keys; the same arguments give the same stream
+    public SplittableRandom get_stream(Source source,long... keys){
+        long h = mix(seed + golden_gamma*(source.ordinal()+1));
+        for(long key : keys)
+            h = mix(h ^ mix(key + golden_gamma));
+        return new SplittableRandom(h);
+    }
+
+    // finalizer of SplitMix64
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,77 @@
+package utils;
+
+import error.OTMException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Fixed pool of worker threads for data-parallel phases of the simulation.
+// run(n,task) splits the index range [0,n) into contiguous chunks, runs them on the pool,
+// and returns when all of them are done. The call is therefore a barrier between phases.
+// The split does not depend on timing, so a task that only writes to the elements of
+// its own range produces the same result as a serial loop.
+// The threads start on the first call to run and stop with close. A closed pool can run again.
+public class WorkerPool {
+
+    public interface InterfaceTask {
+        void run(int from,int to) throws OTMException;
+    }
+
+    private static final int chunks_per_thread = 4;
+
+    public final int num_threads;
+    private ForkJoinPool pool;          // null until the first run and after close
+
+    public WorkerPool(int num_threads){
+        this.num_threads = num_threads;
+    }
+
+    public void run(int n,InterfaceTask task) throws OTMException {
+
+        int num_chunks = Math.min(n,num_threads*chunks_per_thread);
+        if(num_chunks<2){
+            task.run(0,n);
+            return;
+        }
+
+        List<Callable<Void>> chunks = new ArrayList<>(num_chunks);
+        for(int c=0;c<num_chunks;c++){
+            final int from = (int) ((long) n * c / num_chunks);
+            final int to = (int) ((long) n * (c+1) / num_chunks);
+            chunks.add(() -> { task.run(from,to); return null; });
+        }
+
+        if(pool==null)
+            pool = new ForkJoinPool(num_threads);
+        await(pool.invokeAll(chunks));
+    }
+
+    public void close(){
+        if(pool!=null)
+            pool.shutdown();
+        pool = null;
+    }
+
+    // wait for all tasks, then report the first failure
+    public static void await(List<Future<Void>> futures) throws OTMException {
+        try {
+            for(Future<Void> f : futures)
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof OTMException)
+                throw (OTMException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new OTMException(cause);
+        }
+    }
+
+}
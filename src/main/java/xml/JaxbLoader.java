@@ -19,13 +19,18 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.io.File;
 import java.io.InputStream;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JaxbLoader {
 
     public static HashMap<String,String> test_configs;
 
+    // contexts and schemas are thread safe and costly to create, so they are made once
+    private static final Map<Class<?>,JAXBContext> contexts = new ConcurrentHashMap<>();
+    private static final Map<String,Schema> schemas = new ConcurrentHashMap<>();
+
     static {
         test_configs = new HashMap<>();
         test_configs.put("intersection","intersection.xml");
@@ -39,9 +44,12 @@ public class JaxbLoader {
         test_configs.put("output_test","output_test.xml");
     }
 
+    // xml file, or a snapshot written by ScenarioSnapshot
     public static jaxb.Scenario load_scenario(String filename) throws OTMException {
+        if(ScenarioSnapshot.is_snapshot(filename))
+            return ScenarioSnapshot.read(filename);
         try {
-            return (Scenario) create_unmarshaller().unmarshal(new File(filename));
+            return (Scenario) create_unmarshaller(Scenario.class,"/otm.xsd").unmarshal(new File(filename));
         } catch(org.xml.sax.SAXException e){
             throw new OTMException(e);
         }  catch (JAXBException e) {
@@ -51,7 +59,7 @@ public class JaxbLoader {
 
     public static jaxb.Scenario load_scenario(InputStream stream) throws OTMException {
         try {
-            return (Scenario) create_unmarshaller().unmarshal(stream);
+            return (Scenario) create_unmarshaller(Scenario.class,"/otm.xsd").unmarshal(stream);
         } catch(org.xml.sax.SAXException e){
             throw new OTMException(e);
         }  catch (JAXBException e) {
@@ -65,17 +73,32 @@ public class JaxbLoader {
         return jscenario;
     }
 
-    private static Unmarshaller create_unmarshaller() throws JAXBException, SAXException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(Scenario.class);
-        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-        boolean validate = true;
-        if(validate){
+    // unmarshallers are not thread safe, a new one is made for each load
+    public static Unmarshaller create_unmarshaller(Class<?> clazz,String xsd_resource) throws JAXBException, SAXException {
+        Unmarshaller unmarshaller = get_context(clazz).createUnmarshaller();
+        if(xsd_resource!=null)
+            unmarshaller.setSchema(get_schema(xsd_resource));
+        return unmarshaller;
+    }
+
+    public static JAXBContext get_context(Class<?> clazz) throws JAXBException {
+        JAXBContext context = contexts.get(clazz);
+        if(context==null){
+            context = JAXBContext.newInstance(clazz);
+            contexts.putIfAbsent(clazz,context);
+        }
+        return context;
+    }
+
+    private static Schema get_schema(String xsd_resource) throws SAXException {
+        Schema schema = schemas.get(xsd_resource);
+        if(schema==null){
             SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            InputStream resourceAsStream = JaxbLoader.class.getResourceAsStream("/otm.xsd");
-            Schema schema = sf.newSchema(new StreamSource(resourceAsStream));
-            unmarshaller.setSchema(schema);
+            InputStream resourceAsStream = JaxbLoader.class.getResourceAsStream(xsd_resource);
+            schema = sf.newSchema(new StreamSource(resourceAsStream));
+            schemas.putIfAbsent(xsd_resource,schema);
         }
-        return unmarshaller;
+        return schema;
     }
 
 }
\ No newline at end of file
@@ -3,7 +3,6 @@ package xml;
 import error.OTMException;
 import jaxb.Scenario;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import java.io.File;
@@ -19,8 +18,7 @@ public class JaxbWriter {
     }
 
     private static Marshaller create_marshaller() throws JAXBException {
-        JAXBContext jaxbContext = JAXBContext.newInstance(Scenario.class);
-        Marshaller marshaller = jaxbContext.createMarshaller();
+        Marshaller marshaller = JaxbLoader.get_context(Scenario.class).createMarshaller();
         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
         return marshaller;
     }
@@ -0,0 +1,365 @@
+package xml;
+
+import error.OTMException;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Binary snapshot of a scenario, for loading large scenarios without parsing and validating
+// xml. A snapshot holds the jaxb tree of the scenario (network, road connections, lane groups,
+// demand and split profiles, ...), written once and read back through a memory-mapped file.
+// The header holds a fingerprint of the layout of the jaxb classes, so that a snapshot is only
+// read by a build with the same classes. Big-endian layout:
+//   header   "OTMS", int32 version, int64 layout fingerprint
+//   body     the jaxb.Scenario as an object
+//   object   byte 0 for null, else 1 followed by its fields sorted by name
+//   list     varint size+1 (0 for null), followed by the elements as objects
+//   String   varint reference into the strings read so far (0 for null); the next unused
+//            reference is followed by a new string: varint length, UTF-8 bytes
+//   long,int zigzag varint
+//   float    float32, double: float64, boolean: byte
+// Boxed numbers and booleans are preceded by a byte, 0 for null and 1 otherwise.
+public class ScenarioSnapshot {
+
+    public static final int version = 1;
+    private static final byte [] magic = {'O','T','M','S'};
+
+    private enum Kind {STRING,LONG,INT,FLOAT,DOUBLE,BOOLEAN,OBJECT,LIST}
+
+    private static final Map<Class<?>,Layout> layouts = new ConcurrentHashMap<>();
+
+    ////////////////////////////////////////////
+    // API
+    ////////////////////////////////////////////
+
+    public static void write(jaxb.Scenario scenario,String filename) throws OTMException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename),1<<16))) {
+            out.write(magic);
+            out.writeInt(version);
+            out.writeLong(fingerprint());
+            new Writer(out).write_object(scenario,get_layout(jaxb.Scenario.class));
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public static jaxb.Scenario read(String filename) throws OTMException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+            byte [] m = new byte[magic.length];
+            buffer.get(m);
+            if(!Arrays.equals(m,magic))
+                throw new OTMException(filename + " is not a scenario snapshot.");
+            int v = buffer.getInt();
+            if(v!=version)
+                throw new OTMException(String.format("Snapshot version %d, expected %d.",v,version));
+            if(buffer.getLong()!=fingerprint())
+                throw new OTMException("Snapshot was written with different jaxb classes, write it again from the xml.");
+            return (jaxb.Scenario) new Reader(buffer).read_object(get_layout(jaxb.Scenario.class));
+        } catch (IOException | ReflectiveOperationException | BufferUnderflowException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // true if the file starts with the snapshot header
+    public static boolean is_snapshot(String filename){
+        try (InputStream in = new FileInputStream(filename)) {
+            byte [] m = new byte[magic.length];
+            return in.read(m)==m.length && Arrays.equals(m,magic);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    ////////////////////////////////////////////
+    // layout
+    ////////////////////////////////////////////
+
+    private static class Layout {
+        final Constructor<?> constructor;
+        final Field [] fields;
+        final Kind [] kinds;
+        final Class<?> [] classes;          // object class, or list element class
+
+        Layout(Class<?> clazz) throws ReflectiveOperationException {
+            constructor = clazz.getDeclaredConstructor();
+            List<Field> x = new ArrayList<>();
+            for(Field f : clazz.getDeclaredFields())
+                if(!Modifier.isStatic(f.getModifiers()) && !Modifier.isTransient(f.getModifiers()))
+                    x.add(f);
+            x.sort(Comparator.comparing(Field::getName));
+            fields = x.toArray(new Field[0]);
+            kinds = new Kind[fields.length];
+            classes = new Class<?>[fields.length];
+            for(int i=0;i<fields.length;i++){
+                Field f = fields[i];
+                f.setAccessible(true);
+                Class<?> type = f.getType();
+                if(type==String.class)
+                    kinds[i] = Kind.STRING;
+                else if(type==long.class || type==Long.class)
+                    kinds[i] = Kind.LONG;
+                else if(type==int.class || type==Integer.class)
+                    kinds[i] = Kind.INT;
+                else if(type==float.class || type==Float.class)
+                    kinds[i] = Kind.FLOAT;
+                else if(type==double.class || type==Double.class)
+                    kinds[i] = Kind.DOUBLE;
+                else if(type==boolean.class || type==Boolean.class)
+                    kinds[i] = Kind.BOOLEAN;
+                else if(type==List.class) {
+                    kinds[i] = Kind.LIST;
+                    classes[i] = (Class<?>) ((ParameterizedType) f.getGenericType()).getActualTypeArguments()[0];
+                }
+                else if(type.getPackage()==jaxb.Scenario.class.getPackage()) {
+                    kinds[i] = Kind.OBJECT;
+                    classes[i] = type;
+                }
+                else
+                    throw new NoSuchFieldException(String.format("Field %s.%s of type %s cannot be written to a snapshot.",clazz.getSimpleName(),f.getName(),type.getName()));
+            }
+        }
+    }
+
+    private static Layout get_layout(Class<?> clazz) throws ReflectiveOperationException {
+        Layout layout = layouts.get(clazz);
+        if(layout==null){
+            layout = new Layout(clazz);
+            layouts.putIfAbsent(clazz,layout);
+        }
+        return layout;
+    }
+
+    // 64 bit FNV-1a of the fields of all classes reachable from jaxb.Scenario
+    private static long fingerprint() throws ReflectiveOperationException {
+        StringBuilder str = new StringBuilder();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(jaxb.Scenario.class);
+        visited.add(jaxb.Scenario.class);
+        while(!queue.isEmpty()){
+            Class<?> clazz = queue.poll();
+            Layout layout = get_layout(clazz);
+            str.append(clazz.getName()).append('{');
+            for(int i=0;i<layout.fields.length;i++){
+                Field f = layout.fields[i];
+                str.append(f.getName()).append(':').append(f.getType().getName());
+                if(layout.classes[i]!=null){
+                    str.append('<').append(layout.classes[i].getName()).append('>');
+                    if(visited.add(layout.classes[i]))
+                        queue.add(layout.classes[i]);
+                }
+                str.append(',');
+            }
+            str.append('}');
+        }
+        long h = 0xcbf29ce484222325L;
+        for(byte b : str.toString().getBytes(StandardCharsets.UTF_8)){
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    ////////////////////////////////////////////
+    // write
+    ////////////////////////////////////////////
+
+    private static class Writer {
+
+        final DataOutputStream out;
+        final Map<String,Integer> strings = new HashMap<>();
+
+        Writer(DataOutputStream out){
+            this.out = out;
+        }
+
+        void write_object(Object obj,Layout layout) throws IOException, ReflectiveOperationException {
+            if(obj==null){
+                out.writeByte(0);
+                return;
+            }
+            out.writeByte(1);
+            for(int i=0;i<layout.fields.length;i++){
+                Field f = layout.fields[i];
+                boolean primitive = f.getType().isPrimitive();
+                Object value = f.get(obj);
+                switch(layout.kinds[i]){
+                    case STRING:
+                        write_string((String) value);
+                        continue;
+                    case OBJECT:
+                        write_object(value,get_layout(layout.classes[i]));
+                        continue;
+                    case LIST:
+                        List<?> list = (List<?>) value;
+                        if(list==null) {
+                            write_varint(0);
+                            continue;
+                        }
+                        write_varint(list.size()+1);
+                        Layout element = get_layout(layout.classes[i]);
+                        for(Object x : list)
+                            write_object(x,element);
+                        continue;
+                }
+                if(!primitive){
+                    out.writeByte(value==null ? 0 : 1);
+                    if(value==null)
+                        continue;
+                }
+                switch(layout.kinds[i]){
+                    case LONG:
+                        write_varint(zigzag((Long) value));
+                        break;
+                    case INT:
+                        write_varint(zigzag((Integer) value));
+                        break;
+                    case FLOAT:
+                        out.writeFloat((Float) value);
+                        break;
+                    case DOUBLE:
+                        out.writeDouble((Double) value);
+                        break;
+                    case BOOLEAN:
+                        out.writeBoolean((Boolean) value);
+                        break;
+                }
+            }
+        }
+
+        void write_string(String s) throws IOException {
+            if(s==null){
+                write_varint(0);
+                return;
+            }
+            Integer ref = strings.get(s);
+            if(ref!=null){
+                write_varint(ref);
+                return;
+            }
+            ref = strings.size()+1;
+            strings.put(s,ref);
+            write_varint(ref);
+            byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+            write_varint(bytes.length);
+            out.write(bytes);
+        }
+
+        void write_varint(long x) throws IOException {
+            while((x & ~0x7fL)!=0){
+                out.writeByte((int) ((x & 0x7f) | 0x80));
+                x >>>= 7;
+            }
+            out.writeByte((int) x);
+        }
+
+        static long zigzag(long x){
+            return (x << 1) ^ (x >> 63);
+        }
+    }
+
+    ////////////////////////////////////////////
+    // read
+    ////////////////////////////////////////////
+
+    private static class Reader {
+
+        final ByteBuffer in;
+        final List<String> strings = new ArrayList<>();
+
+        Reader(ByteBuffer in){
+            this.in = in;
+        }
+
+        Object read_object(Layout layout) throws ReflectiveOperationException {
+            if(in.get()==0)
+                return null;
+            Object obj = layout.constructor.newInstance();
+            for(int i=0;i<layout.fields.length;i++){
+                Field f = layout.fields[i];
+                switch(layout.kinds[i]){
+                    case STRING:
+                        f.set(obj,read_string());
+                        continue;
+                    case OBJECT:
+                        f.set(obj,read_object(get_layout(layout.classes[i])));
+                        continue;
+                    case LIST:
+                        int n = (int) read_varint() - 1;
+                        if(n<0) {
+                            f.set(obj,null);
+                            continue;
+                        }
+                        List<Object> list = new ArrayList<>(n);
+                        Layout element = get_layout(layout.classes[i]);
+                        for(int k=0;k<n;k++)
+                            list.add(read_object(element));
+                        f.set(obj,list);
+                        continue;
+                }
+                if(!f.getType().isPrimitive() && in.get()==0) {
+                    f.set(obj,null);
+                    continue;
+                }
+                switch(layout.kinds[i]){
+                    case LONG:
+                        f.set(obj,unzigzag(read_varint()));
+                        break;
+                    case INT:
+                        f.set(obj,(int) unzigzag(read_varint()));
+                        break;
+                    case FLOAT:
+                        f.set(obj,in.getFloat());
+                        break;
+                    case DOUBLE:
+                        f.set(obj,in.getDouble());
+                        break;
+                    case BOOLEAN:
+                        f.set(obj,in.get()!=0);
+                        break;
+                }
+            }
+            return obj;
+        }
+
+        String read_string(){
+            int ref = (int) read_varint();
+            if(ref==0)
+                return null;
+            if(ref<=strings.size())
+                return strings.get(ref-1);
+            byte [] bytes = new byte[(int) read_varint()];
+            in.get(bytes);
+            String s = new String(bytes,StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+
+        long read_varint(){
+            long x = 0L;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                x |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while((b & 0x80)!=0);
+            return x;
+        }
+
+        static long unzigzag(long x){
+            return (x >>> 1) ^ -(x & 1);
+        }
+    }
+
+}
@@ -3,11 +3,12 @@ package tests;
 import org.junit.runners.Parameterized;
 import xml.JaxbLoader;
 
+import java.io.File;
 import java.util.*;
 
 public abstract class AbstractTest {
 
-    public static String output_folder = "temp";
+    public static String output_folder = "temp";     // ignored by git, created if missing
     public static Collection<String> get_test_config_names() {
         return JaxbLoader.test_configs.keySet();
     }
@@ -16,6 +17,7 @@ public abstract class AbstractTest {
     static {
         all_runparams = new ArrayList<>();
         all_runparams.add("data/props/0_5_3600.properties");
+        new File(output_folder).mkdirs();
     }
 
     @Parameterized.Parameters
@@ -0,0 +1,200 @@
+package tests;
+
+import core.AbstractFluidModel;
+import core.AbstractLaneGroup;
+import core.Link;
+import core.OTM;
+import dispatch.*;
+import error.OTMException;
+import models.fluid.partition.DomainDecomposition;
+import models.vehicle.newell.NewellLaneGroup;
+import org.junit.Ignore;
+import org.junit.Test;
+import xml.JaxbLoader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.fail;
+
+// Timing comparisons. These are not assertions, run them by hand.
+public class Benchmarks extends AbstractTest {
+
+    /////////////////////////////////////////////
+    // event queue
+    /////////////////////////////////////////////
+
+    // classic "hold" model: a queue of fixed size, each poll followed by an offer a
+    // random increment later
+    @Ignore
+    @Test
+    public void event_queue_hold() {
+        int num_holds = 2000000;
+        for(int size : new int[]{100,1000,10000,100000,1000000}) {
+            double t_heap = hold(new EventQueueHeap(), size, num_holds);
+            double t_cal = hold(new EventQueueCalendar(), size, num_holds);
+            System.out.println(String.format("size=%d\theap=%.1f ns/hold\tcalendar=%.1f ns/hold", size, t_heap, t_cal));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void event_queue_run() {
+        try {
+            for(Dispatcher.QueueType queue_type : Dispatcher.QueueType.values()) {
+                for(String config : get_test_config_names()) {
+                    OTM otm = OTM.load_test(config);
+                    otm.set_event_queue(queue_type);
+                    long start = System.nanoTime();
+                    otm.run(0f, 3600f);
+                    System.out.println(String.format("%s\t%s\t%.1f ms", queue_type, config, (System.nanoTime() - start) * 1e-6));
+                }
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /////////////////////////////////////////////
+    // domain decomposition
+    /////////////////////////////////////////////
+
+    // ctm on a 60x60 grid (7200 links, 36000 cells), for increasing numbers of subdomains
+    @Ignore
+    @Test
+    public void fluid_partitions() {
+        try {
+            for(int partitions : new int[]{1,2,4,8,16}) {
+                OTM otm = new OTM(TestParallel.grid_scenario(60, partitions), true);
+                otm.run(0f, 300f);    // warm up, and initializes the decomposition
+                long start = System.nanoTime();
+                otm.run(0f, 1800f);
+                double ms = (System.nanoTime() - start) * 1e-6;
+                DomainDecomposition dd = ((AbstractFluidModel) otm.scenario.models.values().iterator().next()).get_decomposition();
+                String cells = dd==null ? "" : Arrays.toString(Arrays.stream(dd.subdomains).mapToLong(d -> d.num_cells).toArray());
+                int cut = dd==null ? 0 : dd.cut_road_connections;
+                System.out.println(String.format("partitions=%d\t%.1f ms\tcut=%d\tcells=%s", partitions, ms, cut, cells));
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // ctm on a 30x30 grid where every 5th source has demand for the first 10 minutes of an hour,
+    // with and without skipping inactive links and node models
+    @Ignore
+    @Test
+    public void fluid_activity() {
+        try {
+            for(boolean track_activity : new boolean[]{false,true}) {
+                OTM otm = new OTM(TestParallel.grid_scenario(30, 1, 5, "400,0"), true);
+                ((AbstractFluidModel) otm.scenario.models.values().iterator().next()).track_activity = track_activity;
+                otm.run(0f, 300f);    // warm up
+                long start = System.nanoTime();
+                otm.run(0f, 3600f);
+                double ms = (System.nanoTime() - start) * 1e-6;
+                System.out.println(String.format("track_activity=%s\t%.1f ms", track_activity, ms));
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /////////////////////////////////////////////
+    // Newell
+    /////////////////////////////////////////////
+
+    // vehicle-steps per second of micro and micro_array on 100 parallel corridors of 40 links,
+    // about 10^5 vehicles once the corridors have filled, for increasing numbers of threads
+    @Ignore
+    @Test
+    public void newell_corridors() {
+        try {
+            for(String model_type : new String[]{"micro","micro_array"}) {
+                for(int threads : new int[]{1,2,4,8}) {
+                    OTM otm = new OTM(corridor_scenario(100, 40, model_type, threads), true);
+                    otm.initialize(0f);
+                    otm.advance(900f);    // warm up, and fill the corridors
+                    double vehicle_steps = 0d;
+                    long start = System.nanoTime();
+                    for(int k=0;k<10;k++) {
+                        otm.advance(60f);
+                        vehicle_steps += 60d * num_vehicles(otm);   // sim_dt=1
+                    }
+                    double sec = (System.nanoTime() - start) * 1e-9;
+                    System.out.println(String.format("%s\tthreads=%d\tvehicles=%d\t%.2e vehicle-steps/s", model_type, threads, num_vehicles(otm), vehicle_steps / sec));
+                    otm.terminate();
+                }
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static long num_vehicles(OTM otm) {
+        long n = 0;
+        for(Link link : otm.scenario.network.links.values())
+            for(AbstractLaneGroup lg : link.get_lgs())
+                n += ((NewellLaneGroup) lg).num_vehicles();
+        return n;
+    }
+
+    // parallel 3-lane corridors of 500 m links with demand at capacity
+    private static jaxb.Scenario corridor_scenario(int num_corridors, int num_links, String model_type, int threads) throws OTMException {
+        StringBuilder nodes = new StringBuilder();
+        StringBuilder links = new StringBuilder();
+        StringBuilder rcs = new StringBuilder();
+        StringBuilder demands = new StringBuilder();
+        for(int c=0;c<num_corridors;c++) {
+            long first = (long) c * (num_links+1) + 1;    // node and link ids
+            for(int k=0;k<=num_links;k++)
+                nodes.append(String.format("<node id=\"%d\"/>", first + k));
+            for(int k=0;k<num_links;k++) {
+                links.append(String.format("<link id=\"%d\" full_lanes=\"3\" length=\"500\" start_node_id=\"%d\" end_node_id=\"%d\" roadparam=\"1\"/>", first + k, first + k, first + k + 1));
+                if(k>0)
+                    rcs.append(String.format("<roadconnection id=\"%d\" in_link=\"%d\" out_link=\"%d\"/>", first + k, first + k - 1, first + k));
+            }
+            demands.append(String.format("<demand link_id=\"%d\" commodity_id=\"1\">5400</demand>", first));
+        }
+        String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?><scenario xmlns=\"opentrafficmodels\">" +
+                "<commodities><commodity id=\"1\" name=\"car\" pathfull=\"false\"/></commodities>" +
+                String.format("<models><model type=\"%s\" name=\"newell\" is_default=\"true\">", model_type) +
+                String.format("<model_params sim_dt=\"1\" threads=\"%d\"/>", threads) +
+                "</model></models><network>" +
+                "<nodes>" + nodes + "</nodes><links>" + links + "</links>" +
+                "<roadparams><roadparam id=\"1\" capacity=\"1800\" speed=\"100\" jam_density=\"100\"/></roadparams>" +
+                "<roadconnections>" + rcs + "</roadconnections></network>" +
+                "<demands>" + demands + "</demands></scenario>";
+        return JaxbLoader.load_scenario(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static double hold(InterfaceEventQueue queue, int size, int num_holds) {
+        Random random = new Random(0);
+        for(int i=0;i<size;i++)
+            queue.offer(new HoldEvent((float) (-Math.log(random.nextDouble()))));
+        for(int i=0;i<num_holds/2;i++)      // warm up
+            hold_once(queue, random);
+        long start = System.nanoTime();
+        for(int i=0;i<num_holds;i++)
+            hold_once(queue, random);
+        return (System.nanoTime() - start) / (double) num_holds;
+    }
+
+    private static void hold_once(InterfaceEventQueue queue, Random random) {
+        AbstractEvent e = queue.poll();
+        e.timestamp += (float) (-Math.log(random.nextDouble()));
+        queue.offer(e);
+    }
+
+    static class HoldEvent extends AbstractEvent {
+        HoldEvent(float timestamp){
+            super(null,0,timestamp,null);
+        }
+        @Override
+        public void action() {
+        }
+    }
+
+}
@@ -11,6 +11,14 @@ import output.animation.AbstractLinkInfo;
 import output.animation.AnimationInfo;
 import output.animation.macro.LaneGroupInfo;
 
+import xml.JaxbLoader;
+import xml.ScenarioSnapshot;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Set;
 
 import static java.util.stream.Collectors.toSet;
@@ -40,6 +48,30 @@ public class TestApi extends AbstractTest {
 
     }
 
+    @Test
+    public void test_snapshot(){
+        try {
+            File file = File.createTempFile("otm",".otms");
+            file.deleteOnExit();
+            for(String config : get_test_config_names()){
+                jaxb.Scenario jscenario = JaxbLoader.load_test_scenario(config);
+                ScenarioSnapshot.write(jscenario,file.getPath());
+                assertTrue(ScenarioSnapshot.is_snapshot(file.getPath()));
+                assertEquals(to_xml(jscenario),to_xml(JaxbLoader.load_scenario(file.getPath())));
+            }
+            new OTM(file.getPath(),true);
+        } catch (OTMException | IOException | JAXBException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static String to_xml(jaxb.Scenario jscenario) throws JAXBException {
+        StringWriter str = new StringWriter();
+        Marshaller marshaller = JaxbLoader.get_context(jaxb.Scenario.class).createMarshaller();
+        marshaller.marshal(jscenario,str);
+        return str.toString();
+    }
+
     @Test
     public void test_intersection_api(){
 
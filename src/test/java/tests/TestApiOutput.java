@@ -2,13 +2,24 @@ package tests;
 
 import core.OTM;
 import error.OTMException;
+import models.fluid.FluidLaneGroup;
 import org.junit.Test;
+import output.*;
+import profiles.TimeSeries;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class TestApiOutput extends AbstractTest {
 
@@ -98,4 +109,213 @@ public class TestApiOutput extends AbstractTest {
         }
     }
 
+    // binary link and cell outputs read back the same values as outputs kept in memory
+    @Test
+    public void test_binary_outputs() {
+        try {
+            Path folder = Files.createTempDirectory("otm");
+
+            // the same outputs in memory and in binary files, in one run
+            OTM otm = OTM.load_test("output_test");
+            otm.output.request_links_veh(null, null, null, null, 10f);
+            otm.output.request_cell_veh(null, null, null, null, 10f);
+            otm.output.request_links_veh("x", folder.toString(), null, null, 10f);
+            otm.output.request_cell_veh("x", folder.toString(), null, null, 10f);
+            for (AbstractOutput output : otm.scenario.outputs)
+                if (output.write_to_file)
+                    ((AbstractOutputTimed) output).set_format(output instanceof OutputLinkVehicles ? AbstractOutputTimed.Format.binary64 : AbstractOutputTimed.Format.binary32);
+            otm.run(0f, 600f);
+
+            for (AbstractOutput output : otm.output.get_data()) {
+                String filename = folder.resolve("x_" + (output instanceof OutputLinkVehicles ? "allcomms_link_veh.bin" : "allcomms_cell_veh.bin")).toString();
+                BinaryOutputReader reader = new BinaryOutputReader(filename);
+                assertEquals(10f, reader.dt, 0f);
+                assertEquals(61, reader.times.length);
+                if (output instanceof OutputLinkVehicles) {
+                    OutputLinkVehicles out = (OutputLinkVehicles) output;
+                    for (int c = 0; c < reader.ids.length; c++)
+                        assertArrayEquals(out.get_profile_for_linkid(reader.ids[c]).values.stream().mapToDouble(x -> x).toArray(), reader.get_values_for_column(c), 0d);
+                } else {
+                    OutputCellVehicles out = (OutputCellVehicles) output;
+                    for (FluidLaneGroup lg : out.get_ordered_lgs()) {
+                        List<Double> values = out.lgprofiles.get(lg.getId()).get(0).profile.values;
+                        int c = reader.get_column(lg.getId(), 0);
+                        assertArrayEquals(values.stream().mapToDouble(x -> x).toArray(), reader.get_values_for_column(c), 1e-4);
+                    }
+                }
+            }
+        } catch (OTMException | IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // files written on the output writer thread, with a queue that fills up, are the same as inline
+    @Test
+    public void test_async_outputs() {
+        try {
+            // same instance, for the same lane group ids
+            OTM otm = new OTM(TestParallel.grid_scenario(6, 1), true);
+            Map<String, byte[]> inline = write_outputs(otm, 0);
+            Map<String, byte[]> async = write_outputs(otm, 2);
+            assertEquals(inline.keySet(), async.keySet());
+            for (String name : inline.keySet())
+                assertArrayEquals(name, inline.get(name), async.get(name));
+        } catch (OTMException | IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // in-memory values in float32 agree with float64, also past the first chunk of the series
+    @Test
+    public void test_float32_outputs() {
+        try {
+            OTM otm = new OTM(TestParallel.grid_scenario(4, 1), true);
+            otm.output.request_links_veh(null, null, null, null, 0.5f);
+            otm.output.request_links_veh(null, null, null, null, 0.5f);
+            Iterator<AbstractOutput> it = otm.output.get_data().iterator();
+            OutputLinkVehicles x64 = (OutputLinkVehicles) it.next();
+            OutputLinkVehicles x32 = (OutputLinkVehicles) it.next();
+            x32.store_float32 = true;
+            otm.run(0f, 3000f);
+            for (long link_id : x64.get_link_ids()) {
+                TimeSeries s64 = x64.get_timeseries_for_linkid(link_id);
+                TimeSeries s32 = x32.get_timeseries_for_linkid(link_id);
+                assertEquals(6001, s64.size());
+                assertArrayEquals(s64.to_array(), s32.to_array(), 1e-4);
+                assertEquals(s64.as_list(), x64.get_profile_for_linkid(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // compressed cell file holds the text of the plain file, and a time window reads only its blocks
+    @Test
+    public void test_compressed_outputs() {
+        try {
+            OTM otm = new OTM(TestParallel.grid_scenario(4, 1), true);
+            Path plain = Files.createTempDirectory("otm");
+            otm.output.request_cell_veh("x", plain.toString(), null, null, 10f);
+            otm.run(0f, 600f);
+
+            Path compressed = Files.createTempDirectory("otm");
+            otm.output.clear();
+            otm.set_output_writer(2, AsyncOutputWriter.Backpressure.block);
+            otm.output.request_cell_veh("x", compressed.toString(), null, null, 10f);
+            for (AbstractOutput output : otm.scenario.outputs)
+                output.set_compression(100f);
+            otm.run(0f, 600f);
+
+            String text = new String(Files.readAllBytes(plain.resolve("x_allcomms_cell_veh.txt")));
+            String[] lines = text.split("\n");
+            assertEquals(61, lines.length);
+            try (CompressedBlockReader reader = new CompressedBlockReader(compressed.resolve("x_allcomms_cell_veh.txt.otmz").toString())) {
+                assertEquals(7, reader.num_blocks());
+                assertEquals(text, reader.read_all());
+                assertEquals(200f, reader.first_times[2], 0f);
+                assertEquals(290f, reader.last_times[2], 0f);
+                String window = String.join("\n", Arrays.copyOfRange(lines, 20, 30)) + "\n";
+                assertEquals(window, reader.read_window(200f, 290f));
+            }
+        } catch (OTMException | IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // a failure of the writer thread during the final flush reaches the caller of terminate
+    @Test
+    public void test_output_writer_failure() {
+        try {
+            OTM otm = new OTM(TestParallel.grid_scenario(4, 1), true);
+            otm.set_output_writer(2, AsyncOutputWriter.Backpressure.block);
+            otm.output.request_links_veh("x", Files.createTempDirectory("otm").toString(), null, null, 10f);
+            otm.initialize(0f);
+            otm.advance(600f);
+            otm.scenario.output_writer.submit(() -> { throw new OTMException("disk full"); });
+            try {
+                otm.terminate();
+                fail("terminate did not report the failure of the writer");
+            } catch (OTMException e) {
+                assertEquals("disk full", e.getMessage());
+            }
+            assertNull(otm.scenario.output_writer);
+        } catch (OTMException | IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // aggregates per period agree with the per-dt link outputs of the same run
+    @Test
+    public void test_link_aggregates() {
+        try {
+            Path folder = Files.createTempDirectory("otm");
+            OTM otm = new OTM(TestParallel.grid_scenario(4, 1), true);
+            otm.output.request_links_veh(null, null, null, null, 10f);
+            otm.output.request_links_flow(null, null, null, null, 10f);
+            otm.output.request_link_aggregates(null, null, null, null, 10f, 300f);
+            otm.output.request_link_aggregates("x", folder.toString(), null, null, 10f, 300f);
+            otm.run(0f, 600f);
+
+            OutputLinkVehicles veh = null;
+            OutputLinkFlow flw = null;
+            OutputLinkAggregates agg = null;
+            for (AbstractOutput output : otm.output.get_data()) {
+                if (output instanceof OutputLinkVehicles) veh = (OutputLinkVehicles) output;
+                if (output instanceof OutputLinkFlow) flw = (OutputLinkFlow) output;
+                if (output instanceof OutputLinkAggregates) agg = (OutputLinkAggregates) output;
+            }
+
+            List<OutputLinkAggregates.Period> periods = agg.get_periods();
+            assertEquals(2, periods.size());
+            for (int k = 0; k < 2; k++) {
+                OutputLinkAggregates.Period p = periods.get(k);
+                assertEquals(300f * k, p.start_time, 0f);
+                assertEquals(300f * (k + 1), p.end_time, 0f);
+                double total_vht = 0d;
+                double total_delay = 0d;
+                for (long link_id : agg.ordered_ids) {
+                    OutputLinkAggregates.Aggregate a = p.links.get(link_id);
+                    List<Double> v = veh.get_profile_for_linkid(link_id).values.subList(30 * k + 1, 30 * k + 31);
+                    assertEquals(v.stream().mapToDouble(x -> x * 10d / 3600d).sum(), a.vht, 1e-9);
+                    assertEquals(v.stream().mapToDouble(x -> x).max().getAsDouble(), a.veh.max, 0d);
+                    double[] sorted = v.stream().mapToDouble(x -> x).sorted().toArray();
+                    assertEquals(sorted[14], a.veh.quantile(0.5), 0.01 * sorted[14] + 1e-6);
+                    List<Double> c = flw.get_profile_for_linkid(link_id).values;
+                    double length_km = otm.scenario.network.links.get(link_id).get_full_length() / 1000d;
+                    assertEquals((c.get(30 * k + 30) - c.get(30 * k)) * length_km, a.vkt, 1e-6);
+                    total_vht += a.vht;
+                    if (!Double.isNaN(a.delay))
+                        total_delay += a.delay;
+                }
+                assertEquals(total_vht, p.total.vht, 1e-9);
+                assertEquals(total_delay, p.total.delay, 1e-9);
+            }
+
+            List<String> lines = Files.readAllLines(folder.resolve("x_allcomms_link_aggregates.txt"));
+            assertEquals(1 + 2 * (agg.ordered_ids.length + 1), lines.size());
+            assertTrue(lines.get(0).startsWith("start,end,link,vht,vkt,speed,delay,veh_mean"));
+        } catch (OTMException | IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static Map<String, byte[]> write_outputs(OTM otm, int queue_capacity) throws OTMException, IOException {
+        Path folder = Files.createTempDirectory("otm");
+        otm.output.clear();
+        otm.set_output_writer(queue_capacity, AsyncOutputWriter.Backpressure.block);
+        otm.output.request_links_veh("x", folder.toString(), null, null, 10f);
+        otm.output.request_cell_flw("x", folder.toString(), null, null, 10f);
+        otm.output.request_lanegroup_veh("y", folder.toString(), null, null, 10f);
+        for (AbstractOutput output : otm.scenario.outputs)
+            if (output instanceof OutputLaneGroupVehicles)
+                ((AbstractOutputTimed) output).set_format(AbstractOutputTimed.Format.binary64);
+        otm.run(0f, 600f);
+        Map<String, byte[]> X = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for (Path file : files)
+                X.put(file.getFileName().toString(), Files.readAllBytes(file));
+        }
+        return X;
+    }
+
 }
@@ -0,0 +1,50 @@
+package tests;
+
+import core.OTM;
+import error.OTMException;
+import org.junit.Test;
+import output.AbstractOutput;
+import output.OutputLinkVehicles;
+import profiles.Profile1D;
+import xml.JaxbLoader;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestCTMArray extends AbstractTest {
+
+    // ctm_array gives exactly the same link vehicles as ctm on all ctm test configurations
+    @Test
+    public void test_same_as_ctm() {
+        try {
+            for (String config : List.of("line_ctm", "intersection", "mixing", "onramp_hov", "onramp_offramp", "grid_lanes")) {
+                Map<Long, Profile1D> ctm = run(config, "ctm");
+                Map<Long, Profile1D> ctm_array = run(config, "ctm_array");
+                assertEquals(ctm.keySet(), ctm_array.keySet());
+                for (Long link_id : ctm.keySet())
+                    assertEquals(config + " link " + link_id, ctm.get(link_id).values, ctm_array.get(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static Map<Long, Profile1D> run(String config, String model_type) throws OTMException {
+        OTM.set_random_seed(1L);
+        jaxb.Scenario jscenario = config.equals("grid_lanes") ? TestParallel.grid_scenario(8, 1, 1, "1500", true) : JaxbLoader.load_test_scenario(config);
+        for (jaxb.Model model : jscenario.getModels().getModel())
+            model.setType(model_type);
+        OTM otm = new OTM(jscenario, true);
+        Set<Long> link_ids = otm.scenario.network.links.keySet();
+        otm.output.request_links_veh(null, null, null, link_ids, 10f);
+        otm.run(0f, 1000f);
+        Map<Long, Profile1D> X = new HashMap<>();
+        for (AbstractOutput output : otm.output.get_data())
+            if (output instanceof OutputLinkVehicles)
+                for (Long link_id : link_ids)
+                    X.put(link_id, ((OutputLinkVehicles) output).get_profile_for_linkid(link_id));
+        return X;
+    }
+
+}
@@ -0,0 +1,188 @@
+package tests;
+
+import core.OTM;
+import dispatch.*;
+import error.OTMException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestDispatcher extends AbstractTest {
+
+    @Test
+    public void test_calendar_order() {
+
+        Random random = new Random(1);
+        InterfaceEventQueue heap = new EventQueueHeap();
+        InterfaceEventQueue calendar = new EventQueueCalendar();
+
+        // interleave offers and polls, with many simultaneous events
+        float now = 0f;
+        for(int k=0;k<20000;k++){
+            if(random.nextDouble()<0.55 || heap.isEmpty()){
+                float t = now + (random.nextBoolean() ? 2f*random.nextInt(5) : 100f*random.nextFloat());
+                int order = 10*random.nextInt(4);
+                heap.offer(new TestEvent(order,t,k));
+                calendar.offer(new TestEvent(order,t,k));
+            } else {
+                AbstractEvent a = heap.poll();
+                AbstractEvent b = calendar.poll();
+                assertEquals(0,a.compareTo(b));
+                now = a.timestamp;
+            }
+            assertEquals(heap.size(),calendar.size());
+        }
+
+        while(!heap.isEmpty())
+            assertEquals(0,heap.poll().compareTo(calendar.poll()));
+        assertTrue(calendar.isEmpty());
+        assertNull(calendar.poll());
+    }
+
+    @Test
+    public void test_calendar_ties_fifo() {
+        InterfaceEventQueue calendar = new EventQueueCalendar();
+        for(int k=0;k<100;k++)
+            calendar.offer(new TestEvent(k%2==0 ? 50 : 55,3f,k));
+        List<Integer> even = new ArrayList<>();
+        List<Integer> odd = new ArrayList<>();
+        while(!calendar.isEmpty()){
+            TestEvent e = (TestEvent) calendar.poll();
+            (e.dispatch_order==50 ? even : odd).add(e.id);
+        }
+        assertEquals(50,even.size());
+        for(int i=0;i<50;i++){
+            assertEquals(2*i,(int)even.get(i));
+            assertEquals(2*i+1,(int)odd.get(i));
+        }
+    }
+
+    @Test
+    public void test_calendar_remove() {
+        InterfaceEventQueue calendar = new EventQueueCalendar();
+        for(int k=0;k<1000;k++)
+            calendar.offer(new TestEvent(0,k,k));
+        assertTrue(calendar.removeIf(e->((TestEvent)e).id%3==0));
+        assertEquals(666,calendar.size());
+        assertEquals(666,calendar.stream().count());
+        float prev = -1f;
+        while(!calendar.isEmpty()){
+            TestEvent e = (TestEvent) calendar.poll();
+            assertNotEquals(0,e.id%3);
+            assertTrue(e.timestamp>prev);
+            prev = e.timestamp;
+        }
+    }
+
+    @Test
+    public void test_periodic() {
+        try {
+            for(Dispatcher.QueueType queue_type : Dispatcher.QueueType.values()) {
+                Dispatcher dispatcher = new Dispatcher(queue_type);
+                dispatcher.initialize();
+
+                List<Float> fired = new ArrayList<>();
+                dispatcher.register_event(new AbstractEventPeriodic(dispatcher, 50, 0f, 2f, fired) {
+                    @Override
+                    public void action() {
+                        fired.add(timestamp);
+                        if (timestamp >= 10f)
+                            dispatcher.remove_events_for_recipient(AbstractEventPeriodic.class, recipient);
+                    }
+                });
+
+                // a second periodic event, cancelled from another event while it is queued
+                List<Float> fired_other = new ArrayList<>();
+                dispatcher.register_event(new AbstractEventPeriodic(dispatcher, 50, 1f, 2f, fired_other) {
+                    @Override
+                    public void action() {
+                        fired_other.add(timestamp);
+                    }
+                });
+                dispatcher.register_event(new AbstractEvent(dispatcher, 10, 6f, null) {
+                    @Override
+                    public void action() {
+                        dispatcher.remove_events_for_recipient(AbstractEventPeriodic.class, fired_other);
+                    }
+                });
+
+                dispatcher.register_event(new EventStopSimulation(null, dispatcher, 100f));
+                dispatcher.dispatch_events_to_stop();
+
+                assertEquals(6, fired.size());
+                for (int i = 0; i < 6; i++)
+                    assertEquals(2f * i, fired.get(i), 0f);
+                assertEquals(List.of(1f, 3f, 5f), fired_other);
+                assertTrue(dispatcher.events.isEmpty());
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_cancel() {
+        try {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.initialize();
+
+            List<Integer> fired = new ArrayList<>();
+            Object [] recipients = new Object[]{new Object(),new Object(),new Object()};
+            for(int k=0;k<3000;k++)
+                dispatcher.register_event(new AbstractEvent(dispatcher,k%2==0 ? 10 : 20,k,recipients[k%3]) {
+                    @Override
+                    public void action() {
+                        fired.add((int) timestamp);
+                        if(timestamp==1500f)
+                            dispatcher.remove_events_of_type(getClass());
+                    }
+                });
+
+            dispatcher.remove_events_for_recipient(AbstractEvent.class,recipients[1]);
+            dispatcher.dispatch_events_to_stop();
+
+            assertEquals(1001,fired.size());
+            for(int k : fired)
+                assertNotEquals(1,k%3);
+            assertTrue(dispatcher.events.isEmpty());
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_profile_changes() {
+        try {
+            // three demands change at 2000, splits at 1000
+            OTM otm = OTM.load_test("onramp_offramp");
+            otm.initialize(0f);
+            otm.advance(1500f);
+
+            assertEquals(0.3,otm.scenario.network.links.get(3L).get_splits_for_commodity(2L).get(7L),1e-9);
+            List<Float> times = new ArrayList<>();
+            otm.scenario.dispatcher.events.stream()
+                    .filter(e->e instanceof EventProfileChanges)
+                    .forEach(e->times.add(e.timestamp));
+            assertEquals(1,times.size());
+            assertEquals(2000f,times.get(0),0f);
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    static class TestEvent extends AbstractEvent {
+        final int id;
+        TestEvent(int dispatch_order,float timestamp,int id){
+            super(null,dispatch_order,timestamp,null);
+            this.id = id;
+        }
+        @Override
+        public void action() {
+        }
+    }
+
+}
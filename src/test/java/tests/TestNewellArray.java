@@ -0,0 +1,86 @@
+package tests;
+
+import core.AbstractModel;
+import core.Link;
+import core.OTM;
+import error.OTMException;
+import org.junit.Test;
+import output.AbstractOutput;
+import output.OutputLinkVehicles;
+import profiles.Profile1D;
+import xml.JaxbLoader;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TestNewellArray extends AbstractTest {
+
+    // micro_array gives the same link vehicles as micro, on a line and on a grid with merges and diverges
+    @Test
+    public void test_same_as_micro() {
+        try {
+            for (String config : List.of("line_newell", "grid")) {
+                Map<Long, Profile1D> micro = run(scenario(config), "micro");
+                Map<Long, Profile1D> micro_array = run(scenario(config), "micro_array");
+                assertEquals(micro.keySet(), micro_array.keySet());
+                for (Long link_id : micro.keySet())
+                    assertEquals(config + " link " + link_id, micro.get(link_id).values, micro_array.get(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // multi-threaded micro and micro_array give the same link vehicles as serial
+    @Test
+    public void test_threads() {
+        try {
+            for (String model_type : List.of("micro", "micro_array")) {
+                Map<Long, Profile1D> serial = run(scenario("grid"), model_type, 1);
+                Map<Long, Profile1D> parallel = run(scenario("grid"), model_type, 4);
+                for (Long link_id : serial.keySet())
+                    assertEquals(model_type + " link " + link_id, serial.get(link_id).values, parallel.get(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static jaxb.Scenario scenario(String config) throws OTMException {
+        return config.equals("grid") ? TestParallel.grid_scenario(6, 1, 1, "900,300") : JaxbLoader.load_test_scenario(config);
+    }
+
+    private static Map<Long, Profile1D> run(jaxb.Scenario jscenario, String model_type) throws OTMException {
+        return run(jscenario, model_type, 1);
+    }
+
+    private static Map<Long, Profile1D> run(jaxb.Scenario jscenario, String model_type, int threads) throws OTMException {
+        OTM.set_random_seed(1L);
+        for (jaxb.Model model : jscenario.getModels().getModel()) {
+            model.setType(model_type);
+            if (model.getModelParams() == null)
+                model.setModelParams(new jaxb.ModelParams());
+            if (model.getModelParams().getSimDt() == null)
+                model.getModelParams().setSimDt(1f);
+            model.getModelParams().setThreads(threads);
+        }
+        OTM otm = new OTM(jscenario, true);
+
+        // release order depends on the order of the links, which is that of a HashSet of links
+        for (AbstractModel model : otm.scenario.models.values())
+            model.links = new LinkedHashSet<>(new TreeMap<>(model.links.stream().collect(Collectors.toMap(Link::getId, x -> x))).values());
+
+        Set<Long> link_ids = otm.scenario.network.links.keySet();
+        otm.output.request_links_veh(null, null, null, link_ids, 10f);
+        otm.run(0f, 1000f);
+        Map<Long, Profile1D> X = new HashMap<>();
+        for (AbstractOutput output : otm.output.get_data())
+            if (output instanceof OutputLinkVehicles)
+                for (Long link_id : link_ids)
+                    X.put(link_id, ((OutputLinkVehicles) output).get_profile_for_linkid(link_id));
+        return X;
+    }
+
+}
@@ -0,0 +1,351 @@
+package tests;
+
+import core.AbstractFluidModel;
+import core.OTM;
+import core.Replications;
+import error.OTMException;
+import models.fluid.partition.DomainDecomposition;
+import models.fluid.partition.NetworkPartitioner;
+import models.fluid.partition.Subdomain;
+import org.junit.Test;
+import output.AbstractOutput;
+import output.OutputLinkVehicles;
+import output.OutputVehicleEvents;
+import output.ReplicationStatistics;
+import output.events.AbstractEventWrapper;
+import output.events.EventVehicleFromToQueueInfo;
+import profiles.Profile1D;
+import xml.JaxbLoader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestParallel extends AbstractTest {
+
+    // multi-threaded fluid models give the same link vehicles as serial
+    @Test
+    public void test_fluid_threads() {
+        try {
+            for (String config : List.of("intersection", "mixing", "onramp_offramp", "grid_lanes")) {
+                for (String model_type : List.of("ctm", "ctm_array")) {
+                    Map<Long, Profile1D> serial = run_fluid(config, model_type, 1, 1);
+                    Map<Long, Profile1D> parallel = run_fluid(config, model_type, 4, 1);
+                    assertEquals(serial.keySet(), parallel.keySet());
+                    for (Long link_id : serial.keySet())
+                        assertEquals(config + " link " + link_id, serial.get(link_id).values, parallel.get(link_id).values);
+                }
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // stochastic scenarios with the same seed give the same result, also when run at the same time
+    @Test
+    public void test_random_streams() {
+        try {
+            OTM a = poisson_line(7L);
+            OTM b = poisson_line(7L);
+            Map<Long, List<Double>>[] X = new Map[2];
+            Thread thread = new Thread(() -> {
+                try {
+                    X[1] = run_links_veh(b);
+                } catch (OTMException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+            X[0] = run_links_veh(a);
+            thread.join();
+            assertEquals(X[0], X[1]);
+
+            // every run restarts from the seed
+            assertEquals(X[0], run_links_veh(a));
+
+            a.set_scenario_random_seed(8L);
+            assertNotEquals(X[0], run_links_veh(a));
+        } catch (OTMException | InterruptedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // replications on threads give the statistics of the same replications run one by one
+    @Test
+    public void test_replications() {
+        try {
+            jaxb.Scenario jscenario = JaxbLoader.load_test_scenario("line_spaceq");
+            for (jaxb.Model model : jscenario.getModels().getModel())
+                model.setProcess("poisson");
+            Replications replications = new Replications(jscenario, 100L);
+            ReplicationStatistics stats = new ReplicationStatistics(OutputLinkVehicles.class);
+            replications.run(5, 3, 0f, 1000f, otm -> otm.output.request_links_veh(null, null, null, null, 10f), stats);
+            assertEquals(5, stats.get_num_replications());
+
+            List<Map<Long, List<Double>>> X = new ArrayList<>();
+            for (int k = 0; k < 5; k++)
+                X.add(run_links_veh(replications.build(k)));
+            for (Long link_id : X.get(0).keySet()) {
+                double[] mean = stats.get_mean(link_id);
+                double[] variance = stats.get_variance(link_id);
+                for (int t = 0; t < mean.length; t++) {
+                    final int tt = t;
+                    double m = X.stream().mapToDouble(x -> x.get(link_id).get(tt)).average().getAsDouble();
+                    double v = X.stream().mapToDouble(x -> Math.pow(x.get(link_id).get(tt) - m, 2)).sum() / 4;
+                    assertEquals(m, mean[t], 1e-9);
+                    assertEquals(v, variance[t], 1e-9);
+                }
+            }
+            assertTrue(Arrays.stream(stats.get_variance(4L)).max().getAsDouble() > 0d);
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // replications that are built while others run number their vehicles from 0, without repeats
+    @Test
+    public void test_replication_vehicle_ids() {
+        try {
+            jaxb.Scenario jscenario = JaxbLoader.load_test_scenario("line_spaceq");
+            for (jaxb.Model model : jscenario.getModels().getModel())
+                model.setProcess("poisson");
+            Replications replications = new Replications(jscenario, 100L);
+            Map<Integer, List<Long>> created = new HashMap<>();
+            replications.run(6, 3, 0f, 1000f, otm -> otm.output.request_vehicle_events(null, null, null), (k, otm) -> {
+                List<Long> ids = new ArrayList<>();
+                for (AbstractOutput output : otm.output.get_data())
+                    if (output instanceof OutputVehicleEvents)
+                        for (AbstractEventWrapper e : ((OutputVehicleEvents) output).get_events()) {
+                            EventVehicleFromToQueueInfo x = (EventVehicleFromToQueueInfo) e;
+                            if (x.from_queue == null)
+                                ids.add(x.vehicle_id);
+                        }
+                created.put(k, ids);
+            });
+            assertEquals(6, created.size());
+            for (List<Long> ids : created.values()) {
+                assertTrue(ids.size() > 0);
+                assertEquals(ids.size(), new HashSet<>(ids).size());
+                assertEquals(ids.size() - 1, (long) Collections.max(ids));
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // partitioned fluid models agree with serial up to round-off
+    @Test
+    public void test_fluid_partitions() {
+        try {
+            for (String config : List.of("intersection", "mixing", "onramp_offramp")) {
+                Map<Long, Profile1D> serial = run_fluid(config, "ctm", 1, 1);
+                Map<Long, Profile1D> partitioned = run_fluid(config, "ctm", 1, 3);
+                assertEquals(serial.keySet(), partitioned.keySet());
+                for (Long link_id : serial.keySet())
+                    assertEquals(config + " link " + link_id, serial.get(link_id).values, partitioned.get(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // the threads of a model stop when its run ends, and start again for the next run
+    @Test
+    public void test_threads_stop() {
+        try {
+            for (int[] threads_partitions : new int[][]{{3, 1}, {1, 3}}) {
+                jaxb.Scenario jscenario = JaxbLoader.load_test_scenario("onramp_offramp");
+                for (jaxb.Model model : jscenario.getModels().getModel()) {
+                    model.getModelParams().setThreads(threads_partitions[0]);
+                    model.getModelParams().setPartitions(threads_partitions[1]);
+                }
+                OTM otm = new OTM(jscenario, true);
+                Map<Long, List<Double>> X = run_links_veh(otm);
+                assertEquals(0, num_model_threads());
+                assertEquals(X, run_links_veh(otm));
+                assertEquals(0, num_model_threads());
+            }
+        } catch (OTMException | InterruptedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_partitioner() {
+        try {
+            OTM otm = new OTM(grid_scenario(20, 4), true);
+            otm.initialize(0f);
+            DomainDecomposition dd = ((AbstractFluidModel) otm.scenario.models.values().iterator().next()).get_decomposition();
+
+            // every link in one subdomain, cells balanced
+            long total_cells = otm.scenario.network.links.values().stream().mapToLong(NetworkPartitioner::num_cells).sum();
+            assertEquals(otm.scenario.network.links.size(), Arrays.stream(dd.subdomains).mapToInt(d -> d.links.size()).sum());
+            for (Subdomain d : dd.subdomains)
+                assertEquals(total_cells / 4d, d.num_cells, 2 * NetworkPartitioner.imbalance * total_cells);
+
+            // four quadrants of a 20x20 grid cut about 2*20 links, with 2 road connections each
+            assertTrue(dd.cut_road_connections <= 2 * 2 * 20 * 3 / 2);
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    // skipping quiescent links and node models gives the same link vehicles
+    @Test
+    public void test_activity_tracking() {
+        try {
+            for (String config : List.of("intersection", "mixing", "onramp_offramp", "grid")) {
+                Map<Long, Profile1D> all = run_fluid(activity_scenario(config), false);
+                Map<Long, Profile1D> active = run_fluid(activity_scenario(config), true);
+                assertEquals(all.keySet(), active.keySet());
+                for (Long link_id : all.keySet())
+                    assertEquals(config + " link " + link_id, all.get(link_id).values, active.get(link_id).values);
+            }
+        } catch (OTMException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    static jaxb.Scenario grid_scenario(int n, int partitions) throws OTMException {
+        return grid_scenario(n, partitions, 1, "400");
+    }
+
+    // Manhattan grid of n x n nodes with one-way links going east and north, 500 m each.
+    // Sources enter from the west and south, sinks leave to the east and north.
+    // Every k-th source of each side has the given demand profile, in 10 minute steps.
+    static jaxb.Scenario grid_scenario(int n, int partitions, int every, String demand) throws OTMException {
+        return grid_scenario(n, partitions, every, demand, false);
+    }
+
+    // with add_lanes, every link has two lane groups with lane changes between them
+    static jaxb.Scenario grid_scenario(int n, int partitions, int every, String demand, boolean add_lanes) throws OTMException {
+        StringBuilder nodes = new StringBuilder();
+        StringBuilder links = new StringBuilder();
+        StringBuilder rcs = new StringBuilder();
+        StringBuilder demands = new StringBuilder();
+        StringBuilder splits = new StringBuilder();
+
+        long num_nodes = (long) n * n + 4L * n;
+        for (long id = 1; id <= num_nodes; id++)
+            nodes.append(String.format("<node id=\"%d\"/>", id));
+
+        // link ids: east link of (i,j) = node id, north link = node id + num_nodes,
+        // west source into (0,j) = 2*num_nodes+1+j, south source into (i,0) = 2*num_nodes+1+n+i
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++) {
+                long node = grid_node(n, i, j);
+                long east_end = i + 1 < n ? grid_node(n, i + 1, j) : (long) n * n + 2 * n + 1 + j;
+                long north_end = j + 1 < n ? grid_node(n, i, j + 1) : (long) n * n + 3 * n + 1 + i;
+                links.append(grid_link(node, node, east_end, 500, add_lanes));
+                links.append(grid_link(node + num_nodes, node, north_end, 500, add_lanes));
+
+                long west_in = i > 0 ? grid_node(n, i - 1, j) : 2 * num_nodes + 1 + j;
+                long south_in = j > 0 ? grid_node(n, i, j - 1) + num_nodes : 2 * num_nodes + 1 + n + i;
+                for (long in : new long[]{west_in, south_in}) {
+                    // with add_lanes, east from the added lane and north from the full lane
+                    rcs.append(String.format("<roadconnection id=\"%d\" in_link=\"%d\"%s out_link=\"%d\"/>", 2 * in, in, add_lanes ? " in_link_lanes=\"1#1\"" : "", node));
+                    rcs.append(String.format("<roadconnection id=\"%d\" in_link=\"%d\"%s out_link=\"%d\"/>", 2 * in + 1, in, add_lanes ? " in_link_lanes=\"2#2\"" : "", node + num_nodes));
+                    splits.append(String.format("<split_node node_id=\"%d\" commodity_id=\"1\" link_in=\"%d\"><split link_out=\"%d\">0.5</split><split link_out=\"%d\">0.5</split></split_node>", node, in, node, node + num_nodes));
+                }
+            }
+        for (int k = 0; k < n; k++) {
+            long west = 2 * num_nodes + 1 + k;
+            long south = 2 * num_nodes + 1 + n + k;
+            links.append(grid_link(west, (long) n * n + 1 + k, grid_node(n, 0, k), 100, add_lanes));
+            links.append(grid_link(south, (long) n * n + n + 1 + k, grid_node(n, k, 0), 100, add_lanes));
+            if (k % every != 0)
+                continue;
+            demands.append(String.format("<demand link_id=\"%d\" commodity_id=\"1\" dt=\"600\">%s</demand>", west, demand));
+            demands.append(String.format("<demand link_id=\"%d\" commodity_id=\"1\" dt=\"600\">%s</demand>", south, demand));
+        }
+
+        String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?><scenario xmlns=\"opentrafficmodels\">" +
+                "<commodities><commodity id=\"1\" name=\"car\" pathfull=\"false\"/></commodities>" +
+                "<models><model type=\"ctm\" name=\"ctm\" is_default=\"true\">" +
+                String.format("<model_params sim_dt=\"2\" max_cell_length=\"100\" partitions=\"%d\"/>", partitions) +
+                "</model></models><network>" +
+                "<nodes>" + nodes + "</nodes><links>" + links + "</links>" +
+                (add_lanes ? "<roadgeoms><roadgeom id=\"1\"><add_lanes isopen=\"true\" side=\"in\" lanes=\"1\" roadparam=\"1\"/></roadgeom></roadgeoms>" : "") +
+                "<roadparams><roadparam id=\"1\" capacity=\"1800\" speed=\"60\" jam_density=\"100\"/></roadparams>" +
+                "<roadconnections>" + rcs + "</roadconnections></network>" +
+                "<demands>" + demands + "</demands><splits>" + splits + "</splits></scenario>";
+        return JaxbLoader.load_scenario(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static long grid_node(int n, int i, int j) {
+        return 1L + (long) i * n + j;
+    }
+
+    private static String grid_link(long id, long start, long end, int length, boolean add_lanes) {
+        return String.format("<link id=\"%d\" full_lanes=\"1\" length=\"%d\" start_node_id=\"%d\" end_node_id=\"%d\" roadparam=\"1\"%s/>", id, length, start, end, add_lanes ? " roadgeom=\"1\"" : "");
+    }
+
+    // a short burst on a few sources of a grid, so that most of the network is empty most of the time
+    private static jaxb.Scenario activity_scenario(String config) throws OTMException {
+        return config.equals("grid") ? grid_scenario(6, 1, 3, "400,0") : JaxbLoader.load_test_scenario(config);
+    }
+
+    private static Map<Long, Profile1D> run_fluid(String config, String model_type, int threads, int partitions) throws OTMException {
+        jaxb.Scenario jscenario = config.equals("grid_lanes") ? grid_scenario(8, 1, 1, "1500", true) : JaxbLoader.load_test_scenario(config);
+        for (jaxb.Model model : jscenario.getModels().getModel()) {
+            model.setType(model_type);
+            model.getModelParams().setThreads(threads);
+            model.getModelParams().setPartitions(partitions);
+        }
+        return run_fluid(jscenario, true);
+    }
+
+    private static OTM poisson_line(long seed) throws OTMException {
+        jaxb.Scenario jscenario = JaxbLoader.load_test_scenario("line_spaceq");
+        for (jaxb.Model model : jscenario.getModels().getModel())
+            model.setProcess("poisson");
+        OTM otm = new OTM(jscenario, true);
+        otm.set_scenario_random_seed(seed);
+        return otm;
+    }
+
+    // live threads of worker pools and subdomains, after giving stopped ones a second to exit
+    private static long num_model_threads() throws InterruptedException {
+        long n = 0;
+        for (int i = 0; i < 100; i++) {
+            n = Thread.getAllStackTraces().keySet().stream()
+                    .map(Thread::getName)
+                    .filter(x -> x.startsWith("ForkJoinPool-") || x.matches("otm-.*-subdomain-.*"))
+                    .count();
+            if (n == 0)
+                break;
+            Thread.sleep(10);
+        }
+        return n;
+    }
+
+    private static Map<Long, List<Double>> run_links_veh(OTM otm) throws OTMException {
+        otm.output.clear();
+        otm.output.request_links_veh(null, null, null, null, 10f);
+        otm.run(0f, 1000f);
+        Map<Long, List<Double>> X = new HashMap<>();
+        for (AbstractOutput output : otm.output.get_data())
+            for (long link_id : ((OutputLinkVehicles) output).get_link_ids())
+                X.put(link_id, new ArrayList<>(((OutputLinkVehicles) output).get_profile_for_linkid(link_id).values));
+        return X;
+    }
+
+    private static Map<Long, Profile1D> run_fluid(jaxb.Scenario jscenario, boolean track_activity) throws OTMException {
+        for (jaxb.Model model : jscenario.getModels().getModel())
+            model.getModelParams().setTrackActivity(track_activity);
+        OTM.set_random_seed(1L);
+        OTM otm = new OTM(jscenario, true);
+        Set<Long> link_ids = otm.scenario.network.links.keySet();
+        otm.output.request_links_veh(null, null, null, link_ids, 10f);
+        otm.run(0f, 1000f);
+        Map<Long, Profile1D> X = new HashMap<>();
+        for (AbstractOutput output : otm.output.get_data())
+            if (output instanceof OutputLinkVehicles)
+                for (Long link_id : link_ids)
+                    X.put(link_id, ((OutputLinkVehicles) output).get_profile_for_linkid(link_id));
+        return X;
+    }
+
+}